@@ -0,0 +1,104 @@
+package replicate.common;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.cfg.ConstructorDetector;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.openjdk.jmh.annotations.*;
+import replicate.net.FrameCodec;
+import replicate.net.InetAddressAndPort;
+import replicate.paxoslog.messages.ProposalRequest;
+import replicate.wal.SetValueCommand;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cached readers and writers in JsonSerDes with building
+ * a new ObjectMapper for every call, which is what JsonSerDes used to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonSerDesBenchmark {
+    ProposalRequest proposal;
+    byte[] serializedProposal;
+    RequestOrResponse envelope;
+
+    @Setup
+    public void setUp() {
+        proposal = new ProposalRequest(new MonotonicId(10, 1), 42, new SetValueCommand("title", "Microservices").serialize());
+        serializedProposal = JsonSerDes.serialize(proposal);
+        envelope = new RequestOrResponse(MessageId.ProposeRequest.getId(), serializedProposal, 1234, InetAddressAndPort.create("127.0.0.1", 9000));
+    }
+
+    @Benchmark
+    public byte[] serializeCached() {
+        return JsonSerDes.serialize(proposal);
+    }
+
+    @Benchmark
+    public byte[] serializeNewMapperPerCall() {
+        return serializeWithNewMapper(proposal);
+    }
+
+    @Benchmark
+    public ProposalRequest deserializeCached() {
+        return JsonSerDes.deserialize(serializedProposal, ProposalRequest.class);
+    }
+
+    @Benchmark
+    public ProposalRequest deserializeNewMapperPerCall() {
+        return deserializeWithNewMapper(serializedProposal, ProposalRequest.class);
+    }
+
+    @Benchmark
+    public ProposalRequest envelopeRoundTripCached() {
+        RequestOrResponse received = receive(FrameCodec.encode(envelope));
+        return JsonSerDes.deserialize(received.getPayload(), ProposalRequest.class);
+    }
+
+    @Benchmark
+    public ProposalRequest envelopeRoundTripNewMapperPerCall() {
+        RequestOrResponse received = receive(FrameCodec.encode(envelope));
+        return deserializeWithNewMapper(received.getMessageBodyJson(), ProposalRequest.class);
+    }
+
+    //skips the size prefix, which is read by ReceiveBuffer on the network path.
+    private static RequestOrResponse receive(ByteBuffer frame) {
+        frame.getInt();
+        return FrameCodec.decode(frame);
+    }
+
+    private static byte[] serializeWithNewMapper(Object obj) {
+        var objectMapper = new ObjectMapper(new CBORFactory());
+        try {
+            objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+            objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+            objectMapper.registerModule(new Jdk8Module());
+            return objectMapper.writeValueAsBytes(obj);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> T deserializeWithNewMapper(byte[] bytes, Class<T> clazz) {
+        try {
+            var objectMapper = new ObjectMapper(new CBORFactory());
+            objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+            objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            objectMapper.registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
+            objectMapper.registerModule(new Jdk8Module());
+            objectMapper.setConstructorDetector(ConstructorDetector.USE_PROPERTIES_BASED);
+            return objectMapper.readValue(bytes, clazz);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
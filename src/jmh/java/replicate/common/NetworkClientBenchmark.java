@@ -0,0 +1,76 @@
+package replicate.common;
+
+import org.openjdk.jmh.annotations.*;
+import replicate.net.InetAddressAndPort;
+import replicate.net.NIOSocketListener;
+import replicate.quorum.messages.GetValueRequest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips from one client thread to a listener which answers every request
+ * straight away. sendAndReceive connects for each request and waits for its
+ * response, sendAsync pipelines a burst of requests over one persistent connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class NetworkClientBenchmark {
+    static final int REQUESTS_PER_OP = 100;
+
+    NIOSocketListener listener;
+    InetAddressAndPort address;
+    NetworkClient client;
+    GetValueRequest request = new GetValueRequest("title");
+
+    @Setup
+    public void setUp() throws IOException {
+        address = InetAddressAndPort.create("127.0.0.1", freePort());
+        byte[] value = JsonSerDes.serialize("Microservices");
+        listener = new NIOSocketListener(message -> message.getClientConnection()
+                .write(new RequestOrResponse(MessageId.GetValueResponse.getId(), value, message.getCorrelationId())), address);
+        listener.start();
+        client = new NetworkClient();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS_PER_OP)
+    public String connectPerRequest() throws IOException {
+        String result = null;
+        for (int i = 0; i < REQUESTS_PER_OP; i++) {
+            result = client.sendAndReceive(request, address, String.class).getResult();
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS_PER_OP)
+    public String pipelined() {
+        List<CompletableFuture<NetworkClient.Response<String>>> responses = new ArrayList<>(REQUESTS_PER_OP);
+        for (int i = 0; i < REQUESTS_PER_OP; i++) {
+            responses.add(client.sendAsync(request, address, String.class));
+        }
+        String result = null;
+        for (var response : responses) {
+            result = response.join().getResult();
+        }
+        return result;
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        listener.shudown();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
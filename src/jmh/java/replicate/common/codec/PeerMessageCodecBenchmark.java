@@ -0,0 +1,58 @@
+package replicate.common.codec;
+
+import org.openjdk.jmh.annotations.*;
+import replicate.common.MessageId;
+import replicate.common.MonotonicId;
+import replicate.paxoslog.messages.PrepareResponse;
+import replicate.paxoslog.messages.ProposalRequest;
+import replicate.wal.SetValueCommand;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode time of the CBOR and binary codecs for small consensus messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PeerMessageCodecBenchmark {
+    @Param({"CBOR", "BINARY"})
+    String codecName;
+
+    MessageCodec codec;
+    ProposalRequest proposal;
+    byte[] encodedProposal;
+    PrepareResponse promise;
+    byte[] encodedPromise;
+
+    @Setup
+    public void setUp() {
+        codec = codecName.equals("BINARY") ? BinaryMessageCodec.INSTANCE : CborMessageCodec.INSTANCE;
+        byte[] command = new SetValueCommand("title", "Microservices").serialize();
+        proposal = new ProposalRequest(new MonotonicId(10, 1), 42, command);
+        promise = new PrepareResponse(true, Optional.of(command), Optional.of(new MonotonicId(9, 2)));
+        encodedProposal = codec.encode(MessageId.ProposeRequest, proposal);
+        encodedPromise = codec.encode(MessageId.Promise, promise);
+    }
+
+    @Benchmark
+    public byte[] encodeProposal() {
+        return codec.encode(MessageId.ProposeRequest, proposal);
+    }
+
+    @Benchmark
+    public ProposalRequest decodeProposal() {
+        return codec.decode(MessageId.ProposeRequest, encodedProposal, ProposalRequest.class);
+    }
+
+    @Benchmark
+    public byte[] encodePromise() {
+        return codec.encode(MessageId.Promise, promise);
+    }
+
+    @Benchmark
+    public PrepareResponse decodePromise() {
+        return codec.decode(MessageId.Promise, encodedPromise, PrepareResponse.class);
+    }
+}
@@ -0,0 +1,76 @@
+package replicate.net;
+
+import org.openjdk.jmh.annotations.*;
+import replicate.common.Config;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+import replicate.net.grpc.GrpcTransport;
+import replicate.net.netty.NettyTransport;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends a burst of small peer messages, the size of a consensus commit, from one
+ * transport to a listener of the same transport and waits until all are received.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TransportBenchmark {
+    static final int MESSAGES_PER_OP = 1000;
+
+    @Param({"socket", "uds", "netty", "grpc", "injvm"})
+    String transportType;
+
+    Transport transport;
+    Listener listener;
+    InetAddressAndPort address;
+    AtomicLong received = new AtomicLong();
+    long sent;
+    byte[] payload = new byte[64];
+
+    @Setup
+    public void setUp() throws IOException {
+        Config config = new Config("/tmp");
+        transport = switch (transportType) {
+            case "netty" -> new NettyTransport(config);
+            case "grpc" -> new GrpcTransport(config);
+            case "injvm" -> new InJvmTransport(config);
+            case "uds" -> new SocketTransport(config.withUnixDomainSockets(Files.createTempDirectory("uds")));
+            default -> new SocketTransport(config);
+        };
+        address = InetAddressAndPort.create("127.0.0.1", freePort());
+        listener = transport.listen(address, message -> received.incrementAndGet());
+        listener.start();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_OP)
+    public long sendBurst() throws IOException {
+        for (int i = 0; i < MESSAGES_PER_OP; i++) {
+            transport.send(address, new RequestOrResponse(MessageId.Commit.getId(), payload, i, address), e -> {});
+        }
+        sent += MESSAGES_PER_OP;
+        while (received.get() < sent) {
+            LockSupport.parkNanos(1000);
+        }
+        return received.get();
+    }
+
+    @TearDown
+    public void tearDown() {
+        listener.shudown();
+        transport.close();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
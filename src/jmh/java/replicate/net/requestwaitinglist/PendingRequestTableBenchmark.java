@@ -0,0 +1,59 @@
+package replicate.net.requestwaitinglist;
+
+import org.openjdk.jmh.annotations.*;
+import replicate.common.SystemClock;
+import replicate.net.InetAddressAndPort;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds a request and completes the oldest one, with a fixed number in flight,
+ * as a replica does for the requests it sends its peers.
+ * Compares the int keyed PendingRequestTable with a RequestWaitingList keyed by boxed ids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PendingRequestTableBenchmark {
+    @Param({"1000"})
+    int inFlight;
+
+    PendingRequestTable<Object> table;
+    RequestWaitingList<Integer, Object> waitingList;
+    int nextId;
+    final RequestCallback<Object> callback = new RequestCallback<>() {
+        @Override
+        public void onResponse(Object r, InetAddressAndPort fromNode) {
+        }
+
+        @Override
+        public void onError(Exception e) {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        SystemClock clock = new SystemClock();
+        table = new PendingRequestTable<>(clock, Duration.ofSeconds(60));
+        waitingList = new RequestWaitingList<>(clock, Duration.ofSeconds(60));
+        for (nextId = 0; nextId < inFlight; nextId++) {
+            table.add(nextId, callback);
+            waitingList.add(nextId, callback);
+        }
+    }
+
+    @Benchmark
+    public void pendingRequestTable() {
+        table.add(nextId, callback);
+        table.handleResponse(nextId - inFlight, "response");
+        nextId++;
+    }
+
+    @Benchmark
+    public void requestWaitingList() {
+        waitingList.add(nextId, callback);
+        waitingList.handleResponse(nextId - inFlight, "response");
+        nextId++;
+    }
+}
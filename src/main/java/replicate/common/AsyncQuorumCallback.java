@@ -3,22 +3,36 @@ package replicate.common;
 import replicate.net.InetAddressAndPort;
 import replicate.net.requestwaitinglist.RequestCallback;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Predicate;
 
 /**
  * Completes the associated future once quorum predicate succeeds.
+ * Callbacks can come from different threads, the update thread for responses
+ * and the request expiry for errors, so the counts are atomic.
+ * Each response is stored in the slot given by its arrival order and marked in
+ * a bitset once written. The future completes exactly once, from the thread whose
+ * response reaches the quorum, with the responses marked so far.
+ * If quorum is not reached, it fails only after the last response or error,
+ * so a failed call still means every replica has answered.
  */
 public class AsyncQuorumCallback<T> implements RequestCallback<T> {
     private final int totalResponses;
-    List<Exception> exceptions = new ArrayList<>();
-    Map<InetAddressAndPort, T> responses = new HashMap<>();
+    private final int quorum;
+    private final Predicate<T> successCondition;
+
+    private final AtomicInteger arrived = new AtomicInteger();
+    private final AtomicInteger successes = new AtomicInteger();
+    private final AtomicInteger answered = new AtomicInteger();
+    private final InetAddressAndPort[] senders;
+    private final Object[] responses;
+    private final AtomicLongArray written;
+
     CompletableFuture<Map<InetAddressAndPort, T>> quorumFuture = new CompletableFuture<>();
-    private Predicate<T> successCondition;
 
     public AsyncQuorumCallback(int totalResponses) {
         //This is default implementation. it's good to provide a specific quorum condition.
@@ -26,41 +40,87 @@ public class AsyncQuorumCallback<T> implements RequestCallback<T> {
     }
 
     public AsyncQuorumCallback(int totalResponses, Predicate<T> successCondition) {
-        this.successCondition = successCondition;
+        this(totalResponses, majorityQuorum(totalResponses), successCondition);
+    }
+
+    //For phases which need other than a majority, e.g. flexible paxos quorums. @see Replica#phase1Quorum
+    public AsyncQuorumCallback(int totalResponses, int quorum, Predicate<T> successCondition) {
         assert totalResponses > 0;
+        if (quorum < 1 || quorum > totalResponses) {
+            throw new IllegalArgumentException("Quorum " + quorum + " is not possible with " + totalResponses + " responses");
+        }
+        this.successCondition = successCondition;
         this.totalResponses = totalResponses;
+        this.quorum = quorum;
+        this.senders = new InetAddressAndPort[totalResponses];
+        this.responses = new Object[totalResponses];
+        this.written = new AtomicLongArray((totalResponses + 63) >>> 6);
     }
 
-    private int majorityQuorum() {
+    private static int majorityQuorum(int totalResponses) {
         return totalResponses / 2 + 1;
     }
 
     @Override
     public void onResponse(T r, InetAddressAndPort fromAddress) {
-        responses.put(fromAddress, r);
-        tryCompletingFuture();
+        int slot = arrived.getAndIncrement();
+        if (slot >= totalResponses) {
+            return; //more responses than requests sent, the outcome is already decided.
+        }
+        senders[slot] = fromAddress;
+        responses[slot] = r;
+        markWritten(slot);
+        if (successCondition.test(r) && successes.incrementAndGet() == quorum) {
+            //only the response which takes the count to exactly the quorum completes the future.
+            quorumFuture.complete(receivedResponses());
+        }
+        answered();
     }
 
-    private void tryCompletingFuture() {
-        if (quorumSucceeded(responses)) {
-            quorumFuture.complete(responses);
+    @Override
+    public void onError(Exception e) {
+        if (arrived.getAndIncrement() >= totalResponses) {
             return;
         }
-        if (responses.size() + exceptions.size() == totalResponses) {
+        answered();
+    }
+
+    //successes are counted before answers, so the last answer sees all of them.
+    private void answered() {
+        if (answered.incrementAndGet() == totalResponses && successes.get() < quorum) {
             quorumFuture.completeExceptionally(new RuntimeException("Quorum condition not met after " + totalResponses + " responses"));
         }
     }
 
-    private boolean quorumSucceeded(Map<InetAddressAndPort, T> r) {
-        return r.values()
-                .stream()
-                .filter(successCondition).count() >= majorityQuorum();
+    private void markWritten(int slot) {
+        int word = slot >>> 6;
+        long bit = 1L << slot;
+        long current;
+        do {
+            current = written.get(word);
+        } while (!written.compareAndSet(word, current, current | bit));
     }
 
-    @Override
-    public void onError(Exception e) {
-        exceptions.add(e);
-        tryCompletingFuture();
+    @SuppressWarnings("unchecked")
+    private Map<InetAddressAndPort, T> receivedResponses() {
+        Map<InetAddressAndPort, T> received = new HashMap<>();
+        for (int word = 0; word < written.length(); word++) {
+            long bits = written.get(word);
+            while (bits != 0) {
+                int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+                received.put(senders[slot], (T) responses[slot]);
+                bits &= bits - 1;
+            }
+        }
+        return received;
+    }
+
+    int quorum() {
+        return quorum;
+    }
+
+    boolean isSuccess(T response) {
+        return successCondition.test(response);
     }
 
     public CompletableFuture<Map<InetAddressAndPort, T>> getQuorumFuture() {
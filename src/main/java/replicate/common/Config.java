@@ -1,6 +1,14 @@
 package replicate.common;
 
+import replicate.common.codec.BinaryMessageCodec;
+import replicate.common.codec.CborMessageCodec;
+import replicate.common.codec.MessageCodec;
+import replicate.net.TransportMode;
+import replicate.net.WriteWatermarks;
+import replicate.simulation.Simulation;
+
 import java.io.File;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
@@ -18,6 +26,23 @@ public class Config {
     private long followerTimeoutMs = 5000l;
     private boolean supportLogGroup = false;
     private boolean doAsyncRepair = false;
+    private MessageCodec peerMessageCodec = CborMessageCodec.INSTANCE;
+    private int peerOutboundQueueSize = 1024;
+    private long peerReconnectBackoffMs = 100;
+    private long peerConnectTimeoutMs = 1000;
+    private int peerBatchMaxBytes = 64 * 1024;
+    private long peerBatchLingerMs = 0;
+    private int listenerReactorThreads = Runtime.getRuntime().availableProcessors();
+    private int listenerDispatchThreads = Runtime.getRuntime().availableProcessors();
+    private WriteWatermarks writeWatermarks = WriteWatermarks.DEFAULT;
+    private TransportMode transportMode = TransportMode.NIO;
+    private boolean passPeerMessagesByReference = false;
+    private Path unixSocketDir;
+    private Simulation simulation;
+    private Duration thriftyLateAfter; //null unless thrifty quorums are enabled.
+    private Duration hedgedReadsMaxDelay; //null unless hedged reads are enabled.
+    private int phase1Quorum; //0 for a majority.
+    private int phase2Quorum; //0 for a majority.
 
     public Config(String walDir) {
         this.walDir = walDir;
@@ -78,6 +103,12 @@ public class Config {
         return 1000;
     }
 
+    //All the servers in the cluster, with their peer and client addresses.
+    public Config withServers(List<Peer> servers) {
+        this.servers = servers;
+        return this;
+    }
+
     public List<Peer> getServers() {
         return servers;
     }
@@ -152,6 +183,223 @@ public class Config {
         return doAsyncRepair;
     }
 
+    //Encode messages between replicas with the compact binary codec instead of CBOR.
+    //All the replicas in the cluster need to use the same setting.
+    public Config withBinaryPeerMessages() {
+        this.peerMessageCodec = BinaryMessageCodec.INSTANCE;
+        return this;
+    }
+
+    public MessageCodec getPeerMessageCodec() {
+        return peerMessageCodec;
+    }
+
+    //Maximum messages waiting to be written to a single peer.
+    //Sends fail with OutboundQueueFullException once the queue is full.
+    public Config withPeerOutboundQueueSize(int peerOutboundQueueSize) {
+        this.peerOutboundQueueSize = peerOutboundQueueSize;
+        return this;
+    }
+
+    public int getPeerOutboundQueueSize() {
+        return peerOutboundQueueSize;
+    }
+
+    public Config withPeerReconnectBackoffMs(long peerReconnectBackoffMs) {
+        this.peerReconnectBackoffMs = peerReconnectBackoffMs;
+        return this;
+    }
+
+    public long getPeerReconnectBackoffMs() {
+        return peerReconnectBackoffMs;
+    }
+
+    //How long connecting to a peer may take before it counts as a failed connect.
+    //0 waits for the OS to give up.
+    public Config withPeerConnectTimeoutMs(long peerConnectTimeoutMs) {
+        this.peerConnectTimeoutMs = peerConnectTimeoutMs;
+        return this;
+    }
+
+    public long getPeerConnectTimeoutMs() {
+        return peerConnectTimeoutMs;
+    }
+
+    //Messages queued for the same peer are sent as one batch frame of up to this many bytes.
+    //0 sends every message in its own frame.
+    public Config withPeerBatchMaxBytes(int peerBatchMaxBytes) {
+        this.peerBatchMaxBytes = peerBatchMaxBytes;
+        return this;
+    }
+
+    public int getPeerBatchMaxBytes() {
+        return peerBatchMaxBytes;
+    }
+
+    //How long a batch waits for more messages before it is sent.
+    //With the default of 0 only messages which are already queued are batched.
+    public Config withPeerBatchLingerMs(long peerBatchLingerMs) {
+        this.peerBatchLingerMs = peerBatchLingerMs;
+        return this;
+    }
+
+    public long getPeerBatchLingerMs() {
+        return peerBatchLingerMs;
+    }
+
+    //Selector threads per listening socket. Connections are spread across them round-robin.
+    public Config withListenerReactorThreads(int listenerReactorThreads) {
+        this.listenerReactorThreads = listenerReactorThreads;
+        return this;
+    }
+
+    public int getListenerReactorThreads() {
+        return listenerReactorThreads;
+    }
+
+    //Threads handling the requests read by all the connections of a listening socket.
+    public Config withListenerDispatchThreads(int listenerDispatchThreads) {
+        this.listenerDispatchThreads = listenerDispatchThreads;
+        return this;
+    }
+
+    public int getListenerDispatchThreads() {
+        return listenerDispatchThreads;
+    }
+
+    //A connection stops reading requests once more than highBytes of responses are waiting
+    //to be written to it, and resumes once they drop to lowBytes.
+    public Config withWriteWatermarks(int lowBytes, int highBytes) {
+        this.writeWatermarks = new WriteWatermarks(lowBytes, highBytes);
+        return this;
+    }
+
+    public WriteWatermarks getWriteWatermarks() {
+        return writeWatermarks;
+    }
+
+    //Serve peer and client connections with blocking IO on a virtual thread per connection,
+    //instead of the NIO reactors. Falls back to platform threads before Java 21.
+    public Config withVirtualThreadTransport() {
+        this.transportMode = TransportMode.VIRTUAL_THREADS;
+        return this;
+    }
+
+    //Serve connections and send to peers on Netty event loops. The frames are the same
+    //as the socket transport's, so replicas using either transport can talk to each other.
+    public Config withNettyTransport() {
+        this.transportMode = TransportMode.NETTY;
+        return this;
+    }
+
+    //Send peer messages over one gRPC bidirectional stream per peer, with HTTP/2 flow control.
+    //Only the frame envelope has a protobuf schema, the consensus message inside it is still
+    //encoded with the peer message codec. Clients still connect with the socket frame protocol.
+    public Config withGrpcTransport() {
+        this.transportMode = TransportMode.GRPC;
+        return this;
+    }
+
+    //Deliver peer messages to replicas in the same JVM without sockets. With passMessagesByReference
+    //the message objects are handed over without encoding them, so handlers must not modify
+    //the messages they receive. Clients still connect over TCP.
+    public Config withInJvmTransport(boolean passMessagesByReference) {
+        this.transportMode = TransportMode.IN_JVM;
+        this.passPeerMessagesByReference = passMessagesByReference;
+        return this;
+    }
+
+    public boolean isPassingPeerMessagesByReference() {
+        return transportMode == TransportMode.IN_JVM && passPeerMessagesByReference;
+    }
+
+    //Replicas and clients on the same host talk over unix domain sockets in socketDir,
+    //instead of TCP loopback. The NIO listeners bind a socket file per address there,
+    //and peers which have one are connected to over it. @see replicate.net.UnixDomainSockets
+    public Config withUnixDomainSockets(Path socketDir) {
+        this.unixSocketDir = socketDir;
+        return this;
+    }
+
+    //null unless unix domain sockets are enabled.
+    public Path getUnixSocketDir() {
+        return unixSocketDir;
+    }
+
+    //Deliver peer and client messages through the simulation's event loop, in virtual time.
+    //Replicas also need to be given the simulation's clock. @see replicate.simulation.Simulation
+    public Config withSimulation(Simulation simulation) {
+        this.transportMode = TransportMode.SIMULATED;
+        this.simulation = simulation;
+        return this;
+    }
+
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
+    //Send proposals and quorum reads only to the fastest quorum of replicas, ranked by measured round trip time.
+    //The others are sent the request if one of those fails or rejects it, or if the quorum is not
+    //reached within lateAfter. @see replicate.net.PeerLatencies
+    public Config withThriftyQuorums(Duration lateAfter) {
+        this.thriftyLateAfter = lateAfter;
+        return this;
+    }
+
+    public Config withThriftyQuorums() {
+        return withThriftyQuorums(Duration.ofMillis(50));
+    }
+
+    public boolean isThriftyQuorums() {
+        return thriftyLateAfter != null;
+    }
+
+    public Duration getThriftyLateAfter() {
+        return thriftyLateAfter;
+    }
+
+    //Send reads to the fastest quorum of replicas, and to one more replica each time the p95 round trip
+    //time of that quorum passes without reaching the quorum. The delay is never more than
+    //maxDelay, which is also used until the replicas have been measured. @see Replica#sendHedgedMessageToQuorum
+    public Config withHedgedReads(Duration maxDelay) {
+        this.hedgedReadsMaxDelay = maxDelay;
+        return this;
+    }
+
+    public Config withHedgedReads() {
+        return withHedgedReads(Duration.ofMillis(50));
+    }
+
+    public boolean isHedgedReads() {
+        return hedgedReadsMaxDelay != null;
+    }
+
+    public Duration getHedgedReadsMaxDelay() {
+        return hedgedReadsMaxDelay;
+    }
+
+    //Flexible paxos quorums. Leader election, or prepare, only needs to intersect every propose,
+    //or accept, quorum. So any sizes with phase1Quorum + phase2Quorum > number of replicas are safe,
+    //e.g. a smaller, faster quorum for replication, and a larger one for the rarer leader changes.
+    //Checked when the replica is created.
+    public Config withFlexibleQuorums(int phase1Quorum, int phase2Quorum) {
+        this.phase1Quorum = phase1Quorum;
+        this.phase2Quorum = phase2Quorum;
+        return this;
+    }
+
+    public int getPhase1Quorum(int noOfReplicas) {
+        return phase1Quorum == 0 ? noOfReplicas / 2 + 1 : phase1Quorum;
+    }
+
+    public int getPhase2Quorum(int noOfReplicas) {
+        return phase2Quorum == 0 ? noOfReplicas / 2 + 1 : phase2Quorum;
+    }
+
+    public TransportMode getTransportMode() {
+        return transportMode;
+    }
+
     public void setServerId(Integer serverId) {
         this.serverId = serverId;
     }
@@ -0,0 +1,58 @@
+package replicate.common;
+
+import replicate.net.InetAddressAndPort;
+import replicate.net.requestwaitinglist.RequestCallback;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Callback for the requests of a hedged send, which went to the fastest quorum of
+ * replicas first. Everything is passed on to the quorum callback. Each error or
+ * unsuccessful response, and each time the quorum is late, sends the request to
+ * one more of the remaining replicas, fastest first. Their requests use this
+ * callback too, so if they fail the next one is tried.
+ */
+class HedgedQuorumCallback<T> implements RequestCallback<T> {
+    private final AsyncQuorumCallback<T> quorumCallback;
+    private final List<InetAddressAndPort> remaining;
+    private final BiConsumer<InetAddressAndPort, RequestCallback<T>> sendTo;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    HedgedQuorumCallback(AsyncQuorumCallback<T> quorumCallback, List<InetAddressAndPort> remaining, BiConsumer<InetAddressAndPort, RequestCallback<T>> sendTo) {
+        this.quorumCallback = quorumCallback;
+        this.remaining = remaining;
+        this.sendTo = sendTo;
+    }
+
+    @Override
+    public void onResponse(T r, InetAddressAndPort fromAddress) {
+        quorumCallback.onResponse(r, fromAddress);
+        if (!quorumCallback.isSuccess(r)) {
+            sendToNextReplica();
+        }
+    }
+
+    @Override
+    public void onError(Exception e) {
+        quorumCallback.onError(e);
+        sendToNextReplica();
+    }
+
+    //true if there are replicas left to hedge to later.
+    boolean hedgeIfLate() {
+        if (quorumCallback.getQuorumFuture().isDone()) {
+            return false;
+        }
+        sendToNextReplica();
+        return nextReplica.get() < remaining.size();
+    }
+
+    private void sendToNextReplica() {
+        int next = nextReplica.getAndIncrement();
+        if (next < remaining.size()) {
+            sendTo.accept(remaining.get(next), this);
+        }
+    }
+}
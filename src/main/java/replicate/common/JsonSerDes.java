@@ -8,24 +8,39 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.cfg.ConstructorDetector;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 import replicate.net.InetAddressAndPort;
 
 import java.io.IOException;
-
-
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serialization used for all the messages and stored values.
+ * Configuring an ObjectMapper and looking up serializers for a class is expensive,
+ * so the mappers are built once and an ObjectReader/ObjectWriter is cached per class.
+ * ObjectReader and ObjectWriter are immutable and safe to share between threads.
+ * Message classes can be registered upfront with {@link #warmUp(Class)}
+ * so that the first message on the network does not pay for the lookup.
+ */
 public class JsonSerDes {
+    private static final ObjectMapper jsonWriteMapper = newJsonWriteMapper();
+    private static final ObjectMapper jsonReadMapper = newJsonReadMapper();
+    private static final ObjectMapper cborWriteMapper = newCborWriteMapper();
+    private static final ObjectMapper cborReadMapper = newCborReadMapper();
 
-
+    private static final Map<Class<?>, ObjectWriter> jsonWriters = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> jsonReaders = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> cborWriters = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> cborReaders = new ConcurrentHashMap<>();
 
     public static String toJson(Object obj) {
-        var objectMapper = new ObjectMapper(new JsonFactory());
         try {
-            objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-            objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
-            return new String(objectMapper.writeValueAsBytes(obj));
+            return new String(writerFor(jsonWriters, jsonWriteMapper, obj).writeValueAsBytes(obj));
 
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
@@ -34,15 +49,7 @@ public class JsonSerDes {
 
     public static <T> T fromJson(byte[] json, Class<T> clazz) {
         try {
-            var objectMapper = new ObjectMapper(new JsonFactory());
-            objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-            objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-            objectMapper
-                    .registerModule(new ParameterNamesModule(JsonCreator.Mode.DEFAULT));
-            var module = new SimpleModule();
-            module.addKeyDeserializer(InetAddressAndPort.class, new InetAddressAndPortKeyDeserializer());
-            objectMapper.registerModule(module);
-            return objectMapper.readValue(json, clazz);
+            return readerFor(jsonReaders, jsonReadMapper, clazz).readValue(json);
 
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -50,12 +57,8 @@ public class JsonSerDes {
     }
 
     public static byte[] serialize(Object obj) {
-        var objectMapper = new ObjectMapper(new CBORFactory());
         try {
-            objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-            objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
-            objectMapper.registerModule(new Jdk8Module());
-            return objectMapper.writeValueAsBytes(obj);
+            return writerFor(cborWriters, cborWriteMapper, obj).writeValueAsBytes(obj);
 
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
@@ -64,23 +67,88 @@ public class JsonSerDes {
 
     public static <T> T deserialize(byte[] json, Class<T> clazz) {
         try {
-            var objectMapper = new ObjectMapper(new CBORFactory());
-            objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-            objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-            objectMapper
-                    .registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
-            var module = new SimpleModule();
-            module.addKeyDeserializer(InetAddressAndPort.class, new InetAddressAndPortKeyDeserializer());
-            objectMapper.registerModule(module);
-            objectMapper.registerModule(new Jdk8Module());
-            objectMapper.setConstructorDetector(ConstructorDetector.USE_PROPERTIES_BASED);
-            return objectMapper.readValue(json, clazz);
+            return readerFor(cborReaders, cborReadMapper, clazz).readValue(json);
 
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    public static <T> T deserialize(ByteBuffer buffer, Class<T> clazz) {
+        try {
+            ObjectReader reader = readerFor(cborReaders, cborReadMapper, clazz);
+            if (buffer.hasArray()) {
+                return reader.readValue(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            }
+            return reader.readValue(new ByteBufferBackedInputStream(buffer.duplicate()));
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Builds and caches the reader and writer for the given message class.
+     */
+    public static void warmUp(Class<?> clazz) {
+        cborReaders.computeIfAbsent(clazz, cborReadMapper::readerFor);
+        cborWriters.computeIfAbsent(clazz, cborWriteMapper::writerFor);
+    }
+
+    private static ObjectWriter writerFor(Map<Class<?>, ObjectWriter> writers, ObjectMapper mapper, Object obj) {
+        if (obj == null) {
+            return mapper.writer();
+        }
+        return writers.computeIfAbsent(obj.getClass(), mapper::writerFor);
+    }
+
+    private static ObjectReader readerFor(Map<Class<?>, ObjectReader> readers, ObjectMapper mapper, Class<?> clazz) {
+        return readers.computeIfAbsent(clazz, mapper::readerFor);
+    }
+
+    private static ObjectMapper newJsonWriteMapper() {
+        var objectMapper = new ObjectMapper(new JsonFactory());
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        return objectMapper;
+    }
+
+    private static ObjectMapper newJsonReadMapper() {
+        var objectMapper = new ObjectMapper(new JsonFactory());
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper
+                .registerModule(new ParameterNamesModule(JsonCreator.Mode.DEFAULT));
+        objectMapper.registerModule(inetAddressAndPortKeyModule());
+        return objectMapper;
+    }
+
+    private static ObjectMapper newCborWriteMapper() {
+        var objectMapper = new ObjectMapper(new CBORFactory());
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        objectMapper.registerModule(new Jdk8Module());
+        return objectMapper;
+    }
+
+    private static ObjectMapper newCborReadMapper() {
+        var objectMapper = new ObjectMapper(new CBORFactory());
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper
+                .registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
+        objectMapper.registerModule(inetAddressAndPortKeyModule());
+        objectMapper.registerModule(new Jdk8Module());
+        objectMapper.setConstructorDetector(ConstructorDetector.USE_PROPERTIES_BASED);
+        return objectMapper;
+    }
+
+    private static SimpleModule inetAddressAndPortKeyModule() {
+        var module = new SimpleModule();
+        module.addKeyDeserializer(InetAddressAndPort.class, new InetAddressAndPortKeyDeserializer());
+        return module;
+    }
+
     static class InetAddressAndPortKeyDeserializer extends KeyDeserializer {
         @Override
         public Object deserializeKey(String key, DeserializationContext deserializationContext) throws IOException {
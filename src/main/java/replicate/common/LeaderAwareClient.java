@@ -0,0 +1,89 @@
+package replicate.common;
+
+import replicate.net.InetAddressAndPort;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends requests which only the leader can handle straight to the leader.
+ * The first request goes to any replica. Its RedirectToLeader gives the leader's address,
+ * which is cached and used for all later requests, so they take no extra round trips.
+ * When the cached leader fails or redirects, the client follows the redirect, or tries
+ * the next replica if the leader is not known, e.g. while an election is in progress.
+ * So a failover costs a redirect, not a timeout. Requests are pipelined over the
+ * persistent connections of a NetworkClient.
+ */
+public class LeaderAwareClient implements Closeable {
+    private static final Duration DEFAULT_RETRY_BACKOFF = Duration.ofMillis(100);
+
+    private final List<InetAddressAndPort> replicas;
+    private final NetworkClient networkClient;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private volatile InetAddressAndPort leader;
+
+    //replicas are the client addresses of all the replicas in the cluster.
+    public LeaderAwareClient(List<InetAddressAndPort> replicas) {
+        this(replicas, new NetworkClient(), DEFAULT_RETRY_BACKOFF);
+    }
+
+    public LeaderAwareClient(List<InetAddressAndPort> replicas, NetworkClient networkClient, Duration retryBackoff) {
+        this.replicas = List.copyOf(replicas);
+        this.networkClient = networkClient;
+        this.retryBackoff = retryBackoff;
+        //enough to go round the cluster a few times while it elects a leader.
+        this.maxAttempts = replicas.size() * 3;
+    }
+
+    public <Req extends MessagePayload, Res> CompletableFuture<NetworkClient.Response<Res>> send(Req request, Class<Res> responseClass) {
+        InetAddressAndPort cachedLeader = leader;
+        return send(request, responseClass, cachedLeader != null ? cachedLeader : nextReplica(), 1);
+    }
+
+    private <Req extends MessagePayload, Res> CompletableFuture<NetworkClient.Response<Res>> send(Req request, Class<Res> responseClass, InetAddressAndPort address, int attempt) {
+        return networkClient.sendAsync(request, address, responseClass).handle((response, error) -> {
+            if (error == null && !response.isRedirect()) {
+                leader = address;
+                return CompletableFuture.completedFuture(response);
+            }
+            if (attempt >= maxAttempts) {
+                return error == null ? CompletableFuture.completedFuture(response) : CompletableFuture.<NetworkClient.Response<Res>>failedFuture(error);
+            }
+            if (error == null && response.getLeaderAddress().isPresent()) {
+                InetAddressAndPort redirectedTo = response.getLeaderAddress().get();
+                leader = redirectedTo;
+                return send(request, responseClass, redirectedTo, attempt + 1);
+            }
+            //the replica failed or does not know the leader either.
+            leader = null;
+            InetAddressAndPort next = nextReplica(address);
+            return CompletableFuture.supplyAsync(() -> next, CompletableFuture.delayedExecutor(retryBackoff.toMillis(), TimeUnit.MILLISECONDS))
+                    .thenCompose(n -> send(request, responseClass, n, attempt + 1));
+        }).thenCompose(f -> f);
+    }
+
+    private InetAddressAndPort nextReplica() {
+        return replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+    }
+
+    private InetAddressAndPort nextReplica(InetAddressAndPort current) {
+        InetAddressAndPort next = nextReplica();
+        return next.equals(current) ? nextReplica() : next;
+    }
+
+    //the leader requests are sent to, null until a replica names one.
+    public InetAddressAndPort getCachedLeader() {
+        return leader;
+    }
+
+    @Override
+    public void close() {
+        networkClient.close();
+    }
+}
@@ -3,15 +3,19 @@ package replicate.common;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import replicate.net.InetAddressAndPort;
-import replicate.net.SocketClient;
+import replicate.net.Transport;
 import replicate.quorum.QuorumKVStore;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+/**
+ * Fault injection on top of the transport. Tests use it to drop or delay the
+ * messages to a replica, everything else is passed on to the transport.
+ */
 class Network {
     private static Logger logger = LogManager.getLogger(Network.class);
 
@@ -24,25 +28,43 @@ class Network {
     Map<InetAddressAndPort, Set<MessageId>> delayMessageTypes =
             new HashMap<>();
 
-    ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+    final ScheduledExecutorService executor;
+
+    private final Transport transport;
+
+    Network(Transport transport, SystemClock clock) {
+        this.transport = transport;
+        this.executor = clock.newScheduledExecutor();
+    }
+
     public void sendOneWay(InetAddressAndPort address, RequestOrResponse message) throws IOException {
+        sendOneWay(address, message, e -> {});
+    }
+
+    /**
+     * The message is queued by the transport and written asynchronously.
+     * IOException is thrown if the message can not be queued, e.g. the outbound queue is full.
+     * Failures to write an already queued message are reported to onFailure.
+     */
+    public void sendOneWay(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
         if (dropRequestsTo.contains(address) || noOfMessagesReachedLimit(address)) {
             removeExistingConnections(address);
+            message.releasePayload();
             throw new IOException("Unable to connect to " + address);
         }
 
         if (shouldDelayMessagesOfType(address, MessageId.valueOf(message.getRequestId()))) {
-            sendAfterDelay(address, message, MESSAGE_DELAY);
+            sendAfterDelay(address, message, onFailure, MESSAGE_DELAY);
             return;
         }
 
         if (shouldDelayMessagesTo(address)) {
-            sendAfterDelay(address, message, MESSAGE_DELAY);
+            sendAfterDelay(address, message, onFailure, MESSAGE_DELAY);
             return;
         }
         logger.info("Sending " + MessageId.valueOf(message.getRequestId()) +
                 " to " + address);
-        sendMessage(address, message);
+        sendMessage(address, message, onFailure);
     }
 
     private boolean shouldDelayMessagesOfType(InetAddressAndPort address, MessageId messageId) {
@@ -52,14 +74,12 @@ class Network {
     }
 
     private void removeExistingConnections(InetAddressAndPort address) {
-        SocketClient socketClient = connectionPool.remove(address);
-        if (socketClient != null) {
-            socketClient.close();
-        }
+        transport.disconnect(address);
     }
 
     private void sendAfterDelay(InetAddressAndPort address,
                                 RequestOrResponse message,
+                                Consumer<IOException> onFailure,
                                 long delay) {
         executor.schedule(()->{
             try {
@@ -67,9 +87,9 @@ class Network {
                                 + MessageId.valueOf(message.getRequestId())
                         + " to address = " +
                                 address);
-                sendMessage(address, message);
+                sendMessage(address, message, onFailure);
             } catch (IOException e) {
-                e.printStackTrace();
+                onFailure.accept(e);
             }
         }, delay, TimeUnit.MILLISECONDS);
     }
@@ -83,11 +103,8 @@ class Network {
         return noOfRequestsSent >= delayAfterNRequests;
     }
 
-    Map<InetAddressAndPort, SocketClient> connectionPool = new HashMap<>();
-
-    private void sendMessage(InetAddressAndPort address, RequestOrResponse message) throws IOException {
-        SocketClient socketClient = getOrCreateConnection(address);
-        socketClient.sendOneway(message);
+    private void sendMessage(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
+        transport.send(address, message, onFailure);
         Integer integer = noOfMessages.get(address);
         if (integer == null) {
             integer = 0;
@@ -95,26 +112,6 @@ class Network {
         noOfMessages.put(address, integer + 1);
     }
 
-    private RequestOrResponse sendAndReceive(InetAddressAndPort address, RequestOrResponse message) throws IOException {
-        SocketClient socketClient = getOrCreateConnection(address);
-        RequestOrResponse response = socketClient.blockingSend(message);
-        Integer integer = noOfMessages.get(address);
-        if (integer == null) {
-            integer = 0;
-        }
-        noOfMessages.put(address, integer + 1);
-        return response;
-    }
-
-    private synchronized SocketClient getOrCreateConnection(InetAddressAndPort address) throws IOException {
-        SocketClient socketClient = connectionPool.get(address);
-        if (socketClient == null || !socketClient.isClosed()) {
-            socketClient = new SocketClient(address);
-            connectionPool.put(address, socketClient);
-        }
-        return socketClient;
-    }
-
     private boolean noOfMessagesReachedLimit(InetAddressAndPort address) {
         Integer dropAfterMessages = dropAfter.get(address);
         Integer noOfMessages = this.noOfMessages.get(address);
@@ -152,10 +149,6 @@ class Network {
     }
 
     public void closeAllConnections() {
-        Set<InetAddressAndPort> inetAddressAndPorts = connectionPool.keySet();
-        for (InetAddressAndPort inetAddressAndPort : inetAddressAndPorts) {
-            connectionPool.get(inetAddressAndPort).close();
-        }
-        connectionPool.clear();
+        transport.close();
     }
 }
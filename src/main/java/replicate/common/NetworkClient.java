@@ -1,15 +1,38 @@
 package replicate.common;
 
 import replicate.net.InetAddressAndPort;
+import replicate.net.PipelinedConnection;
 import replicate.net.SocketClient;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class NetworkClient implements Closeable {
+    private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(5);
+    private final Path unixSocketDir;
+    //persistent connections used by sendAsync, one per replica.
+    private final Map<InetAddressAndPort, PipelinedConnection> connections = new ConcurrentHashMap<>();
+
+    public NetworkClient() {
+        this(null);
+    }
+
+    //Connects to replicas on this host over their unix domain sockets in unixSocketDir.
+    public NetworkClient(Path unixSocketDir) {
+        this.unixSocketDir = unixSocketDir;
+    }
 
-public class NetworkClient {
     public static class Response<T> {
         T result;
         Optional<String> errorMessage = Optional.empty();
+        Optional<InetAddressAndPort> leaderAddress = Optional.empty();
+        boolean isRedirect;
 
         public boolean isSuccess() {
             return errorMessage.isEmpty();
@@ -27,8 +50,25 @@ public class NetworkClient {
             return errorMessage;
         }
 
-        public static Response error(String message) {
-            return new Response(message);
+        //The replica is not the leader. A redirect is also an error, for clients which do not follow it.
+        public boolean isRedirect() {
+            return isRedirect;
+        }
+
+        //the leader's client address, if the replica knew it.
+        public Optional<InetAddressAndPort> getLeaderAddress() {
+            return leaderAddress;
+        }
+
+        public static <R> Response<R> redirect(RedirectToLeader redirect) {
+            Response<R> response = new Response<>(redirect.getMessage());
+            response.isRedirect = true;
+            response.leaderAddress = redirect.getLeaderAddress();
+            return response;
+        }
+
+        public static <R> Response<R> error(String message) {
+            return new Response<>(message);
         }
 
         public  static <R> Response<R> result(R result) {
@@ -44,14 +84,57 @@ public class NetworkClient {
         }
     }
     public <Req extends MessagePayload, Res> Response<Res> sendAndReceive(Req request, InetAddressAndPort address, Class<Res> responseClass) throws IOException {
-        try(SocketClient<Object> client = new SocketClient<>(address)){
+        try(SocketClient<Object> client = SocketClient.connect(address, unixSocketDir)){
             RequestOrResponse getResponse = client.blockingSend(new RequestOrResponse(request.getMessageId().getId(),
                     JsonSerDes.serialize(request)));
-            if (getResponse.isError()) {
-                return Response.error(JsonSerDes.deserialize(getResponse.getMessageBodyJson(), String.class));
-            };
-            Res result = JsonSerDes.deserialize(getResponse.getMessageBodyJson(), responseClass);
-            return Response.result(result);
+            return toResponse(getResponse, responseClass);
+        }
+    }
+
+    /**
+     * Same as sendAndReceive, but pipelined over a persistent connection to the replica,
+     * so many requests can be in flight on it, without a connect or a thread per request.
+     * The connection is opened by the first request and reopened after it fails.
+     */
+    public <Req extends MessagePayload, Res> CompletableFuture<Response<Res>> sendAsync(Req request, InetAddressAndPort address, Class<Res> responseClass) {
+        PipelinedConnection connection;
+        try {
+            connection = connectionTo(address);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return connection.send(new RequestOrResponse(request.getMessageId().getId(), JsonSerDes.serialize(request)))
+                .thenApply(response -> toResponse(response, responseClass));
+    }
+
+    private PipelinedConnection connectionTo(InetAddressAndPort address) throws IOException {
+        PipelinedConnection connection = connections.get(address);
+        if (connection != null && !connection.isClosed()) {
+            return connection;
+        }
+        synchronized (connections) {
+            connection = connections.get(address);
+            if (connection == null || connection.isClosed()) {
+                connection = new PipelinedConnection(address, unixSocketDir, DEFAULT_REQUEST_TIMEOUT);
+                connections.put(address, connection);
+            }
+            return connection;
         }
     }
+
+    private static <Res> Response<Res> toResponse(RequestOrResponse response, Class<Res> responseClass) {
+        if (response.getRequestId() == MessageId.RedirectToLeader.getId()) {
+            return Response.redirect(JsonSerDes.deserialize(response.getPayload(), RedirectToLeader.class));
+        }
+        if (response.isError()) {
+            return Response.error(JsonSerDes.deserialize(response.getPayload(), String.class));
+        }
+        return Response.result(JsonSerDes.deserialize(response.getPayload(), responseClass));
+    }
+
+    @Override
+    public void close() {
+        connections.values().forEach(PipelinedConnection::close);
+        connections.clear();
+    }
 }
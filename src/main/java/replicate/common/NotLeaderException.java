@@ -0,0 +1,24 @@
+package replicate.common;
+
+import replicate.net.InetAddressAndPort;
+
+import java.util.Optional;
+
+/**
+ * Fails client requests sent to a replica which is not the leader.
+ * The replica answers them with a RedirectToLeader to the leader's client address, if it knows it.
+ */
+public class NotLeaderException extends RuntimeException {
+    private static final long serialVersionUID = -4386237129474016219L;
+
+    private final Optional<InetAddressAndPort> leaderAddress;
+
+    public NotLeaderException(String message, Optional<InetAddressAndPort> leaderAddress) {
+        super(message);
+        this.leaderAddress = leaderAddress;
+    }
+
+    public Optional<InetAddressAndPort> getLeaderAddress() {
+        return leaderAddress;
+    }
+}
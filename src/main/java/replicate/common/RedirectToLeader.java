@@ -0,0 +1,34 @@
+package replicate.common;
+
+import replicate.net.InetAddressAndPort;
+
+import java.util.Optional;
+
+/**
+ * Sent to clients instead of an error when a request which only the leader can handle
+ * reaches another replica. Carries the client address of the leader the replica knows of.
+ * While an election is in progress the leader is not known and the address is empty,
+ * the client has to try again later or try another replica.
+ */
+public class RedirectToLeader extends MessagePayload {
+    private String message;
+    private InetAddressAndPort leaderAddress; //null when not known.
+
+    public RedirectToLeader(String message, Optional<InetAddressAndPort> leaderAddress) {
+        this();
+        this.message = message;
+        this.leaderAddress = leaderAddress.orElse(null);
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Optional<InetAddressAndPort> getLeaderAddress() {
+        return Optional.ofNullable(leaderAddress);
+    }
+
+    private RedirectToLeader() {
+        super(MessageId.RedirectToLeader);
+    }
+}
@@ -2,17 +2,28 @@ package replicate.common;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import replicate.common.codec.MessageCodec;
 import replicate.heartbeat.HeartBeatScheduler;
 import replicate.net.ClientConnection;
+import replicate.net.InJvmTransport;
 import replicate.net.InetAddressAndPort;
-import replicate.net.NIOSocketListener;
+import replicate.net.Listener;
+import replicate.net.PeerLatencies;
+import replicate.net.ReferenceCountedBuffer;
+import replicate.net.SocketTransport;
+import replicate.net.Transport;
+import replicate.net.grpc.GrpcTransport;
+import replicate.net.netty.NettyTransport;
 import replicate.net.requestwaitinglist.RequestCallback;
+import replicate.net.requestwaitinglist.PendingRequestTable;
 import replicate.net.requestwaitinglist.RequestWaitingList;
+import replicate.simulation.SimulatedTransport;
 
 import java.io.IOException;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -31,48 +42,69 @@ public abstract class Replica {
     private static Logger logger = LogManager.getLogger(Replica.class);
     private final Config config;
     private final String name;
-    private final NIOSocketListener peerListener;
-    private final NIOSocketListener clientListener;
+    private final Listener peerListener;
+    private final Listener clientListener;
     private final InetAddressAndPort clientConnectionAddress;
     private final InetAddressAndPort peerConnectionAddress;
     private final Network network;
-    protected final RequestWaitingList requestWaitingList;
+    private final MessageCodec peerMessageCodec;
+    private final boolean passPeerMessagesByReference;
+    private static final byte[] NO_BYTES = new byte[0];
+    protected final PendingRequestTable<Object> requestWaitingList;
     protected SystemClock clock;
     private List<InetAddressAndPort> peerAddresses;
     private volatile long heartbeatReceivedNs = 0;
 
     //SingleThreaded executor used to execute all the state manipulation methods of replica, so that
     //all the state updates happen in a single thread, without needing any synchronization.
-    protected ScheduledExecutorService singularUpdateQueueExecutor = Executors.newSingleThreadScheduledExecutor();
+    protected ScheduledExecutorService singularUpdateQueueExecutor;
+    private final AtomicInteger correlationIds;
 
     public Replica(String name, Config config,
                    SystemClock clock,
                    InetAddressAndPort clientConnectionAddress,
                    InetAddressAndPort peerConnectionAddress,
                    List<InetAddressAndPort> peerAddresses) throws IOException {
+        checkQuorums(config, peerAddresses.size());
         this.name = name;
-        this.network = new Network();
+        Transport transport = newTransport(config);
+        this.network = new Network(transport, clock);
+        this.singularUpdateQueueExecutor = clock.newScheduledExecutor();
+        //starts anywhere, so a restarted replica does not take late responses to its earlier requests for new ones.
+        this.correlationIds = new AtomicInteger(clock.newRandom().nextInt());
+        this.heartBeatScheduler = new HeartBeatScheduler(this::sendHeartbeats, heartBeatInterval.toMillis(), clock.newScheduledExecutor());
+        this.heartbeatChecker = new HeartBeatScheduler(this::checkLeader, heartbeatTimeout.toMillis(), clock.newScheduledExecutor());
         this.config = config;
-        this.requestWaitingList = new RequestWaitingList(clock);
+        this.peerMessageCodec = config.getPeerMessageCodec();
+        this.passPeerMessagesByReference = config.isPassingPeerMessagesByReference();
+        this.requestWaitingList = new PendingRequestTable<>(clock, Duration.ofMillis(2000));
         this.clock = clock;
         this.peerAddresses = peerAddresses;
         this.clientConnectionAddress = clientConnectionAddress;
         this.peerConnectionAddress = peerConnectionAddress;
-        this.peerListener = new NIOSocketListener(this::handlePeerMessage, peerConnectionAddress);
-        this.clientListener = new NIOSocketListener(this::handleClientRequest, clientConnectionAddress);
+        this.peerListener = transport.listen(peerConnectionAddress, this::handlePeerMessage);
+        this.clientListener = transport.listenForClients(clientConnectionAddress, this::handleClientRequest);
         this.registerHandlers();
     }
 
 
+    private static Transport newTransport(Config config) {
+        return switch (config.getTransportMode()) {
+            case NETTY -> new NettyTransport(config);
+            case GRPC -> new GrpcTransport(config);
+            case IN_JVM -> new InJvmTransport(config);
+            case SIMULATED -> new SimulatedTransport(config.getSimulation());
+            default -> new SocketTransport(config);
+        };
+    }
+
     //TODO: Make heartbeat intervals configurable.
     private final Duration heartBeatInterval = Duration.ofMillis(100l);
 
     /**
      * Following schedulers support implementing basic heartbeat mechanism.
      */
-    protected HeartBeatScheduler heartBeatScheduler = new HeartBeatScheduler(()->{
-        sendHeartbeats();
-    }, heartBeatInterval.toMillis());
+    protected HeartBeatScheduler heartBeatScheduler;
 
     //no-op. implemented by subclass implementations.
     protected void sendHeartbeats() {
@@ -81,9 +113,7 @@ public abstract class Replica {
 
     protected Duration heartbeatTimeout = Duration.ofMillis(heartBeatInterval.toMillis() * 5);
 
-    protected HeartBeatScheduler heartbeatChecker = new HeartBeatScheduler(()->{
-        checkLeader();
-    }, heartbeatTimeout.toMillis());
+    protected HeartBeatScheduler heartbeatChecker;
 
     protected void checkLeader() {
         //no-op. implemented by implementations.
@@ -107,7 +137,7 @@ public abstract class Replica {
     //@see sendRequestToReplicas which expects a message from the peer.
     protected <T extends MessagePayload> void sendOneway(InetAddressAndPort address, T request, int correlationId) {
         try {
-            network.sendOneWay(address, new RequestOrResponse(request.getMessageId().getId(), serialize(request), correlationId, getPeerConnectionAddress()));
+            network.sendOneWay(address, attachPeerMessage(new RequestOrResponse(request.getMessageId().getId(), serializePeerMessage(request.getMessageId(), request), correlationId, getPeerConnectionAddress()), request));
         } catch (IOException e) {
             logger.error("Communication failure sending request to " + address + " from " + getName());
         }
@@ -117,12 +147,90 @@ public abstract class Replica {
     //Once the message is received, the callback is invoked.
     //The response message types are configured to invoke responseMessageHandler which invokes the callback
     //@see responseMessageHandler
+    //The payload is encoded once and the same buffer is sent to all the replicas.
+    //Only the header, with its correlationId, is encoded per replica.
     public <T> void sendMessageToReplicas(RequestCallback callback, MessageId messageId, T requestToReplicas) {
-        for (InetAddressAndPort replica : peerAddresses) {
+        sendMessageTo(peerAddresses, callback, messageId, requestToReplicas);
+    }
+
+    //For requests which only need a quorum of replicas to act on them.
+    //With thrifty quorums, the request is sent only to the quorum of replicas with the lowest measured
+    //round trip times, @see PeerLatencies. The rest are sent the request only if one of those fails
+    //or rejects it, or if the quorum is late. So it is only for proposals and quorum reads.
+    //Requests every replica has to act on, like commits which replicas learn values from, or which
+    //tell them to hold back, like prepare for an election, go to all of them with sendMessageToReplicas.
+    public <T, R> void sendMessageToQuorum(AsyncQuorumCallback<R> quorumCallback, MessageId messageId, T requestToReplicas) {
+        if (!config.isThriftyQuorums()) {
+            sendMessageToReplicas(quorumCallback, messageId, requestToReplicas);
+            return;
+        }
+        List<InetAddressAndPort> ranked = fastestFirst();
+        int quorum = Math.min(quorumCallback.quorum(), ranked.size());
+        List<InetAddressAndPort> remaining = ranked.subList(quorum, ranked.size());
+        var thriftyCallback = new ThriftyQuorumCallback<>(quorumCallback,
+                () -> sendMessageTo(remaining, quorumCallback, messageId, requestToReplicas));
+        sendMessageTo(ranked.subList(0, quorum), thriftyCallback, messageId, requestToReplicas);
+        if (!remaining.isEmpty()) {
+            singularUpdateQueueExecutor.schedule(thriftyCallback::sendToRemainingIfLate,
+                    config.getThriftyLateAfter().toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    //Sends to the fastest quorum, like a thrifty send. Once the p95 round trip time of that quorum
+    //passes without it being reached, and after each failure, the request is sent to one more
+    //replica, the fastest of the rest. So one slow replica does not hold up the response,
+    //at the cost of an extra request for about one in twenty of them.
+    public <T, R> void sendHedgedMessageToQuorum(AsyncQuorumCallback<R> quorumCallback, MessageId messageId, T requestToReplicas) {
+        List<InetAddressAndPort> ranked = fastestFirst();
+        int quorum = Math.min(quorumCallback.quorum(), ranked.size());
+        List<InetAddressAndPort> fastestQuorum = ranked.subList(0, quorum);
+        var hedgedCallback = new HedgedQuorumCallback<>(quorumCallback, ranked.subList(quorum, ranked.size()),
+                (replica, callback) -> sendMessageTo(List.of(replica), callback, messageId, requestToReplicas));
+        sendMessageTo(fastestQuorum, hedgedCallback, messageId, requestToReplicas);
+        if (quorum < ranked.size()) {
+            scheduleHedge(hedgedCallback, hedgeDelayNanos(fastestQuorum));
+        }
+    }
+
+    private void scheduleHedge(HedgedQuorumCallback<?> hedgedCallback, long delayNanos) {
+        singularUpdateQueueExecutor.schedule(() -> {
+            if (hedgedCallback.hedgeIfLate()) {
+                scheduleHedge(hedgedCallback, delayNanos);
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    //the highest p95 of the replicas, capped at the configured maximum, which is also used until they are measured.
+    private long hedgeDelayNanos(List<InetAddressAndPort> replicas) {
+        long maxDelayNanos = config.getHedgedReadsMaxDelay().toNanos();
+        long delayNanos = 0;
+        for (InetAddressAndPort replica : replicas) {
+            long p95 = peerLatencies().percentileNanos(replica, 0.95);
+            if (p95 == PeerLatencies.UNKNOWN) {
+                return maxDelayNanos;
+            }
+            delayNanos = Math.max(delayNanos, p95);
+        }
+        return Math.min(delayNanos, maxDelayNanos);
+    }
+
+    //this replica first, as it always acts on its own requests, e.g. the leader has to apply
+    //the values it commits. Then the others by their measured round trip times.
+    private List<InetAddressAndPort> fastestFirst() {
+        List<InetAddressAndPort> ranked = new ArrayList<>(peerAddresses.size());
+        ranked.add(peerConnectionAddress);
+        ranked.addAll(peerLatencies().fastestFirst(otherReplicas()));
+        return ranked;
+    }
+
+    private <T> void sendMessageTo(List<InetAddressAndPort> replicas, RequestCallback callback, MessageId messageId, T requestToReplicas) {
+        var payload = ReferenceCountedBuffer.wrap(serializePeerMessage(messageId, requestToReplicas));
+        for (InetAddressAndPort replica : replicas) {
             int correlationId = newCorrelationId();
-            RequestOrResponse request = new RequestOrResponse(messageId.getId(), serialize(requestToReplicas), correlationId, getPeerConnectionAddress());
-            sendMessageToReplica(callback, replica, request);
+            RequestOrResponse request = new RequestOrResponse(messageId.getId(), payload.retain(), correlationId, getPeerConnectionAddress());
+            sendMessageToReplica(callback, replica, attachPeerMessage(request, requestToReplicas));
         }
+        payload.release();
     }
 
     //Sends message to replica and expects that the replica will send back a message with the same correlationId.
@@ -131,7 +239,10 @@ public abstract class Replica {
         try {
             logger.debug(getName() + " Sending " + MessageId.valueOf(request.getRequestId()) + " to " + replicaAddress + " with CorrelationId:" + request.getCorrelationId());
             requestWaitingList.add(request.getCorrelationId(), callback);
-            network.sendOneWay(replicaAddress, request);
+            network.sendOneWay(replicaAddress, request, e -> {
+                //reported from the peer's writer thread.
+                singularUpdateQueueExecutor.execute(() -> requestWaitingList.handleError(request.getCorrelationId(), e));
+            });
          } catch (IOException e) {
             logger.error("Communication failure sending request to " + replicaAddress + " from " + getName());
             //If communication fails, it should immidiately report it to the callback.
@@ -141,17 +252,25 @@ public abstract class Replica {
     }
 
     public <T extends MessagePayload> void sendOnewayMessageToReplicas(T requestToReplicas) {
-        for (InetAddressAndPort replica : peerAddresses) {
-            int correlationId = newCorrelationId();
-            sendOneway(replica, requestToReplicas, correlationId);
-        }
+        broadcastOneway(peerAddresses, requestToReplicas);
     }
 
     public <T extends MessagePayload> void sendOnewayMessageToOtherReplicas(T requestToReplicas) {
-        for (InetAddressAndPort replica : otherReplicas()) {
+        broadcastOneway(otherReplicas(), requestToReplicas);
+    }
+
+    private <T extends MessagePayload> void broadcastOneway(List<InetAddressAndPort> replicas, T requestToReplicas) {
+        MessageId messageId = requestToReplicas.getMessageId();
+        var payload = ReferenceCountedBuffer.wrap(serializePeerMessage(messageId, requestToReplicas));
+        for (InetAddressAndPort replica : replicas) {
             int correlationId = newCorrelationId();
-            sendOneway(replica, requestToReplicas, correlationId);
+            try {
+                network.sendOneWay(replica, attachPeerMessage(new RequestOrResponse(messageId.getId(), payload.retain(), correlationId, getPeerConnectionAddress()), requestToReplicas));
+            } catch (IOException e) {
+                logger.error("Communication failure sending request to " + replica + " from " + getName());
+            }
         }
+        payload.release();
     }
 
     private List<InetAddressAndPort> otherReplicas() {
@@ -165,7 +284,7 @@ public abstract class Replica {
     public void handlePeerMessage(Message<RequestOrResponse> message)
     {
         var messageHandler = handlers.get(message.getMessageId());
-        var deserializedRequest = deserialize(message.messagePayload(), messageHandler.requestClass);
+        var deserializedRequest = deserializePeerMessage(message.messagePayload(), messageHandler.requestClass);
         singularUpdateQueueExecutor.submit(()->{
             markHeartbeatReceived(); //TODO: Mark heartbeats in message handlings explcitily. As this can be user request as well.
             RequestOrResponse request = message.messagePayload();
@@ -196,13 +315,29 @@ public abstract class Replica {
     }
 
     private static void respondToClient(Object response, Throwable throwable, int correlationId, ClientConnection clientConnection, Integer requestId) {
-        if (throwable != null) {
+        Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+        if (cause instanceof NotLeaderException notLeader) {
+            var redirect = new RedirectToLeader(notLeader.getMessage(), notLeader.getLeaderAddress());
+            clientConnection.write(new RequestOrResponse(MessageId.RedirectToLeader.getId(), serialize(redirect), correlationId));
+        } else if (throwable != null) {
             clientConnection.write(new RequestOrResponse(requestId, serialize(throwable.getMessage()), correlationId).setError());
         } else {
             clientConnection.write(new RequestOrResponse(requestId, serialize(response), correlationId));
         }
     }
 
+    //The address clients use for the replica listening for peers on peerAddress, if the servers are configured.
+    protected Optional<InetAddressAndPort> clientAddressOf(InetAddressAndPort peerAddress) {
+        List<Peer> servers = config.getServers();
+        if (servers == null || peerAddress == null) {
+            return Optional.empty();
+        }
+        return servers.stream()
+                .filter(server -> server.getAddress().equals(peerAddress))
+                .map(Peer::getClientListenAddress)
+                .findFirst();
+    }
+
     public void addClockSkew(Duration duration) {
         clock.addClockSkew(duration);
     }
@@ -272,6 +407,7 @@ public abstract class Replica {
            return null;
        };
         handlers.put(messageId, new MessageHandler(requestClass, functionWrapper));
+        JsonSerDes.warmUp(requestClass);
     }
 
     //Configures a handler to process a given request.
@@ -280,6 +416,7 @@ public abstract class Replica {
     //The sender expects a response to the request on the same connection.
     public <T  extends MessagePayload, Res> Replica handlesRequestAsync(MessageId messageId, Function<T, CompletableFuture<Res>> handler, Class<T> requestClass) {
         handlers.put(messageId, new MessageHandler(requestClass, handler));
+        JsonSerDes.warmUp(requestClass);
         return this;
     }
 
@@ -290,8 +427,14 @@ public abstract class Replica {
     public int getServerId() {
         return config.getServerId();
     }
-    private int newCorrelationId() {
-        return new Random().nextInt();
+    //Unique among the requests this replica has waiting, until the ids wrap around.
+    public int newCorrelationId() {
+        return correlationIds.getAndIncrement();
+    }
+
+    //Round trip times of the requests to each replica, which thrifty and hedged sends rank them by.
+    public PeerLatencies peerLatencies() {
+        return requestWaitingList.latencies();
     }
 
     public int getNoOfReplicas() {
@@ -307,7 +450,27 @@ public abstract class Replica {
     }
 
     protected <T> T deserialize(RequestOrResponse request, Class<T> clazz) {
-        return JsonSerDes.deserialize(request.getMessageBodyJson(), clazz);
+        return JsonSerDes.deserialize(request.getPayload(), clazz);
+    }
+
+    protected <T> T deserializePeerMessage(RequestOrResponse request, Class<T> clazz) {
+        Object attached = request.getAttachedPayload();
+        if (attached != null) {
+            return clazz.cast(attached);
+        }
+        return peerMessageCodec.decode(MessageId.valueOf(request.getRequestId()), request.getPayload(), clazz);
+    }
+
+    //With pass by reference, the message object is attached and nothing is encoded.
+    private byte[] serializePeerMessage(MessageId messageId, Object payload) {
+        if (passPeerMessagesByReference) {
+            return NO_BYTES;
+        }
+        return peerMessageCodec.encode(messageId, payload);
+    }
+
+    private RequestOrResponse attachPeerMessage(RequestOrResponse request, Object payload) {
+        return passPeerMessagesByReference ? request.withAttachedPayload(payload) : request;
     }
 
     public void dropMessagesTo(Replica n) {
@@ -338,6 +501,30 @@ public abstract class Replica {
         return getNoOfReplicas() / 2 + 1;
     }
 
+    //Replicas which need to accept a leader change, or promise in phase 1 of paxos.
+    //A majority, unless flexible quorums are configured. @see Config#withFlexibleQuorums
+    public int phase1Quorum() {
+        return config.getPhase1Quorum(getNoOfReplicas());
+    }
+
+    //Replicas which need to accept a value, in phase 2 of paxos, or an operation in replication.
+    public int phase2Quorum() {
+        return config.getPhase2Quorum(getNoOfReplicas());
+    }
+
+    //Every phase 1 quorum has to intersect every phase 2 quorum, so a new leader sees every accepted value.
+    private static void checkQuorums(Config config, int noOfReplicas) {
+        int phase1Quorum = config.getPhase1Quorum(noOfReplicas);
+        int phase2Quorum = config.getPhase2Quorum(noOfReplicas);
+        if (phase1Quorum > noOfReplicas || phase2Quorum > noOfReplicas || phase1Quorum < 1 || phase2Quorum < 1) {
+            throw new IllegalArgumentException("Quorums " + phase1Quorum + " and " + phase2Quorum + " are not possible with " + noOfReplicas + " replicas");
+        }
+        if (phase1Quorum + phase2Quorum <= noOfReplicas) {
+            throw new IllegalArgumentException("Phase 1 quorum " + phase1Quorum + " and phase 2 quorum " + phase2Quorum
+                    + " do not intersect with " + noOfReplicas + " replicas. Their sum must be more than the number of replicas.");
+        }
+    }
+
     private static byte[] serialize(Object e) {
         return JsonSerDes.serialize(e);
     }
@@ -1,17 +1,22 @@
 package replicate.common;
 
 import replicate.net.InetAddressAndPort;
+import replicate.net.ReferenceCountedBuffer;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 public class RequestOrResponse {
     private Integer requestId;
-    private byte[] messageBodyJson;
+    private ByteBuffer messageBody;
     private Integer correlationId;
     private Integer generation = -1;
     InetAddressAndPort fromAddress;
     boolean isError;
+    //set when the payload is shared with other messages. @see #releasePayload
+    private ReferenceCountedBuffer sharedPayload;
+    //the message object itself, when passed by reference within the JVM. Never serialized.
+    private transient Object attachedPayload;
 
     public RequestOrResponse setError() {
         isError = true;
@@ -46,19 +51,69 @@ public class RequestOrResponse {
     }
 
     public RequestOrResponse(int generation, Integer requestId, byte[] messageBodyJson, Integer correlationId, InetAddressAndPort fromAddress) {
+        this(generation, requestId, ByteBuffer.wrap(messageBodyJson), correlationId, fromAddress);
+    }
+
+    //used when decoding a frame. The payload is a slice of the receive buffer.
+    public RequestOrResponse(int generation, Integer requestId, ByteBuffer messageBody, Integer correlationId, InetAddressAndPort fromAddress) {
         this.generation = generation;
         this.requestId = requestId;
-        this.messageBodyJson = messageBodyJson;
+        this.messageBody = messageBody;
         this.correlationId = correlationId;
         this.fromAddress = fromAddress;
     }
 
+    //used for broadcasts. The payload is encoded once and shared by the messages to all the peers.
+    //The message holds one reference, which is released once the message is written or dropped.
+    public RequestOrResponse(Integer requestId, ReferenceCountedBuffer sharedPayload, Integer correlationId, InetAddressAndPort fromAddress) {
+        this(-1, requestId, sharedPayload.view(), correlationId, fromAddress);
+        this.sharedPayload = sharedPayload;
+    }
+
+    //used when the payload is a slice of a pooled receive buffer.
+    //The message keeps the buffer from going back to the pool until releasePayload is called.
+    public RequestOrResponse holdingPayload(ReferenceCountedBuffer buffer) {
+        this.sharedPayload = buffer.retain();
+        return this;
+    }
+
+    public void releasePayload() {
+        if (sharedPayload != null) {
+            sharedPayload.release();
+            sharedPayload = null;
+        }
+    }
+
+    //Hands the message object to a receiver in the same JVM, which uses it instead of decoding the payload.
+    //@see replicate.net.InJvmTransport
+    public RequestOrResponse withAttachedPayload(Object payload) {
+        this.attachedPayload = payload;
+        return this;
+    }
+
+    public Object getAttachedPayload() {
+        return attachedPayload;
+    }
+
     public Integer getRequestId() {
         return requestId;
     }
 
     public byte[] getMessageBodyJson() {
-        return messageBodyJson;
+        if (messageBody.hasArray()
+                && messageBody.arrayOffset() == 0
+                && messageBody.position() == 0
+                && messageBody.remaining() == messageBody.array().length) {
+            return messageBody.array();
+        }
+        byte[] bytes = new byte[messageBody.remaining()];
+        messageBody.duplicate().get(bytes);
+        return bytes;
+    }
+
+    //The payload as a view with its own position, so it can be decoded without copying.
+    public ByteBuffer getPayload() {
+        return messageBody.duplicate();
     }
 
     public Integer getCorrelationId() {
@@ -74,13 +129,13 @@ public class RequestOrResponse {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         RequestOrResponse that = (RequestOrResponse) o;
-        return Objects.equals(requestId, that.requestId) && Arrays.equals(messageBodyJson, that.messageBodyJson) && Objects.equals(correlationId, that.correlationId) && Objects.equals(generation, that.generation) && Objects.equals(fromAddress, that.fromAddress);
+        return Objects.equals(requestId, that.requestId) && Objects.equals(messageBody, that.messageBody) && Objects.equals(correlationId, that.correlationId) && Objects.equals(generation, that.generation) && Objects.equals(fromAddress, that.fromAddress);
     }
 
     @Override
     public int hashCode() {
         int result = Objects.hash(requestId, correlationId, generation, fromAddress);
-        result = 31 * result + Arrays.hashCode(messageBodyJson);
+        result = 31 * result + messageBody.hashCode();
         return result;
     }
 
@@ -88,7 +143,7 @@ public class RequestOrResponse {
     public String toString() {
         return "RequestOrResponse{" +
                 "requestId=" + requestId +
-                ", messageBodyJson=" + Arrays.toString(messageBodyJson) +
+                ", messageBodyLength=" + messageBody.remaining() +
                 ", correlationId=" + correlationId +
                 ", generation=" + generation +
                 ", fromAddress=" + fromAddress +
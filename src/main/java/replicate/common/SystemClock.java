@@ -2,18 +2,40 @@ package replicate.common;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
+/**
+ * Time, and the executors and random numbers which depend on it, for a replica.
+ * Replicas take their timers, their singular update queue and their random numbers
+ * from the clock, so a simulation can drive all of them from one seeded event loop.
+ * @see replicate.simulation.SimulatedClock
+ */
 public class SystemClock {
     public long nanoTime() {
         return System.nanoTime();
     }
     public long now() {
         //not guaranteed to be monotonic..
-        return System.currentTimeMillis() + clockSkew.toMillis();
+        return currentTimeMillis() + clockSkew.toMillis();
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
     }
 
     Duration clockSkew = Duration.of(0, ChronoUnit.MILLIS);
     public void addClockSkew(Duration clockSkew) {
         this.clockSkew = clockSkew;
     }
+
+    //A single threaded scheduled executor.
+    public ScheduledExecutorService newScheduledExecutor() {
+        return Executors.newSingleThreadScheduledExecutor();
+    }
+
+    public Random newRandom() {
+        return new Random();
+    }
 }
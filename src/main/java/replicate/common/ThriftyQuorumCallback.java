@@ -0,0 +1,49 @@
+package replicate.common;
+
+import replicate.net.InetAddressAndPort;
+import replicate.net.requestwaitinglist.RequestCallback;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Callback for the requests of a thrifty send, which went only to the fastest quorum
+ * of replicas. Everything is passed on to the quorum callback. The first error or
+ * unsuccessful response, or the quorum not being reached in time, sends the request
+ * to the remaining replicas, once. Their responses go to the quorum callback directly.
+ */
+class ThriftyQuorumCallback<T> implements RequestCallback<T> {
+    private final AsyncQuorumCallback<T> quorumCallback;
+    private final Runnable sendToRemaining;
+    private final AtomicBoolean sentToRemaining = new AtomicBoolean();
+
+    ThriftyQuorumCallback(AsyncQuorumCallback<T> quorumCallback, Runnable sendToRemaining) {
+        this.quorumCallback = quorumCallback;
+        this.sendToRemaining = sendToRemaining;
+    }
+
+    @Override
+    public void onResponse(T r, InetAddressAndPort fromAddress) {
+        quorumCallback.onResponse(r, fromAddress);
+        if (!quorumCallback.isSuccess(r)) {
+            sendToRemaining();
+        }
+    }
+
+    @Override
+    public void onError(Exception e) {
+        quorumCallback.onError(e);
+        sendToRemaining();
+    }
+
+    void sendToRemainingIfLate() {
+        if (!quorumCallback.getQuorumFuture().isDone()) {
+            sendToRemaining();
+        }
+    }
+
+    private void sendToRemaining() {
+        if (sentToRemaining.compareAndSet(false, true)) {
+            sendToRemaining.run();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package replicate.common.codec;
+
+import replicate.common.JsonSerDes;
+import replicate.common.MessageId;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact encoding for the small, frequent consensus messages.
+ * Each message type has a hand-written {@link PayloadSerializer} which writes
+ * varints straight into a ByteBuffer, without any field names.
+ * The same MessageId is used by different protocols with different payloads
+ * (e.g. MessageId.Prepare is used by both Paxos and ViewStampedReplication),
+ * so serializers are looked up by MessageId and payload class together.
+ * Messages without a registered serializer are encoded as CBOR.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+    public static final BinaryMessageCodec INSTANCE = new BinaryMessageCodec();
+
+    private record SerializerKey(MessageId messageId, Class<?> type) {}
+
+    private final Map<SerializerKey, PayloadSerializer<?>> serializers = new ConcurrentHashMap<>();
+
+    public BinaryMessageCodec() {
+        ConsensusMessageSerializers.registerAll(this);
+    }
+
+    public <T> BinaryMessageCodec register(MessageId messageId, Class<T> type, PayloadSerializer<T> serializer) {
+        serializers.put(new SerializerKey(messageId, type), serializer);
+        return this;
+    }
+
+    @Override
+    public byte[] encode(MessageId messageId, Object payload) {
+        PayloadSerializer<Object> serializer = serializerFor(messageId, payload.getClass());
+        if (serializer == null) {
+            return JsonSerDes.serialize(payload);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(serializer.sizeOf(payload));
+        serializer.write(payload, buffer);
+        return buffer.array();
+    }
+
+    @Override
+    public <T> T decode(MessageId messageId, ByteBuffer buffer, Class<T> type) {
+        PayloadSerializer<Object> serializer = serializerFor(messageId, type);
+        if (serializer == null) {
+            return JsonSerDes.deserialize(buffer, type);
+        }
+        return type.cast(serializer.read(buffer));
+    }
+
+    public boolean hasSerializer(MessageId messageId, Class<?> type) {
+        return serializerFor(messageId, type) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private PayloadSerializer<Object> serializerFor(MessageId messageId, Class<?> type) {
+        return (PayloadSerializer<Object>) serializers.get(new SerializerKey(messageId, type));
+    }
+}
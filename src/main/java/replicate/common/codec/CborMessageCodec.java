@@ -0,0 +1,23 @@
+package replicate.common.codec;
+
+import replicate.common.JsonSerDes;
+import replicate.common.MessageId;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The default codec. Messages are serialized reflectively as CBOR.
+ */
+public class CborMessageCodec implements MessageCodec {
+    public static final CborMessageCodec INSTANCE = new CborMessageCodec();
+
+    @Override
+    public byte[] encode(MessageId messageId, Object payload) {
+        return JsonSerDes.serialize(payload);
+    }
+
+    @Override
+    public <T> T decode(MessageId messageId, ByteBuffer buffer, Class<T> type) {
+        return JsonSerDes.deserialize(buffer, type);
+    }
+}
@@ -0,0 +1,282 @@
+package replicate.common.codec;
+
+import replicate.common.MessageId;
+import replicate.common.MonotonicId;
+import replicate.mpaxoswithheartbeats.HeartbeatRequest;
+import replicate.mpaxoswithheartbeats.HeartbeatResponse;
+import replicate.paxos.messages.CommitResponse;
+import replicate.paxos.messages.ProposalResponse;
+import replicate.paxoslog.messages.CommitRequest;
+import replicate.paxoslog.messages.PrepareRequest;
+import replicate.paxoslog.messages.PrepareResponse;
+import replicate.paxoslog.messages.ProposalRequest;
+import replicate.twophaseexecution.messages.ExecuteCommandRequest;
+import replicate.vsr.messages.Commit;
+import replicate.vsr.messages.Prepare;
+import replicate.vsr.messages.PrepareOK;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Serializers for the messages on the hot path of Paxos, MultiPaxos and
+ * ViewStampedReplication. The field order written here is the wire format,
+ * so new fields can only be appended.
+ */
+class ConsensusMessageSerializers {
+
+    static void registerAll(BinaryMessageCodec codec) {
+        codec.register(MessageId.ProposeRequest, ProposalRequest.class, new PayloadSerializer<>() {
+            @Override
+            public int sizeOf(ProposalRequest p) {
+                return sizeOfId(p.generation) + Varints.sizeOfInt(p.index) + Varints.sizeOfBytes(p.proposedValue);
+            }
+
+            @Override
+            public void write(ProposalRequest p, ByteBuffer buffer) {
+                writeId(buffer, p.generation);
+                Varints.writeInt(buffer, p.index);
+                Varints.writeBytes(buffer, p.proposedValue);
+            }
+
+            @Override
+            public ProposalRequest read(ByteBuffer buffer) {
+                return new ProposalRequest(readId(buffer), Varints.readInt(buffer), Varints.readBytes(buffer));
+            }
+        });
+
+        codec.register(MessageId.Commit, CommitRequest.class, new PayloadSerializer<>() {
+            @Override
+            public int sizeOf(CommitRequest p) {
+                return Varints.sizeOfInt(p.index) + Varints.sizeOfBytes(p.committedValue) + sizeOfId(p.generation);
+            }
+
+            @Override
+            public void write(CommitRequest p, ByteBuffer buffer) {
+                Varints.writeInt(buffer, p.index);
+                Varints.writeBytes(buffer, p.committedValue);
+                writeId(buffer, p.generation);
+            }
+
+            @Override
+            public CommitRequest read(ByteBuffer buffer) {
+                return new CommitRequest(Varints.readInt(buffer), Varints.readBytes(buffer), readId(buffer));
+            }
+        });
+
+        codec.register(MessageId.Prepare, PrepareRequest.class, new PayloadSerializer<>() {
+            @Override
+            public int sizeOf(PrepareRequest p) {
+                int size = 1 + (p.index == null ? 0 : Varints.sizeOfInt(p.index));
+                size += sizeOfId(p.generation);
+                size += 1 + (p.leaderLeaseDuration == null ? 0 : Varints.sizeOfLong(p.leaderLeaseDuration.toMillis()));
+                return size;
+            }
+
+            @Override
+            public void write(PrepareRequest p, ByteBuffer buffer) {
+                Varints.writeBoolean(buffer, p.index != null);
+                if (p.index != null) {
+                    Varints.writeInt(buffer, p.index);
+                }
+                writeId(buffer, p.generation);
+                Varints.writeBoolean(buffer, p.leaderLeaseDuration != null);
+                if (p.leaderLeaseDuration != null) {
+                    Varints.writeLong(buffer, p.leaderLeaseDuration.toMillis());
+                }
+            }
+
+            @Override
+            public PrepareRequest read(ByteBuffer buffer) {
+                Integer index = Varints.readBoolean(buffer) ? Varints.readInt(buffer) : null;
+                PrepareRequest request = new PrepareRequest(index, readId(buffer));
+                if (Varints.readBoolean(buffer)) {
+                    request.leaderLeaseDuration = Duration.ofMillis(Varints.readLong(buffer));
+                }
+                return request;
+            }
+        });
+
+        codec.register(MessageId.Promise, PrepareResponse.class, new PayloadSerializer<>() {
+            @Override
+            public int sizeOf(PrepareResponse p) {
+                return 1
+                        + 1 + p.acceptedValue.map(Varints::sizeOfBytes).orElse(0)
+                        + 1 + p.acceptedGeneration.map(ConsensusMessageSerializers::sizeOfId).orElse(0);
+            }
+
+            @Override
+            public void write(PrepareResponse p, ByteBuffer buffer) {
+                Varints.writeBoolean(buffer, p.promised);
+                Varints.writeBoolean(buffer, p.acceptedValue.isPresent());
+                p.acceptedValue.ifPresent(value -> Varints.writeBytes(buffer, value));
+                Varints.writeBoolean(buffer, p.acceptedGeneration.isPresent());
+                p.acceptedGeneration.ifPresent(generation -> writeId(buffer, generation));
+            }
+
+            @Override
+            public PrepareResponse read(ByteBuffer buffer) {
+                boolean promised = Varints.readBoolean(buffer);
+                Optional<byte[]> acceptedValue = Varints.readBoolean(buffer) ? Optional.ofNullable(Varints.readBytes(buffer)) : Optional.empty();
+                Optional<MonotonicId> acceptedGeneration = Varints.readBoolean(buffer) ? Optional.ofNullable(readId(buffer)) : Optional.empty();
+                return new PrepareResponse(promised, acceptedValue, acceptedGeneration);
+            }
+        });
+
+        codec.register(MessageId.ProposeResponse, ProposalResponse.class, new PayloadSerializer<>() {
+            @Override
+            public int sizeOf(ProposalResponse p) {
+                return 1;
+            }
+
+            @Override
+            public void write(ProposalResponse p, ByteBuffer buffer) {
+                Varints.writeBoolean(buffer, p.success);
+            }
+
+            @Override
+            public ProposalResponse read(ByteBuffer buffer) {
+                return new ProposalResponse(Varints.readBoolean(buffer));
+            }
+        });
+
+        codec.register(MessageId.CommitResponse, CommitResponse.class, new PayloadSerializer<>() {
+            @Override
+            public int sizeOf(CommitResponse p) {
+                return 1;
+            }
+
+            @Override
+            public void write(CommitResponse p, ByteBuffer buffer) {
+                Varints.writeBoolean(buffer, p.success);
+            }
+
+            @Override
+            public CommitResponse read(ByteBuffer buffer) {
+                return new CommitResponse(Varints.readBoolean(buffer));
+            }
+        });
+
+        codec.register(MessageId.HeartBeatRequest, HeartbeatRequest.class, new PayloadSerializer<>() {
+            @Override
+            public int sizeOf(HeartbeatRequest p) {
+                return sizeOfId(p.ballot);
+            }
+
+            @Override
+            public void write(HeartbeatRequest p, ByteBuffer buffer) {
+                writeId(buffer, p.ballot);
+            }
+
+            @Override
+            public HeartbeatRequest read(ByteBuffer buffer) {
+                return new HeartbeatRequest(readId(buffer));
+            }
+        });
+
+        codec.register(MessageId.HeartBeatResponse, HeartbeatResponse.class, new PayloadSerializer<>() {
+            @Override
+            public int sizeOf(HeartbeatResponse p) {
+                return 1 + sizeOfId(p.fullLogBallot);
+            }
+
+            @Override
+            public void write(HeartbeatResponse p, ByteBuffer buffer) {
+                Varints.writeBoolean(buffer, p.success);
+                writeId(buffer, p.fullLogBallot);
+            }
+
+            @Override
+            public HeartbeatResponse read(ByteBuffer buffer) {
+                return new HeartbeatResponse(Varints.readBoolean(buffer), readId(buffer));
+            }
+        });
+
+        codec.register(MessageId.Prepare, Prepare.class, new PayloadSerializer<>() {
+            @Override
+            public int sizeOf(Prepare p) {
+                return Varints.sizeOfInt(p.viewNumber)
+                        + 1 + (p.request == null ? 0 : Varints.sizeOfBytes(p.request.command))
+                        + Varints.sizeOfInt(p.opNumber)
+                        + Varints.sizeOfInt(p.commitNumber);
+            }
+
+            @Override
+            public void write(Prepare p, ByteBuffer buffer) {
+                Varints.writeInt(buffer, p.viewNumber);
+                Varints.writeBoolean(buffer, p.request != null);
+                if (p.request != null) {
+                    Varints.writeBytes(buffer, p.request.command);
+                }
+                Varints.writeInt(buffer, p.opNumber);
+                Varints.writeInt(buffer, p.commitNumber);
+            }
+
+            @Override
+            public Prepare read(ByteBuffer buffer) {
+                int viewNumber = Varints.readInt(buffer);
+                ExecuteCommandRequest request = Varints.readBoolean(buffer) ? new ExecuteCommandRequest(Varints.readBytes(buffer)) : null;
+                return new Prepare(viewNumber, request, Varints.readInt(buffer), Varints.readInt(buffer));
+            }
+        });
+
+        codec.register(MessageId.PrepareOK, PrepareOK.class, new PayloadSerializer<>() {
+            @Override
+            public int sizeOf(PrepareOK p) {
+                return Varints.sizeOfInt(p.viewNumber) + Varints.sizeOfInt(p.opNumber) + Varints.sizeOfInt(p.replicaIndex) + 1;
+            }
+
+            @Override
+            public void write(PrepareOK p, ByteBuffer buffer) {
+                Varints.writeInt(buffer, p.viewNumber);
+                Varints.writeInt(buffer, p.opNumber);
+                Varints.writeInt(buffer, p.replicaIndex);
+                Varints.writeBoolean(buffer, p.isAck);
+            }
+
+            @Override
+            public PrepareOK read(ByteBuffer buffer) {
+                return new PrepareOK(Varints.readInt(buffer), Varints.readInt(buffer), Varints.readInt(buffer), Varints.readBoolean(buffer));
+            }
+        });
+
+        codec.register(MessageId.Commit, Commit.class, new PayloadSerializer<>() {
+            @Override
+            public int sizeOf(Commit p) {
+                return Varints.sizeOfInt(p.viewNumber) + Varints.sizeOfInt(p.commitNumber);
+            }
+
+            @Override
+            public void write(Commit p, ByteBuffer buffer) {
+                Varints.writeInt(buffer, p.viewNumber);
+                Varints.writeInt(buffer, p.commitNumber);
+            }
+
+            @Override
+            public Commit read(ByteBuffer buffer) {
+                return new Commit(Varints.readInt(buffer), Varints.readInt(buffer));
+            }
+        });
+    }
+
+    //MonotonicIds are nullable in a few messages, so a presence byte is written first.
+    static int sizeOfId(MonotonicId id) {
+        return id == null ? 1 : 1 + Varints.sizeOfInt(id.requestId) + Varints.sizeOfInt(id.serverId);
+    }
+
+    static void writeId(ByteBuffer buffer, MonotonicId id) {
+        Varints.writeBoolean(buffer, id != null);
+        if (id != null) {
+            Varints.writeInt(buffer, id.requestId);
+            Varints.writeInt(buffer, id.serverId);
+        }
+    }
+
+    static MonotonicId readId(ByteBuffer buffer) {
+        if (!Varints.readBoolean(buffer)) {
+            return null;
+        }
+        return new MonotonicId(Varints.readInt(buffer), Varints.readInt(buffer));
+    }
+}
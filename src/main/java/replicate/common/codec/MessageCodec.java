@@ -0,0 +1,20 @@
+package replicate.common.codec;
+
+import replicate.common.MessageId;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the payload of the messages exchanged between replicas.
+ * All the replicas in a cluster need to use the same codec.
+ * @see replicate.common.Config#withBinaryPeerMessages()
+ */
+public interface MessageCodec {
+    byte[] encode(MessageId messageId, Object payload);
+
+    <T> T decode(MessageId messageId, ByteBuffer buffer, Class<T> type);
+
+    default <T> T decode(MessageId messageId, byte[] bytes, Class<T> type) {
+        return decode(messageId, ByteBuffer.wrap(bytes), type);
+    }
+}
@@ -0,0 +1,17 @@
+package replicate.common.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hand-written binary serializer for a single message type.
+ * The serializer writes only the field values, in a fixed order, so both
+ * sides must agree on the layout. sizeOf must return the exact number of bytes
+ * write produces, so that the encoder can allocate the buffer upfront.
+ */
+public interface PayloadSerializer<T> {
+    int sizeOf(T payload);
+
+    void write(T payload, ByteBuffer buffer);
+
+    T read(ByteBuffer buffer);
+}
@@ -0,0 +1,121 @@
+package replicate.common.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Variable length encoding of integers, 7 bits per byte with the high bit
+ * marking that more bytes follow. Small values like indexes, view numbers
+ * and server ids take a single byte.
+ * Signed values are zigzag encoded first, so that -1 (used for 'no index')
+ * is also a single byte.
+ */
+public class Varints {
+
+    public static int sizeOfUnsignedInt(int value) {
+        int bits = 32 - Integer.numberOfLeadingZeros(value | 1);
+        return (bits + 6) / 7;
+    }
+
+    public static void writeUnsignedInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static int readUnsignedInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public static int sizeOfInt(int value) {
+        return sizeOfUnsignedInt(zigzag(value));
+    }
+
+    public static void writeInt(ByteBuffer buffer, int value) {
+        writeUnsignedInt(buffer, zigzag(value));
+    }
+
+    public static int readInt(ByteBuffer buffer) {
+        int n = readUnsignedInt(buffer);
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    public static int sizeOfLong(long value) {
+        long n = zigzag(value);
+        int bits = 64 - Long.numberOfLeadingZeros(n | 1);
+        return (bits + 6) / 7;
+    }
+
+    public static void writeLong(ByteBuffer buffer, long value) {
+        long n = zigzag(value);
+        while ((n & ~0x7FL) != 0) {
+            buffer.put((byte) ((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        buffer.put((byte) n);
+    }
+
+    public static long readLong(ByteBuffer buffer) {
+        long n = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.get();
+            n |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (n >>> 1) ^ -(n & 1);
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public static void writeBoolean(ByteBuffer buffer, boolean value) {
+        buffer.put((byte) (value ? 1 : 0));
+    }
+
+    public static boolean readBoolean(ByteBuffer buffer) {
+        return buffer.get() != 0;
+    }
+
+    //byte arrays are length prefixed. length + 1 is written so that null can be encoded as 0.
+    public static int sizeOfBytes(byte[] bytes) {
+        if (bytes == null) {
+            return 1;
+        }
+        return sizeOfUnsignedInt(bytes.length + 1) + bytes.length;
+    }
+
+    public static void writeBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            writeUnsignedInt(buffer, 0);
+            return;
+        }
+        writeUnsignedInt(buffer, bytes.length + 1);
+        buffer.put(bytes);
+    }
+
+    public static byte[] readBytes(ByteBuffer buffer) {
+        int length = readUnsignedInt(buffer) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
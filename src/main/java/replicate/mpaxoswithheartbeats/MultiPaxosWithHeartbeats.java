@@ -18,8 +18,8 @@ import replicate.quorum.messages.GetValueRequest;
 import replicate.twophaseexecution.messages.ExecuteCommandRequest;
 import replicate.twophaseexecution.messages.ExecuteCommandResponse;
 import replicate.vsr.CompletionCallback;
-import replicate.wal.Command;
 import replicate.wal.SetValueCommand;
+import replicate.wal.SetValueCommandReader;
 
 import java.io.IOException;
 import java.time.Duration;
@@ -33,9 +33,11 @@ enum ServerRole {
 }
 
 public class MultiPaxosWithHeartbeats extends Replica {
-    Random random = new Random();
+    Random random = clock.newRandom();
     private static Logger logger = LogManager.getLogger(MultiPaxosWithHeartbeats.class);
     private final SetValueCommand NO_OP_COMMAND = new SetValueCommand("", "");
+    //reused for every entry applied on the singular update thread.
+    private final SetValueCommandReader setValueCommand = new SetValueCommandReader();
     Duration randomElectionTimeout;
     //Paxos State
     MonotonicId promisedGeneration = MonotonicId.empty();
@@ -43,6 +45,7 @@ public class MultiPaxosWithHeartbeats extends Replica {
     Map<String, String> kv = new HashMap<>();
     final int serverId;
     ServerRole role;
+    volatile InetAddressAndPort leaderAddress; //peer address of the leader sending heartbeats, null while not known.
 
     //prepare response will send a oldLeaderRemainingDuration
     //New Leader waits for max Old leader remaining duration.
@@ -104,9 +107,11 @@ public class MultiPaxosWithHeartbeats extends Replica {
         MonotonicId requestBallot = message.messagePayload().ballot;
         if (requestBallot.isAfter(this.promisedGeneration)) {
             becomeFollower(requestBallot);
+            leaderAddress = message.getFromAddress();
             HeartbeatResponse request = new HeartbeatResponse(true, this.promisedGeneration);
             sendOneway(message.getFromAddress(), request, message.getCorrelationId());
         } else if (requestBallot.equals(this.promisedGeneration)) {
+            leaderAddress = message.getFromAddress();
             HeartbeatResponse request = new HeartbeatResponse(true, this.promisedGeneration);
             sendOneway(message.getFromAddress(), request, message.getCorrelationId());
         } else if (this.promisedGeneration.isAfter(requestBallot)) {
@@ -141,7 +146,7 @@ public class MultiPaxosWithHeartbeats extends Replica {
 
     private CompletableFuture<ExecuteCommandResponse> handleClientExecuteCommand(ExecuteCommandRequest t) {
         if (role != ServerRole.Leader) {
-            return CompletableFuture.failedFuture(new RuntimeException("Can not process requests as the node is not the leader"));
+            return CompletableFuture.failedFuture(new NotLeaderException("Can not process requests as the node is not the leader", clientAddressOf(leaderAddress)));
         }
         var commitCallback = new CompletionCallback<ExecuteCommandResponse>();
         CompletableFuture<PaxosResult> appendFuture = append(t.command, commitCallback);
@@ -189,22 +194,23 @@ public class MultiPaxosWithHeartbeats extends Replica {
 
 
     private CompletableFuture<Boolean> sendCommitRequest(int index, byte[] value, MonotonicId monotonicId) {
-        AsyncQuorumCallback<CommitResponse> commitCallback = new AsyncQuorumCallback<CommitResponse>(getNoOfReplicas(), c -> c.success);
+        AsyncQuorumCallback<CommitResponse> commitCallback = new AsyncQuorumCallback<CommitResponse>(getNoOfReplicas(), phase2Quorum(), c -> c.success);
         sendMessageToReplicas(commitCallback, MessageId.Commit, new CommitRequest(index, value, monotonicId));
         return commitCallback.getQuorumFuture().thenApply(result -> true);
     }
 
 
     private CompletableFuture<byte[]> sendProposeRequest(int index, byte[] proposedValue, MonotonicId monotonicId) {
-        var proposalCallback = new AsyncQuorumCallback<ProposalResponse>(getNoOfReplicas(), p -> p.success);
+        var proposalCallback = new AsyncQuorumCallback<ProposalResponse>(getNoOfReplicas(), phase2Quorum(), p -> p.success);
         logger.debug(getName() + " proposing " + proposedValue + " for index " + index);
-        sendMessageToReplicas(proposalCallback, MessageId.ProposeRequest, new ProposalRequest(monotonicId, index, proposedValue));
+        sendMessageToQuorum(proposalCallback, MessageId.ProposeRequest, new ProposalRequest(monotonicId, index, proposedValue));
         return proposalCallback.getQuorumFuture().thenApply(r -> proposedValue);
     }
     //convert to message.All state changes should happen via message to SingularUpdateQueue.
 
     private void becomeCandidate() {
         this.role = ServerRole.LookingForLeader;
+        this.leaderAddress = null;
         heartbeatChecker.stop();
         heartBeatScheduler.stop();
     }
@@ -231,6 +237,7 @@ public class MultiPaxosWithHeartbeats extends Replica {
         this.isLeader = true;
         this.promisedGeneration = result;
         this.role = ServerRole.Leader;
+        this.leaderAddress = getPeerConnectionAddress();
         heartbeatChecker.stop();
         heartBeatScheduler.restart();
         logger.info(getName() + " is leader for " + result);
@@ -294,7 +301,7 @@ public class MultiPaxosWithHeartbeats extends Replica {
     }
 
     private CompletableFuture<Map<InetAddressAndPort, FullLogPrepareResponse>> sendFullLogPrepare(MonotonicId fullLogPromisedGeneration) {
-        var prepareCallback = new AsyncQuorumCallback<FullLogPrepareResponse>(getNoOfReplicas(), r -> r.promised);
+        var prepareCallback = new AsyncQuorumCallback<FullLogPrepareResponse>(getNoOfReplicas(), phase1Quorum(), r -> r.promised);
         logger.info(getName() + " sending prepare request for " + fullLogPromisedGeneration);
         sendMessageToReplicas(prepareCallback, MessageId.Prepare, new PrepareRequest(-1, fullLogPromisedGeneration));
         return prepareCallback.getQuorumFuture();
@@ -337,11 +344,10 @@ public class MultiPaxosWithHeartbeats extends Replica {
     }
 
     private void addAndApply(int index, byte[] walEnty) {
-        Command command = Command.deserialize(walEnty);
-        if (command instanceof SetValueCommand) {
-            SetValueCommand setValueCommand = (SetValueCommand) command;
-            kv.put(setValueCommand.getKey(), setValueCommand.getValue());
-            requestWaitingList.handleResponse(index, new ExecuteCommandResponse(Optional.of(setValueCommand.getValue()), true));
+        if (setValueCommand.wrap(walEnty)) {
+            String value = setValueCommand.value();
+            kv.put(setValueCommand.key(), value);
+            requestWaitingList.handleResponse(index, new ExecuteCommandResponse(Optional.of(value), true));
         }
     }
 
@@ -378,6 +384,7 @@ public class MultiPaxosWithHeartbeats extends Replica {
         logger.info(getName() + " becoming follower for " + ballot);
         promisedGeneration = ballot;
         this.role = ServerRole.Follower;
+        this.leaderAddress = null; //until the leader's heartbeat arrives.
         heartBeatScheduler.stop();
         heartbeatChecker.restart();
         markHeartbeatReceived();
@@ -17,8 +17,8 @@ import replicate.quorum.messages.GetValueRequest;
 import replicate.twophaseexecution.messages.ExecuteCommandRequest;
 import replicate.twophaseexecution.messages.ExecuteCommandResponse;
 import replicate.vsr.CompletionCallback;
-import replicate.wal.Command;
 import replicate.wal.SetValueCommand;
+import replicate.wal.SetValueCommandReader;
 
 import java.io.IOException;
 import java.util.*;
@@ -33,6 +33,8 @@ enum ServerRole {
 public class MultiPaxos extends Replica {
     private static Logger logger = LogManager.getLogger(MultiPaxos.class);
     private final SetValueCommand NO_OP_COMMAND = new SetValueCommand("", "");
+    //reused for every entry applied on the singular update thread.
+    private final SetValueCommandReader setValueCommand = new SetValueCommandReader();
     //Paxos State
     //Generation value to avoid concurrent updates
     //Only the node with the highest generation will be
@@ -57,6 +59,7 @@ public class MultiPaxos extends Replica {
     AtomicInteger maxKnownPaxosRoundId = new AtomicInteger(1);
     final int serverId;
     ServerRole role;
+    volatile InetAddressAndPort leaderAddress; //peer address of the node whose ballot was last accepted, null while not known.
 
     //State exposed to clients. Committed after successful paxos rounds.
     Map<String, String> kv = new HashMap<>();
@@ -122,7 +125,7 @@ public class MultiPaxos extends Replica {
 
     private CompletableFuture<ExecuteCommandResponse> handleClientExecuteCommand(ExecuteCommandRequest t) {
         if (role != ServerRole.Leader) {
-            return CompletableFuture.failedFuture(new RuntimeException("Can not process requests as the node is not the leader"));
+            return CompletableFuture.failedFuture(new NotLeaderException("Can not process requests as the node is not the leader", clientAddressOf(leaderAddress)));
         }
         var commitCallback = new CompletionCallback<ExecuteCommandResponse>();
         CompletableFuture<PaxosResult> appendFuture = append(t.command, commitCallback);
@@ -170,16 +173,16 @@ public class MultiPaxos extends Replica {
 
 
     private CompletableFuture<Boolean> sendCommitRequest(int index, byte[] value, MonotonicId monotonicId) {
-        AsyncQuorumCallback<CommitResponse> commitCallback = new AsyncQuorumCallback<CommitResponse>(getNoOfReplicas(), c -> c.success);
+        AsyncQuorumCallback<CommitResponse> commitCallback = new AsyncQuorumCallback<CommitResponse>(getNoOfReplicas(), phase2Quorum(), c -> c.success);
         sendMessageToReplicas(commitCallback, MessageId.Commit, new CommitRequest(index, value, monotonicId));
         return commitCallback.getQuorumFuture().thenApply(result -> true);
     }
 
 
     private CompletableFuture<byte[]> sendProposeRequest(int index, byte[] proposedValue, MonotonicId monotonicId) {
-        var proposalCallback = new AsyncQuorumCallback<ProposalResponse>(getNoOfReplicas(), p -> p.success);
+        var proposalCallback = new AsyncQuorumCallback<ProposalResponse>(getNoOfReplicas(), phase2Quorum(), p -> p.success);
         logger.debug(getName() + " proposing " + proposedValue + " for index " + index);
-        sendMessageToReplicas(proposalCallback, MessageId.ProposeRequest, new ProposalRequest(monotonicId, index, proposedValue));
+        sendMessageToQuorum(proposalCallback, MessageId.ProposeRequest, new ProposalRequest(monotonicId, index, proposedValue));
         return proposalCallback.getQuorumFuture().thenApply(r -> proposedValue);
     }
 
@@ -192,6 +195,7 @@ public class MultiPaxos extends Replica {
                 logger.info(getName() + " is leader for " + promisedGeneration);
                 this.isLeader = true;
                 this.role = ServerRole.Leader;
+                this.leaderAddress = getPeerConnectionAddress();
                 heartbeatChecker.stop();
                 heartBeatScheduler.start();
             }
@@ -259,7 +263,7 @@ public class MultiPaxos extends Replica {
     private CompletableFuture<Map<InetAddressAndPort, FullLogPrepareResponse>>
                 sendFullLogPrepare(MonotonicId newGeneration) {
         var prepareCallback
-                = new AsyncQuorumCallback<FullLogPrepareResponse>(getNoOfReplicas(), r -> r.promised);
+                = new AsyncQuorumCallback<FullLogPrepareResponse>(getNoOfReplicas(), phase1Quorum(), r -> r.promised);
 
         logger.info(getName() + " sending prepare request for " + newGeneration);
 
@@ -306,12 +310,10 @@ public class MultiPaxos extends Replica {
     }
 
     private void addAndApply(int index, byte[] walEnty) {
-        Command command = Command.deserialize(walEnty);
-        if (command instanceof SetValueCommand) {
-            SetValueCommand setValueCommand = (SetValueCommand) command;
-            kv.put(setValueCommand.getKey(), setValueCommand.getValue());
-            requestWaitingList.handleResponse(index, new ExecuteCommandResponse(Optional.of(setValueCommand.getValue()), true));
-
+        if (setValueCommand.wrap(walEnty)) {
+            String value = setValueCommand.value();
+            kv.put(setValueCommand.key(), value);
+            requestWaitingList.handleResponse(index, new ExecuteCommandResponse(Optional.of(value), true));
         }
     }
 
@@ -342,6 +344,7 @@ public class MultiPaxos extends Replica {
         logger.info(getName() + " accepting ballot " + ballot + ". Becoming follower.");
         promisedGeneration = ballot;
         this.role = ServerRole.Follower;
+        this.leaderAddress = message.getFromAddress();
         heartBeatScheduler.stop();
         heartbeatChecker.start();
         sendOneway(message.getFromAddress(),
@@ -1,16 +1,18 @@
 package replicate.net;
 
-import replicate.common.JsonSerDes;
 import replicate.common.RequestOrResponse;
 
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class BlockingIOConnection implements ClientConnection {
     private RequestConsumer server;
     Socket clientSocket;
+    //a lock rather than synchronized, which would pin a virtual thread to its carrier while it blocks on the write.
+    private final ReentrantLock writeLock = new ReentrantLock();
 
     public BlockingIOConnection(RequestConsumer server, Socket clientSocket) {
         this.server = server;
@@ -19,18 +21,19 @@ public class BlockingIOConnection implements ClientConnection {
 
     //<codeFragment name="blockingClientConnectionWrite">
     @Override
-    public synchronized void write(RequestOrResponse response) {
+    public void write(RequestOrResponse response) {
+        writeLock.lock();
         try {
-            var serializedMessage = JsonSerDes.serialize(response);
+            var frame = FrameCodec.encode(response);
             var outputStream = clientSocket.getOutputStream();
-            var dataStream = new DataOutputStream(outputStream);
-            dataStream.writeInt(serializedMessage.length);
-            dataStream.write(serializedMessage);
-            dataStream.flush();
+            outputStream.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            outputStream.flush();
 
         } catch (Exception e) {
             e.printStackTrace();
             new NetworkException(e);
+        } finally {
+            writeLock.unlock();
         }
     }
     //</codeFragment>
@@ -41,7 +44,7 @@ public class BlockingIOConnection implements ClientConnection {
     }
 
     private RequestOrResponse deserialize(byte[] responseBytes) {
-        return JsonSerDes.deserialize(responseBytes, RequestOrResponse.class);
+        return FrameCodec.decode(ByteBuffer.wrap(responseBytes));
     }
 
 
@@ -51,7 +54,7 @@ public class BlockingIOConnection implements ClientConnection {
             var dataInputStream = new DataInputStream(inputStream);
             var size = dataInputStream.readInt();
             var responseBytes = new byte[size];
-            dataInputStream.read(responseBytes);
+            dataInputStream.readFully(responseBytes);
             return responseBytes;
 
         } catch (IOException e) {
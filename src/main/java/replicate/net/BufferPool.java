@@ -0,0 +1,69 @@
+package replicate.net;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pool of direct buffers in power of two size classes, from 4KB to 1MB.
+ * Buffers of a class are carved out of a larger slab allocated in one go, and go
+ * back to their class when the last reference to them is released.
+ * So once the pool has warmed up, receiving and sending frames does not allocate
+ * buffer memory, and socket reads and writes avoid the copy through a
+ * temporary direct buffer which the JDK makes for heap buffers.
+ * Requests bigger than the largest class get an unpooled heap buffer.
+ */
+public class BufferPool {
+    public static final BufferPool DEFAULT = new BufferPool();
+
+    static final int MIN_CLASS_SHIFT = 12; //4KB
+    static final int MAX_CLASS_SHIFT = 20; //1MB
+    private static final int SLAB_SIZE = 1 << MAX_CLASS_SHIFT;
+
+    @SuppressWarnings("unchecked")
+    private final Queue<ByteBuffer>[] free = new Queue[MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1];
+
+    public BufferPool() {
+        for (int i = 0; i < free.length; i++) {
+            free[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * A cleared buffer with at least minCapacity bytes, holding one reference.
+     * It is returned to the pool when that reference is released.
+     */
+    public ReferenceCountedBuffer acquire(int minCapacity) {
+        if (minCapacity > (1 << MAX_CLASS_SHIFT)) {
+            return new ReferenceCountedBuffer(ByteBuffer.allocate(minCapacity), () -> {});
+        }
+        int sizeClass = sizeClass(minCapacity);
+        ByteBuffer buffer = free[sizeClass].poll();
+        if (buffer == null) {
+            buffer = allocateSlab(sizeClass);
+        }
+        buffer.clear();
+        ByteBuffer pooled = buffer;
+        return new ReferenceCountedBuffer(pooled, () -> free[sizeClass].add(pooled));
+    }
+
+    //Buffers currently in the pool, for the given class.
+    int available(int sizeClass) {
+        return free[sizeClass].size();
+    }
+
+    static int sizeClass(int capacity) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1);
+        return Math.max(shift, MIN_CLASS_SHIFT) - MIN_CLASS_SHIFT;
+    }
+
+    //Carves one slab into buffers of the class. One is returned, the rest are added to the pool.
+    private ByteBuffer allocateSlab(int sizeClass) {
+        int bufferSize = 1 << (sizeClass + MIN_CLASS_SHIFT);
+        ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+        for (int offset = bufferSize; offset < SLAB_SIZE; offset += bufferSize) {
+            free[sizeClass].add(slab.slice(offset, bufferSize));
+        }
+        return slab.slice(0, bufferSize);
+    }
+}
@@ -0,0 +1,168 @@
+package replicate.net;
+
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format of a RequestOrResponse.
+ * A fixed binary header followed by the raw payload bytes, so the payload is
+ * encoded once by the sender and decoded once, straight from the receive buffer.
+ *
+ * +-------------+-----------+---------------+------------+-------+----------------------+----------------+---------+
+ * | frame size  | requestId | correlationId | generation | flags | from address         | payload length | payload |
+ * | (int)       | (int)     | (int)         | (int)      | (byte)| (len byte, addr, int)| (int)          |         |
+ * +-------------+-----------+---------------+------------+-------+----------------------+----------------+---------+
+ *
+ * The from address is present only if the HAS_FROM_ADDRESS flag is set.
+ * The frame size prefix is read by the receiver (see ReceiveBuffer) and is not part of
+ * the buffer passed to decode.
+ *
+ * Several frames to the same peer can be coalesced into one BatchRequest frame.
+ * Its payload is the inner frames one after the other, each with its own size prefix.
+ */
+public class FrameCodec {
+    static final byte ERROR = 1;
+    static final byte HAS_FROM_ADDRESS = 2;
+    static final int BATCH_HEADER_SIZE = headerSize((byte[]) null);
+
+    public static ByteBuffer encode(RequestOrResponse message) {
+        return encode(message, ByteBuffer.allocate(frameSize(message)));
+    }
+
+    /**
+     * Encodes the whole frame into target, e.g. a pooled buffer of at least frameSize bytes.
+     * Returns the target, flipped for writing.
+     */
+    public static ByteBuffer encode(RequestOrResponse message, ByteBuffer target) {
+        return encodeHeader(message, target).put(message.getPayload()).flip();
+    }
+
+    /**
+     * Encodes only the size prefix and the header. The payload is written after it.
+     */
+    public static ByteBuffer encodeHeader(RequestOrResponse message) {
+        return encodeHeader(message, ByteBuffer.allocate(headerSize(message))).flip();
+    }
+
+    //Appends the size prefix and the header to the buffer.
+    static ByteBuffer encodeHeader(RequestOrResponse message, ByteBuffer buffer) {
+        int payloadLength = message.getPayload().remaining();
+        InetAddressAndPort fromAddress = message.getFromAddress();
+        byte[] addressBytes = fromAddress == null ? null : fromAddress.getAddress().getAddress();
+        buffer.putInt(headerSize(addressBytes) - 4 + payloadLength);
+        buffer.putInt(message.getRequestId());
+        buffer.putInt(message.getCorrelationId());
+        buffer.putInt(message.getGeneration());
+        buffer.put(flags(message, addressBytes));
+        if (addressBytes != null) {
+            buffer.put((byte) addressBytes.length);
+            buffer.put(addressBytes);
+            buffer.putInt(fromAddress.getPort());
+        }
+        buffer.putInt(payloadLength);
+        return buffer;
+    }
+
+    /**
+     * Appends the size prefix and the header of a BatchRequest frame to the buffer.
+     * The inner frames, of innerFramesSize bytes in total, are written after it.
+     */
+    static ByteBuffer encodeBatchHeader(int innerFramesSize, ByteBuffer buffer) {
+        buffer.putInt(BATCH_HEADER_SIZE - 4 + innerFramesSize);
+        buffer.putInt(MessageId.BatchRequest.getId());
+        buffer.putInt(-1);
+        buffer.putInt(-1);
+        buffer.put((byte) 0);
+        buffer.putInt(innerFramesSize);
+        return buffer;
+    }
+
+    public static boolean isBatch(RequestOrResponse message) {
+        return message.getRequestId() == MessageId.BatchRequest.getId();
+    }
+
+    /**
+     * Splits the payload of a BatchRequest frame into its messages, in the order they were sent.
+     * Like decode, the payloads are slices of the batch payload.
+     */
+    public static List<RequestOrResponse> decodeBatch(ByteBuffer batchPayload) {
+        List<RequestOrResponse> messages = new ArrayList<>();
+        while (batchPayload.hasRemaining()) {
+            int frameSize = batchPayload.getInt();
+            ByteBuffer frame = batchPayload.slice(batchPayload.position(), frameSize);
+            batchPayload.position(batchPayload.position() + frameSize);
+            messages.add(decode(frame));
+        }
+        return messages;
+    }
+
+    //encoded size of the message, including the size prefix.
+    public static int frameSize(RequestOrResponse message) {
+        return headerSize(message) + message.getPayload().remaining();
+    }
+
+    /**
+     * Decodes the frame in the buffer. The payload of the returned message
+     * is a slice of the same buffer, the bytes are not copied.
+     */
+    public static RequestOrResponse decode(ByteBuffer frame) {
+        int requestId = frame.getInt();
+        int correlationId = frame.getInt();
+        int generation = frame.getInt();
+        byte flags = frame.get();
+        InetAddressAndPort fromAddress = null;
+        if ((flags & HAS_FROM_ADDRESS) != 0) {
+            byte[] addressBytes = new byte[frame.get()];
+            frame.get(addressBytes);
+            fromAddress = new InetAddressAndPort(toInetAddress(addressBytes), frame.getInt());
+        }
+        int payloadLength = frame.getInt();
+        ByteBuffer payload = frame.slice(frame.position(), payloadLength);
+        frame.position(frame.position() + payloadLength);
+
+        RequestOrResponse message = new RequestOrResponse(generation, requestId, payload, correlationId, fromAddress);
+        if ((flags & ERROR) != 0) {
+            message.setError();
+        }
+        return message;
+    }
+
+    //including the size prefix
+    private static int headerSize(RequestOrResponse message) {
+        InetAddressAndPort fromAddress = message.getFromAddress();
+        return headerSize(fromAddress == null ? null : fromAddress.getAddress().getAddress());
+    }
+
+    private static int headerSize(byte[] addressBytes) {
+        int size = 4 + 4 + 4 + 4 + 1 + 4;
+        if (addressBytes != null) {
+            size += 1 + addressBytes.length + 4;
+        }
+        return size;
+    }
+
+    private static byte flags(RequestOrResponse message, byte[] addressBytes) {
+        byte flags = 0;
+        if (message.isError()) {
+            flags |= ERROR;
+        }
+        if (addressBytes != null) {
+            flags |= HAS_FROM_ADDRESS;
+        }
+        return flags;
+    }
+
+    private static InetAddress toInetAddress(byte[] addressBytes) {
+        try {
+            return InetAddress.getByAddress(addressBytes);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid address in frame header", e);
+        }
+    }
+}
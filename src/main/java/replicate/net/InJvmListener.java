@@ -0,0 +1,59 @@
+package replicate.net;
+
+import replicate.common.Message;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+
+import java.io.UncheckedIOException;
+import java.net.BindException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A listener bound to an address in this JVM, @see InJvmTransport.
+ * Messages are handed to the consumer on the sending thread.
+ */
+class InJvmListener implements Listener {
+    private static final Map<InetAddressAndPort, InJvmListener> bound = new ConcurrentHashMap<>();
+
+    //Peers reply with messages of their own, so writes to the peer connection go nowhere.
+    private static final ClientConnection NO_REPLIES = new ClientConnection() {
+        @Override
+        public void write(RequestOrResponse response) {
+            response.releasePayload();
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final InetAddressAndPort address;
+    private final RequestConsumer consumer;
+
+    InJvmListener(InetAddressAndPort address, RequestConsumer consumer) {
+        this.address = address;
+        this.consumer = consumer;
+    }
+
+    static InJvmListener boundTo(InetAddressAndPort address) {
+        return bound.get(address);
+    }
+
+    @Override
+    public void start() {
+        if (bound.putIfAbsent(address, this) != null) {
+            throw new UncheckedIOException(new BindException("Address already in use: " + address));
+        }
+    }
+
+    @Override
+    public void shudown() {
+        bound.remove(address, this);
+    }
+
+    void deliver(RequestOrResponse message) {
+        var header = new Message.Header(message.getFromAddress(), message.getCorrelationId(), MessageId.valueOf(message.getRequestId()));
+        consumer.accept(new Message<>(message, header, NO_REPLIES));
+    }
+}
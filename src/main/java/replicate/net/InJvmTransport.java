@@ -0,0 +1,73 @@
+package replicate.net;
+
+import replicate.common.Config;
+import replicate.common.RequestOrResponse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.net.ConnectException;
+import java.util.function.Consumer;
+
+/**
+ * Delivers peer messages between replicas running in the same JVM, without sockets
+ * or frame encoding. A send hands the message straight to the peer's consumer, which
+ * decodes it and queues it for the peer's singular update thread, so messages from
+ * one sender arrive in the order they were sent.
+ * With Config.withInJvmTransport(true), replicas also skip the peer message codec
+ * and pass the message objects themselves, @see RequestOrResponse#getAttachedPayload.
+ * Messages go through Network as with any other transport, so drops and delays work
+ * the same way.
+ *
+ * This is for benchmarks and tests which measure the protocols without I/O.
+ * Clients still connect over TCP, so the client listener is a NIOSocketListener.
+ */
+public class InJvmTransport implements Transport {
+    private final int reactorThreads;
+    private final int dispatchThreads;
+    private final WriteWatermarks watermarks;
+    private final Path unixSocketDir;
+    private volatile boolean closed;
+
+    public InJvmTransport(Config config) {
+        this.reactorThreads = config.getListenerReactorThreads();
+        this.dispatchThreads = config.getListenerDispatchThreads();
+        this.watermarks = config.getWriteWatermarks();
+        this.unixSocketDir = config.getUnixSocketDir();
+    }
+
+    @Override
+    public Listener listen(InetAddressAndPort address, RequestConsumer consumer) {
+        return new InJvmListener(address, consumer);
+    }
+
+    @Override
+    public Listener listenForClients(InetAddressAndPort address, RequestConsumer consumer) throws IOException {
+        return new NIOSocketListener(consumer, address, reactorThreads, dispatchThreads, watermarks, unixSocketDir);
+    }
+
+    @Override
+    public void send(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
+        try {
+            if (closed) {
+                throw new IOException("Transport is closed");
+            }
+            InJvmListener listener = InJvmListener.boundTo(address);
+            if (listener == null) {
+                throw new ConnectException("Connection refused: nothing listening on " + address);
+            }
+            listener.deliver(message);
+        } finally {
+            message.releasePayload(); //the consumer has decoded it.
+        }
+    }
+
+    @Override
+    public void disconnect(InetAddressAndPort address) {
+        //no connections to close.
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
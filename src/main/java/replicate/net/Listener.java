@@ -0,0 +1,10 @@
+package replicate.net;
+
+/**
+ * Accepts connections on an address and hands the requests read from them to a RequestConsumer.
+ */
+public interface Listener {
+    void start();
+
+    void shudown();
+}
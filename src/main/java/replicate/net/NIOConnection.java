@@ -9,25 +9,49 @@ import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class NIOConnection implements ClientConnection, Logging {
     private static final Logger LOG = LogManager.getLogger(NIOConnection.class);
+    private static final int MAX_BUFFERS_PER_WRITE = 64;
 
     private SocketChannel sock;
     private SelectionKey sk;
     private NIOSocketListener server;
-    private boolean closed;
-    private BoundedByteBufferReceive receive = null;
-    LinkedBlockingQueue<ByteBuffer> outgoingBuffers = new LinkedBlockingQueue<ByteBuffer>();
+    //written by the reactor thread, read by the dispatch threads writing responses.
+    private volatile boolean closed;
+    private final ReceiveBuffer receive;
+    //responses waiting to be written. Each is a frame encoded into a pooled buffer.
+    private record Outgoing(ReferenceCountedBuffer owner, ByteBuffer frame) {}
+    private final Queue<Outgoing> outgoingBuffers = new ConcurrentLinkedQueue<>();
+    //reused for every gathering write, accessed only by the reactor thread.
+    private final ByteBuffer[] writeBuffers = new ByteBuffer[MAX_BUFFERS_PER_WRITE];
+    private final BufferPool bufferPool;
+    private final WriteWatermarks watermarks;
+    //bytes of responses queued but not yet written.
+    private final AtomicLong pendingWriteBytes = new AtomicLong();
+    private volatile boolean readPaused;
     private RequestConsumer requestConsumer;
-    public NIOConnection(SocketChannel sock, SelectionKey sk, NIOSocketListener server, RequestConsumer consumer) {
+    //shared by all the connections of the listener.
+    private final Executor executor;
+
+    public NIOConnection(SocketChannel sock, SelectionKey sk, NIOSocketListener server, RequestConsumer consumer, Executor executor) {
+        this(sock, sk, server, consumer, executor, BufferPool.DEFAULT, WriteWatermarks.DEFAULT);
+    }
+
+    public NIOConnection(SocketChannel sock, SelectionKey sk, NIOSocketListener server, RequestConsumer consumer, Executor executor, BufferPool bufferPool, WriteWatermarks watermarks) {
+        this.bufferPool = bufferPool;
+        this.watermarks = watermarks;
+        this.receive = new ReceiveBuffer(bufferPool);
         this.sock = sock;
         this.sk = sk;
         this.server = server;
         this.requestConsumer = consumer;
+        this.executor = executor;
     }
 
     void doIO(SelectionKey selectionKey) throws InterruptedException {
@@ -40,17 +64,7 @@ public class NIOConnection implements ClientConnection, Logging {
             }
             //<codeFragment name="nioWrite">
             if (selectionKey.isWritable()) {
-                if (outgoingBuffers.size() > 0) {
-                    long bytesSent = sock.write(outgoingBuffers.toArray(ByteBuffer[]::new));
-                    for (ByteBuffer outgoingBuffer : outgoingBuffers) {
-                        if (!outgoingBuffer.hasRemaining()) {
-                            outgoingBuffers.remove(outgoingBuffer);
-                        }
-                    }
-                    if (outgoingBuffers.isEmpty()) {
-                        selectionKey.interestOps(selectionKey.interestOps() & (~SelectionKey.OP_WRITE));
-                    }
-                }
+                writePending(selectionKey);
             }
             //</codeFragment>
         } catch (CancelledKeyException e) {
@@ -61,31 +75,71 @@ public class NIOConnection implements ClientConnection, Logging {
         }
     }
 
-    Executor executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-
     private void read(SelectionKey key) throws Exception {
         var socketChannel = (SocketChannel)key.channel();
-        if (receive == null) {
-            receive = new BoundedByteBufferReceive();
-        }
-        int bytesRead = receive.readFrom(socketChannel);
-        if (bytesRead < 0) {
-            close();
-        } else if (receive.complete) {
-            RequestOrResponse deserialize = JsonSerDes.deserialize(receive.contentBuffer.flip().array(), RequestOrResponse.class);
-            RequestOrResponse request = deserialize;
-
+        receive.readFrom(socketChannel);
+        //one read can bring in several frames.
+        RequestOrResponse request;
+        while ((request = receive.nextFrame()) != null) {
+            //the payload stays in the receive buffer and is decoded by the handler.
             //TODO:submit request
             //requestChannel.sendRequest(new RequestWrapper(id, request, key));
-            MessageId messageId = MessageId.valueOf(request.getRequestId());
             //submit for execution.
-            var header = new Message.Header(request.getFromAddress(), request.getCorrelationId(), messageId);
-            executor.execute(()-> requestConsumer.accept(new Message<RequestOrResponse>(request, header, this)));
-            receive = null; //ready to read next request.
-        } else {
-            // more reading to be done
-            getLogger().trace("Did not finish reading, registering for read again on connection " + socketChannel.getRemoteAddress());
-            key.interestOps(SelectionKey.OP_READ);
+            RequestOrResponse received = request;
+            executor.execute(() -> dispatchAndRelease(received));
+        }
+        receive.compact();
+    }
+
+    private void dispatchAndRelease(RequestOrResponse request) {
+        try {
+            if (FrameCodec.isBatch(request)) {
+                //messages in a batch are handed to the consumer one after the other, in the order they were sent.
+                FrameCodec.decodeBatch(request.getPayload()).forEach(this::dispatch);
+            } else {
+                dispatch(request);
+            }
+        } finally {
+            //consumers decode the payload before accept returns, so the receive buffer can be reused.
+            request.releasePayload();
+        }
+    }
+
+    private void dispatch(RequestOrResponse request) {
+        MessageId messageId = MessageId.valueOf(request.getRequestId());
+        var header = new Message.Header(request.getFromAddress(), request.getCorrelationId(), messageId);
+        requestConsumer.accept(new Message<RequestOrResponse>(request, header, this));
+    }
+
+    //Gathering write of as many pending responses as fit in writeBuffers.
+    //Responses are released back to the pool once fully written.
+    private void writePending(SelectionKey selectionKey) throws IOException {
+        int count = 0;
+        for (Outgoing outgoing : outgoingBuffers) {
+            if (count == writeBuffers.length) {
+                break;
+            }
+            writeBuffers[count++] = outgoing.frame();
+        }
+        if (count > 0) {
+            long written = sock.write(writeBuffers, 0, count);
+            Arrays.fill(writeBuffers, 0, count, null);
+            long pending = pendingWriteBytes.addAndGet(-written);
+            if (pending <= watermarks.lowBytes()) {
+                resumeReads(selectionKey); //checks readPaused under the lock, so a concurrent pause is not missed.
+            }
+        }
+        Outgoing written;
+        while ((written = outgoingBuffers.peek()) != null && !written.frame().hasRemaining()) {
+            outgoingBuffers.poll();
+            written.owner().release();
+        }
+        if (outgoingBuffers.isEmpty()) {
+            selectionKey.interestOpsAnd(~SelectionKey.OP_WRITE);
+            //a response added after the check above sets OP_WRITE again.
+            if (!outgoingBuffers.isEmpty()) {
+                selectionKey.interestOpsOr(SelectionKey.OP_WRITE);
+            }
         }
     }
 
@@ -95,9 +149,7 @@ public class NIOConnection implements ClientConnection, Logging {
             return;
         }
         closed = true;
-        synchronized (server.cnxns) {
-            server.cnxns.remove(this);
-        }
+        server.removeCnxn(this);
         if (requestConsumer != null) {
             requestConsumer.close(this);
         }
@@ -110,20 +162,15 @@ public class NIOConnection implements ClientConnection, Logging {
              * If you just do sock.close() there are cases where the socket
              * doesn't actually close...
              */
-            sock.socket().shutdownOutput();
+            sock.shutdownOutput();
         } catch (IOException e) {
             // This is a relatively common exception that we can't avoid
         }
         try {
-            sock.socket().shutdownInput();
+            sock.shutdownInput();
         } catch (IOException e) {
             LOG.warn("ignoring exception during input shutdown", e);
         }
-        try {
-            sock.socket().close();
-        } catch (IOException e) {
-            LOG.warn("ignoring exception during socket close", e);
-        }
         try {
             sock.close();
             // XXX The next line doesn't seem to be needed, but some posts
@@ -134,6 +181,8 @@ public class NIOConnection implements ClientConnection, Logging {
             LOG.warn("ignoring exception during socketchannel close", e);
         }
         sock = null;
+        receive.release();
+        releaseOutgoing();
         if (sk != null) {
             try {
                 // need to cancel this selection key from the selector
@@ -144,24 +193,76 @@ public class NIOConnection implements ClientConnection, Logging {
         }
     }
 
+    //Each buffer is polled once, so close and a racing write never release the same one twice.
+    private void releaseOutgoing() {
+        Outgoing outgoing;
+        while ((outgoing = outgoingBuffers.poll()) != null) {
+            outgoing.owner().release();
+        }
+    }
+
     //<codeFragment name="nioClientConnectionWrite">
     @Override
     public void write(RequestOrResponse response) {
-        ByteBuffer responseBuffer = serializeResponse(response);
-        outgoingBuffers.add(responseBuffer);
-        sk.selector().wakeup();
+        if (closed) {
+            LOG.debug("Dropping response " + response.getCorrelationId() + ", the connection is closed");
+            return;
+        }
+        Outgoing outgoing = serializeResponse(response);
+        long pending = pendingWriteBytes.addAndGet(outgoing.frame().remaining());
+        outgoingBuffers.add(outgoing);
+        if (closed) {
+            releaseOutgoing(); //close may have drained the queue before the add.
+            return;
+        }
         if (sk.isValid()) {
-            sk.interestOps(sk.interestOps() | SelectionKey.OP_WRITE);
+            if (!readPaused && pending > watermarks.highBytes()) {
+                pauseReads(sk);
+            }
+            sk.interestOpsOr(SelectionKey.OP_WRITE);
+        }
+        sk.selector().wakeup();
+    }
+
+    //Above the high watermark, stop reading requests until the client has read enough of its responses.
+    private synchronized void pauseReads(SelectionKey key) {
+        if (readPaused || pendingWriteBytes.get() <= watermarks.highBytes()) {
+            return;
+        }
+        readPaused = true;
+        key.interestOpsAnd(~SelectionKey.OP_READ);
+        server.readPaused();
+        LOG.warn("Pausing reads, " + pendingWriteBytes.get() + " bytes of responses pending to " + remoteAddress());
+    }
+
+    private synchronized void resumeReads(SelectionKey key) {
+        if (!readPaused || pendingWriteBytes.get() > watermarks.lowBytes()) {
+            return;
+        }
+        readPaused = false;
+        key.interestOpsOr(SelectionKey.OP_READ);
+    }
+
+    private String remoteAddress() {
+        SocketChannel channel = sock;
+        try {
+            return channel == null ? "closed connection" : String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "closed connection";
         }
     }
 
-    private ByteBuffer serializeResponse(RequestOrResponse response) {
-        byte[] serializedResponse = JsonSerDes.serialize(response);
-        ByteBuffer responseBuffer = ByteBuffer.allocate(4 + serializedResponse.length);
-        responseBuffer.putInt(serializedResponse.length);
-        responseBuffer.put(serializedResponse);
-        responseBuffer.flip();
-        return responseBuffer;
+    public long pendingWriteBytes() {
+        return pendingWriteBytes.get();
+    }
+
+    public boolean isReadPaused() {
+        return readPaused;
+    }
+
+    private Outgoing serializeResponse(RequestOrResponse response) {
+        ReferenceCountedBuffer buffer = bufferPool.acquire(FrameCodec.frameSize(response));
+        return new Outgoing(buffer, FrameCodec.encode(response, buffer.view()));
     }
     //</codeFragment>
 }
@@ -0,0 +1,108 @@
+package replicate.net;
+
+import replicate.common.Logging;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Selector thread doing the reads and writes for a share of the listener's connections.
+ * Accepted sockets are handed over with {@link #register(SocketChannel)} and registered
+ * by the reactor thread itself, so the selector is only ever modified from its own thread.
+ * Decoded requests are handed to the dispatcher, which is shared by all the reactors.
+ */
+class NIOReactor extends Thread implements Logging {
+    private final Selector selector;
+    private final NIOSocketListener server;
+    private final RequestConsumer requestConsumer;
+    private final Executor dispatcher;
+    private final WriteWatermarks watermarks;
+    private final Queue<SocketChannel> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    NIOReactor(String name, NIOSocketListener server, RequestConsumer requestConsumer, Executor dispatcher, WriteWatermarks watermarks) throws IOException {
+        super(name);
+        this.selector = Selector.open();
+        this.server = server;
+        this.requestConsumer = requestConsumer;
+        this.dispatcher = dispatcher;
+        this.watermarks = watermarks;
+        setDaemon(true);
+    }
+
+    void register(SocketChannel socketChannel) {
+        pendingRegistrations.add(socketChannel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select(1000);
+                registerPending();
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    if (key.isValid()) {
+                        ((NIOConnection) key.attachment()).doIO(key);
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (Exception e) {
+                getLogger().error(e);
+            }
+        }
+    }
+
+    private void registerPending() throws IOException {
+        SocketChannel socketChannel;
+        while ((socketChannel = pendingRegistrations.poll()) != null) {
+            socketChannel.configureBlocking(false);
+            if (socketChannel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+                //pipelined responses are small, they should not wait for the acks of the previous ones.
+                socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            SelectionKey key = socketChannel.register(selector, SelectionKey.OP_READ);
+            NIOConnection connection = new NIOConnection(socketChannel, key, server, requestConsumer, dispatcher, BufferPool.DEFAULT, watermarks);
+            key.attach(connection);
+            server.addCnxn(connection);
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+        try {
+            join();
+            selector.close();
+        } catch (InterruptedException e) {
+            getLogger().warn("Interrupted", e);
+        } catch (IOException e) {
+            getLogger().warn("Failed to close selector", e);
+        }
+        closePending();
+    }
+
+    //sockets accepted just before shutdown, which the reactor never got to register.
+    private void closePending() {
+        SocketChannel socketChannel;
+        while ((socketChannel = pendingRegistrations.poll()) != null) {
+            try {
+                socketChannel.close();
+            } catch (IOException e) {
+                getLogger().warn("Failed to close unregistered socket", e);
+            }
+        }
+    }
+}
@@ -4,77 +4,163 @@ import replicate.common.Logging;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The listener thread only accepts connections. Each accepted connection is assigned,
+ * round-robin, to one of the reactor threads which does all its reads and writes.
+ * Requests read by all the reactors are handled on one bounded dispatch pool.
+ * When the pool's queue is full, the reactor runs the request itself, which stops it
+ * reading more from its connections until it catches up.
+ * So the number of threads depends only on the configured reactors and dispatch
+ * threads, not on the number of connections.
+ * Each connection stops reading requests while its pending responses are above
+ * the high watermark, @see WriteWatermarks. The counts of paused connections and
+ * pending bytes are exposed for monitoring.
+ * Given a socket directory, the listener also accepts connections on a unix domain
+ * socket in it, on a second acceptor thread, @see UnixDomainSockets. Those connections
+ * are served by the same reactors.
+ */
+public class NIOSocketListener extends Thread implements Listener, Logging {
+    private static final int DEFAULT_DISPATCH_QUEUE_SIZE = 10000;
 
-public class NIOSocketListener extends Thread implements Logging {
     private final ServerSocketChannel ss;
-    private final Selector selector;
-    private final RequestConsumer requestConsumer;
+    private final UnixDomainSocketAddress unixSocketAddress; //null unless listening on a unix domain socket.
+    private final ServerSocketChannel unixSocket;
+    private final Thread unixSocketAcceptor;
+    private final NIOReactor[] reactors;
+    private final ThreadPoolExecutor dispatcher;
+    private final AtomicInteger nextReactor = new AtomicInteger();
+    private final AtomicLong readPauses = new AtomicLong();
 
     public NIOSocketListener(RequestConsumer requestConsumer, InetAddressAndPort listenAddress) throws IOException {
-        this.requestConsumer = requestConsumer;
-        this.selector = Selector.open();
+        this(requestConsumer, listenAddress, 1, Runtime.getRuntime().availableProcessors(), WriteWatermarks.DEFAULT);
+    }
+
+    public NIOSocketListener(RequestConsumer requestConsumer, InetAddressAndPort listenAddress, int reactorThreads, int dispatchThreads, WriteWatermarks watermarks) throws IOException {
+        this(requestConsumer, listenAddress, reactorThreads, dispatchThreads, watermarks, null);
+    }
+
+    public NIOSocketListener(RequestConsumer requestConsumer, InetAddressAndPort listenAddress, int reactorThreads, int dispatchThreads, WriteWatermarks watermarks, Path unixSocketDir) throws IOException {
+        super("acceptor-" + listenAddress);
         this.ss = ServerSocketChannel.open();
         ss.socket().bind(new InetSocketAddress(listenAddress.getAddress(), listenAddress.getPort()));
-        ss.configureBlocking(false);
-        ss.register(selector, SelectionKey.OP_ACCEPT);
+        if (unixSocketDir != null) {
+            this.unixSocketAddress = UnixDomainSockets.addressFor(unixSocketDir, listenAddress);
+            UnixDomainSockets.deleteSocketFile(unixSocketAddress);
+            this.unixSocket = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            unixSocket.bind(unixSocketAddress);
+            this.unixSocketAcceptor = new Thread(() -> acceptConnections(unixSocket), "uds-acceptor-" + listenAddress);
+            unixSocketAcceptor.setDaemon(true);
+        } else {
+            this.unixSocketAddress = null;
+            this.unixSocket = null;
+            this.unixSocketAcceptor = null;
+        }
+        this.dispatcher = newDispatcher(listenAddress, dispatchThreads);
+        this.reactors = new NIOReactor[reactorThreads];
+        for (int i = 0; i < reactorThreads; i++) {
+            reactors[i] = new NIOReactor("reactor-" + i + "-" + listenAddress, this, requestConsumer, dispatcher, watermarks);
+        }
     }
-    HashSet<NIOConnection> cnxns = new HashSet<NIOConnection>();
+
+    private static ThreadPoolExecutor newDispatcher(InetAddressAndPort listenAddress, int dispatchThreads) {
+        AtomicInteger threadNo = new AtomicInteger();
+        return new ThreadPoolExecutor(dispatchThreads, dispatchThreads,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(DEFAULT_DISPATCH_QUEUE_SIZE),
+                r -> {
+                    Thread thread = new Thread(r, "dispatch-" + threadNo.getAndIncrement() + "-" + listenAddress);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    final Set<NIOConnection> cnxns = new HashSet<NIOConnection>();
+
     @Override
     public void run() {
-        while (!ss.socket().isClosed()) {
+        for (NIOReactor reactor : reactors) {
+            reactor.start();
+        }
+        if (unixSocketAcceptor != null) {
+            unixSocketAcceptor.start();
+        }
+        acceptConnections(ss);
+    }
+
+    private void acceptConnections(ServerSocketChannel serverChannel) {
+        while (serverChannel.isOpen()) {
             try {
-                selector.select(1000);
-                Set<SelectionKey> selected;
-                synchronized (this) {
-                    selected = selector.selectedKeys();
-                }
-                ArrayList<SelectionKey> selectedList = new ArrayList<SelectionKey>(
-                        selected);
-                Collections.shuffle(selectedList);
-                for (SelectionKey k : selectedList) {
-                    if ((k.readyOps() & SelectionKey.OP_ACCEPT) != 0) {
-                        SocketChannel sc = ((ServerSocketChannel) k
-                                .channel()).accept();
-                        sc.configureBlocking(false);
-                        SelectionKey sk = sc.register(selector,
-                                SelectionKey.OP_READ);
-                        NIOConnection cnxn = createConnection(sc, sk);
-                        sk.attach(cnxn);
-                        addCnxn(cnxn);
-                    } else if ((k.readyOps() & (SelectionKey.OP_READ | SelectionKey.OP_WRITE)) != 0) {
-                        NIOConnection c = (NIOConnection) k.attachment();
-                        c.doIO(k);
-                    }
-                }
-                selected.clear();
+                SocketChannel sc = serverChannel.accept();
+                reactors[Math.floorMod(nextReactor.getAndIncrement(), reactors.length)].register(sc);
+            } catch (ClosedChannelException e) {
+                break; //shutdown
             } catch (Exception e) {
                 getLogger().error(e);
             }
         }
     }
 
-    private void addCnxn(NIOConnection cnxn) {
-        this.cnxns.add(cnxn);
+    void addCnxn(NIOConnection cnxn) {
+        synchronized (cnxns) {
+            this.cnxns.add(cnxn);
+        }
     }
 
-    protected NIOConnection createConnection(SocketChannel sock,
-                                             SelectionKey sk) throws IOException {
-        return new NIOConnection(sock, sk, this, requestConsumer);
+    void removeCnxn(NIOConnection cnxn) {
+        synchronized (cnxns) {
+            this.cnxns.remove(cnxn);
+        }
     }
 
+    void readPaused() {
+        readPauses.incrementAndGet();
+    }
+
+    //number of times a connection stopped reading because of its pending responses.
+    public long readPauses() {
+        return readPauses.get();
+    }
 
+    public int readPausedConnections() {
+        synchronized (cnxns) {
+            return (int) cnxns.stream().filter(NIOConnection::isReadPaused).count();
+        }
+    }
+
+    public long pendingWriteBytes() {
+        synchronized (cnxns) {
+            return cnxns.stream().mapToLong(NIOConnection::pendingWriteBytes).sum();
+        }
+    }
 
     public void shudown() {
          try {
             ss.close();
-            clear();
-            this.interrupt();
             this.join();
+            if (unixSocket != null) {
+                unixSocket.close();
+                unixSocketAcceptor.join();
+                UnixDomainSockets.deleteSocketFile(unixSocketAddress);
+            }
+            for (NIOReactor reactor : reactors) {
+                reactor.shutdown();
+            }
+            clear();
+            dispatcher.shutdown();
         } catch (InterruptedException e) {
             getLogger().warn("Interrupted",e);
         } catch (Exception e) {
@@ -82,21 +168,19 @@ public class NIOSocketListener extends Thread implements Logging {
         }
     }
 
-    synchronized public void clear() {
-        selector.wakeup();
+    public void clear() {
+        List<NIOConnection> connections;
         synchronized (cnxns) {
-            // got to clear all the connections that we have in the selector
-            for (Iterator<NIOConnection> it = cnxns.iterator(); it
-                    .hasNext();) {
-                NIOConnection cnxn = it.next();
-                it.remove();
-                try {
-                    cnxn.close();
-                } catch (Exception e) {
-                    // Do nothing.
-                }
+            connections = new ArrayList<>(cnxns);
+            cnxns.clear();
+        }
+        // got to clear all the connections that we have in the selectors
+        for (NIOConnection cnxn : connections) {
+            try {
+                cnxn.close();
+            } catch (Exception e) {
+                // Do nothing.
             }
         }
-
     }
 }
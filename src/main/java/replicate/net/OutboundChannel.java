@@ -0,0 +1,262 @@
+package replicate.net;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import replicate.common.RequestOrResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Persistent connection to a single peer.
+ * Sending a message only puts it on a bounded queue. A writer thread per peer
+ * takes messages off the queue and writes them in order over one long-lived
+ * connection, so a slow or dead peer never blocks the replica's update thread.
+ * If the connection breaks, it is re-established for the next message.
+ * Reconnects are attempted at most once every reconnectBackoffMs, messages queued
+ * in between are failed immediately, so callbacks waiting on them complete quickly.
+ * A connect which takes longer than connectTimeoutMs counts as failed, so an unreachable
+ * peer does not hold up its queue for the OS's connect timeout.
+ *
+ * Messages which are queued together are coalesced into a single BatchRequest frame,
+ * so a burst of small consensus messages costs one write instead of one per message.
+ * A batch is flushed once it reaches maxBatchBytes, or when nothing more is queued
+ * within lingerMs of its first message. With lingerMs 0, only the messages which are
+ * already waiting are batched, so no latency is added. maxBatchBytes 0 disables batching.
+ *
+ * With a unix socket directory, a peer on the same host is connected over its unix
+ * domain socket, @see UnixDomainSockets.
+ */
+public class OutboundChannel implements Closeable {
+    private static Logger logger = LogManager.getLogger(OutboundChannel.class);
+    static final long DEFAULT_CONNECT_TIMEOUT_MS = 1000;
+
+    private record Outbound(RequestOrResponse message, Consumer<IOException> onFailure) {}
+
+    private final InetAddressAndPort address;
+    private final int capacity;
+    private final BlockingQueue<Outbound> queue;
+    private final Thread writer;
+    private final long reconnectBackoffMs;
+    private final int connectTimeoutMs;
+    private final int maxBatchBytes;
+    private final long lingerNanos;
+    private final Path unixSocketDir;
+    private volatile boolean running = true;
+
+    //accessed only by the writer thread.
+    private SocketClient<Object> connection;
+    private long lastConnectFailureMs;
+    private IOException lastConnectFailure;
+    private final List<Outbound> batch = new ArrayList<>();
+    private final List<RequestOrResponse> batchMessages = new ArrayList<>();
+
+    public OutboundChannel(InetAddressAndPort address, int capacity, long reconnectBackoffMs) {
+        this(address, capacity, reconnectBackoffMs, 0, 0);
+    }
+
+    public OutboundChannel(InetAddressAndPort address, int capacity, long reconnectBackoffMs, int maxBatchBytes, long lingerMs) {
+        this(address, capacity, reconnectBackoffMs, maxBatchBytes, lingerMs, null);
+    }
+
+    public OutboundChannel(InetAddressAndPort address, int capacity, long reconnectBackoffMs, int maxBatchBytes, long lingerMs, Path unixSocketDir) {
+        this(address, capacity, reconnectBackoffMs, DEFAULT_CONNECT_TIMEOUT_MS, maxBatchBytes, lingerMs, unixSocketDir);
+    }
+
+    public OutboundChannel(InetAddressAndPort address, int capacity, long reconnectBackoffMs, long connectTimeoutMs, int maxBatchBytes, long lingerMs, Path unixSocketDir) {
+        this.address = address;
+        this.unixSocketDir = unixSocketDir;
+        this.capacity = capacity;
+        this.reconnectBackoffMs = reconnectBackoffMs;
+        this.connectTimeoutMs = Math.toIntExact(connectTimeoutMs);
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::writeLoop, "outbound-" + address);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues the message. Failures to write it later are reported to onFailure,
+     * on the writer thread, or on the sending thread if the channel closed while
+     * the message was being queued.
+     * @throws OutboundQueueFullException if the queue is full.
+     * onFailure is not called in that case, the exception is the only signal.
+     */
+    public void send(RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
+        if (!running) {
+            message.releasePayload();
+            throw new IOException("Connection to " + address + " is closed");
+        }
+        if (!queue.offer(new Outbound(message, onFailure))) {
+            message.releasePayload();
+            throw new OutboundQueueFullException(address, capacity);
+        }
+        if (!running) {
+            //closed while queuing, the writer may have already failed the queue and exited.
+            failQueued(new IOException("Connection to " + address + " is closed"));
+        }
+    }
+
+    public int queuedMessages() {
+        return queue.size();
+    }
+
+    private void writeLoop() {
+        while (running) {
+            Outbound outbound;
+            try {
+                outbound = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                collectBatch(outbound);
+                if (batch.size() == 1) {
+                    write(outbound);
+                } else {
+                    writeBatch();
+                }
+            } catch (RuntimeException e) {
+                //this is the peer's only writer, so it keeps going whatever happens to one batch.
+                logger.error("Unexpected failure writing to " + address, e);
+                closeConnection();
+                failBatch(asIOException(e));
+            } finally {
+                batch.clear();
+            }
+        }
+        closeConnection();
+        failQueued(new IOException("Connection to " + address + " is closed"));
+    }
+
+    private void write(Outbound outbound) {
+        RequestOrResponse message = outbound.message();
+        try {
+            connection().sendOneway(message);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to send " + message.getRequestId() + " to " + address + ": " + e.getMessage());
+            message.releasePayload(); //no-op if the write already released it.
+            closeConnection(); //a partly written frame would corrupt the stream.
+            notifyFailure(outbound, asIOException(e));
+        }
+    }
+
+    //Adds the queued messages which fit in maxBatchBytes to the batch started by first.
+    private void collectBatch(Outbound first) {
+        batch.add(first);
+        int batchBytes = FrameCodec.frameSize(first.message());
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batchBytes < maxBatchBytes) {
+            Outbound next = queue.poll();
+            if (next == null) {
+                next = pollUntil(deadline);
+            }
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            batchBytes += FrameCodec.frameSize(next.message());
+        }
+    }
+
+    private Outbound pollUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return null;
+        }
+        try {
+            return queue.poll(remaining, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            //closing. The batch collected so far is still written.
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void writeBatch() {
+        for (Outbound outbound : batch) {
+            batchMessages.add(outbound.message());
+        }
+        try {
+            connection().sendBatch(batchMessages);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to send batch of " + batch.size() + " messages to " + address + ": " + e.getMessage());
+            closeConnection();
+            failBatch(asIOException(e));
+        } finally {
+            batchMessages.clear();
+        }
+    }
+
+    private void failBatch(IOException e) {
+        for (Outbound outbound : batch) {
+            outbound.message().releasePayload(); //no-op if the write already released it.
+            notifyFailure(outbound, e);
+        }
+    }
+
+    //A callback which throws is only logged, the other messages to the peer still need the writer.
+    private void notifyFailure(Outbound outbound, IOException e) {
+        try {
+            outbound.onFailure().accept(e);
+        } catch (RuntimeException callbackFailure) {
+            logger.error("Failure callback for a message to " + address + " threw", callbackFailure);
+        }
+    }
+
+    private static IOException asIOException(Exception e) {
+        return e instanceof IOException ioException ? ioException : new IOException(e);
+    }
+
+    private SocketClient<Object> connection() throws IOException {
+        if (connection != null && !connection.isClosed()) {
+            return connection;
+        }
+        long now = System.currentTimeMillis();
+        if (lastConnectFailure != null && now - lastConnectFailureMs < reconnectBackoffMs) {
+            throw lastConnectFailure;
+        }
+        try {
+            connection = SocketClient.connect(address, unixSocketDir, connectTimeoutMs);
+            lastConnectFailure = null;
+            return connection;
+        } catch (IOException e) {
+            lastConnectFailureMs = now;
+            lastConnectFailure = e;
+            throw e;
+        }
+    }
+
+    private void closeConnection() {
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+    //Called by the writer when it stops, and by senders racing with close.
+    //drainTo hands each message to only one of them.
+    private void failQueued(IOException e) {
+        List<Outbound> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (Outbound outbound : pending) {
+            outbound.message().releasePayload();
+            notifyFailure(outbound, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        writer.interrupt();
+    }
+}
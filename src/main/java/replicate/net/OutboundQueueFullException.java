@@ -0,0 +1,16 @@
+package replicate.net;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a message can not be queued because the peer is not keeping up.
+ * The caller gets to decide whether to fail the request or retry later,
+ * instead of the replica blocking on a slow peer.
+ */
+public class OutboundQueueFullException extends IOException {
+    private static final long serialVersionUID = 5829041157386201473L;
+
+    public OutboundQueueFullException(InetAddressAndPort address, int capacity) {
+        super("Outbound queue to " + address + " is full (" + capacity + " messages)");
+    }
+}
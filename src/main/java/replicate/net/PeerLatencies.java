@@ -0,0 +1,71 @@
+package replicate.net;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Round trip times measured to each peer, from a request being sent to its response
+ * being handled, smoothed the way TCP smooths its RTT: each sample moves the
+ * estimate an eighth of the way towards it.
+ * Peers with no samples yet rank ahead of all measured ones, so they get tried
+ * and measured.
+ * The latest samples of each peer are also kept in a window, for percentiles
+ * like the p95 after which reads are hedged.
+ */
+public class PeerLatencies {
+    public static final long UNKNOWN = -1;
+    static final int WINDOW = 128;
+
+    private final Map<InetAddressAndPort, Samples> samples = new ConcurrentHashMap<>();
+
+    public void record(InetAddressAndPort peer, long rttNanos) {
+        samples.computeIfAbsent(peer, p -> new Samples()).record(rttNanos);
+    }
+
+    //UNKNOWN until a response from the peer has been timed.
+    public long smoothedRttNanos(InetAddressAndPort peer) {
+        Samples peerSamples = samples.get(peer);
+        return peerSamples == null ? UNKNOWN : peerSamples.smoothedRttNanos;
+    }
+
+    //The round trip time which the given fraction, e.g. 0.95, of the peer's latest samples did not exceed.
+    //UNKNOWN until a response from the peer has been timed.
+    public long percentileNanos(InetAddressAndPort peer, double fraction) {
+        Samples peerSamples = samples.get(peer);
+        return peerSamples == null ? UNKNOWN : peerSamples.percentile(fraction);
+    }
+
+    //A copy of the peers, fastest first.
+    public List<InetAddressAndPort> fastestFirst(List<InetAddressAndPort> peers) {
+        List<InetAddressAndPort> ranked = new ArrayList<>(peers);
+        ranked.sort(Comparator.comparingLong(this::smoothedRttNanos));
+        return ranked;
+    }
+
+    private static class Samples {
+        private final long[] window = new long[WINDOW];
+        private final long[] sorted = new long[WINDOW];
+        private int count;
+        private int next;
+        private volatile long smoothedRttNanos = UNKNOWN;
+
+        synchronized void record(long rttNanos) {
+            long current = smoothedRttNanos;
+            smoothedRttNanos = current == UNKNOWN ? rttNanos : current + (rttNanos - current) / 8;
+            window[next] = rttNanos;
+            next = (next + 1) % WINDOW;
+            count = Math.min(count + 1, WINDOW);
+        }
+
+        synchronized long percentile(double fraction) {
+            System.arraycopy(window, 0, sorted, 0, count);
+            Arrays.sort(sorted, 0, count);
+            int rank = (int) Math.ceil(fraction * count);
+            return sorted[Math.max(0, Math.min(count, rank) - 1)];
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package replicate.net;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import replicate.common.RequestOrResponse;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A persistent client connection with many requests in flight.
+ * Each request is tagged with a correlation id from this connection, which the server
+ * echoes in its response, so responses are matched to their requests whatever order
+ * they come back in. Senders only write, a reader thread reads all the responses and
+ * completes their futures.
+ * A request not answered within the timeout fails with a TimeoutException. When the
+ * connection fails, all its pending requests fail with the error and the connection
+ * is closed, @see replicate.common.NetworkClient which then opens a new one.
+ */
+public class PipelinedConnection implements AutoCloseable {
+    private static Logger logger = LogManager.getLogger(PipelinedConnection.class);
+
+    private final SocketClient<Object> socketClient;
+    private final Duration requestTimeout;
+    private final Map<Integer, CompletableFuture<RequestOrResponse>> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicInteger nextCorrelationId = new AtomicInteger();
+    private final Thread reader;
+    private volatile IOException failure;
+
+    public PipelinedConnection(InetAddressAndPort address, Path unixSocketDir, Duration requestTimeout) throws IOException {
+        this.socketClient = SocketClient.connect(address, unixSocketDir);
+        if (socketClient.clientSocket != null) {
+            //requests are written back to back, without waiting for the previous response.
+            socketClient.clientSocket.setTcpNoDelay(true);
+        }
+        this.requestTimeout = requestTimeout;
+        this.reader = VirtualThreads.platformThreadFactory("pipelined-reader-" + address + "-").newThread(this::readResponses);
+        reader.start();
+    }
+
+    /**
+     * Sends the request, replacing its correlation id with one from this connection.
+     * The returned future completes on the reader thread.
+     */
+    public CompletableFuture<RequestOrResponse> send(RequestOrResponse request) {
+        int correlationId = nextCorrelationId.getAndIncrement();
+        CompletableFuture<RequestOrResponse> response = new CompletableFuture<>();
+        pendingRequests.put(correlationId, response);
+        response.whenComplete((r, e) -> pendingRequests.remove(correlationId));
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            RequestOrResponse message = new RequestOrResponse(request.getGeneration(), request.getRequestId(), request.getPayload(), correlationId, request.getFromAddress());
+            synchronized (socketClient) {
+                socketClient.sendOneway(message);
+            }
+        } catch (IOException e) {
+            response.completeExceptionally(e);
+            return response;
+        }
+        return response.orTimeout(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void readResponses() {
+        try (var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(socketClient.channel)))) {
+            while (true) {
+                byte[] frame = new byte[in.readInt()];
+                in.readFully(frame);
+                RequestOrResponse response = FrameCodec.decode(ByteBuffer.wrap(frame));
+                CompletableFuture<RequestOrResponse> pending = pendingRequests.remove(response.getCorrelationId());
+                if (pending == null) {
+                    logger.debug("No pending request for response " + response.getCorrelationId() + ", it probably timed out");
+                    continue;
+                }
+                pending.complete(response);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        socketClient.close();
+        for (var pending : pendingRequests.values()) {
+            pending.completeExceptionally(failure);
+        }
+    }
+
+    public int pendingRequests() {
+        return pendingRequests.size();
+    }
+
+    public boolean isClosed() {
+        return socketClient.isClosed();
+    }
+
+    @Override
+    public void close() {
+        fail(new IOException("Connection closed"));
+    }
+}
@@ -0,0 +1,122 @@
+package replicate.net;
+
+import replicate.common.RequestOrResponse;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Per-connection receive buffer, taken from a BufferPool.
+ * A read fills as much of the buffer as the socket has available, which can be
+ * several frames. Each complete frame is decoded in place. Its payload is a slice
+ * of the buffer, and the message holds a reference to the buffer until
+ * releasePayload is called.
+ * The buffer is only taken from the pool when data arrives. Once everything read
+ * has been decoded, the connection lets go of it, and it goes back to the pool
+ * when its last message is released. So idle connections hold no buffer.
+ * While a frame is only partly read, the buffer is kept, and compacted in place
+ * if no message holds on to it, otherwise the connection moves to a fresh buffer.
+ */
+class ReceiveBuffer {
+    static final int DEFAULT_SIZE = 64 * 1024;
+
+    private final BufferPool pool;
+    private ReferenceCountedBuffer current; //null while nothing is buffered.
+    private ByteBuffer buffer; //position is where the next read goes.
+    private int readPosition; //start of the first frame not yet decoded.
+
+    ReceiveBuffer(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    int readFrom(ReadableByteChannel channel) throws IOException {
+        if (current == null) {
+            current = pool.acquire(DEFAULT_SIZE);
+            buffer = current.view();
+            readPosition = 0;
+        }
+        int bytesRead = channel.read(buffer);
+        if (bytesRead < 0) {
+            throw new EOFException();
+        }
+        return bytesRead;
+    }
+
+    /**
+     * The next complete frame, or null if more bytes need to be read first.
+     */
+    RequestOrResponse nextFrame() {
+        if (current == null) {
+            return null;
+        }
+        int available = buffer.position() - readPosition;
+        if (available < 4) {
+            return null;
+        }
+        int frameSize = buffer.getInt(readPosition);
+        if (available < 4 + frameSize) {
+            return null;
+        }
+        ByteBuffer frame = buffer.slice(readPosition + 4, frameSize);
+        readPosition += 4 + frameSize;
+        return FrameCodec.decode(frame).holdingPayload(current);
+    }
+
+    /**
+     * Makes room for the next read, after all complete frames have been taken.
+     */
+    void compact() {
+        if (current == null) {
+            return;
+        }
+        int leftover = buffer.position() - readPosition;
+        if (leftover == 0) {
+            //everything read has been decoded, the next read takes a buffer from the pool again.
+            release();
+            return;
+        }
+        int required = requiredCapacity(leftover);
+        if (current.refCount() == 1 && required <= buffer.capacity()) {
+            //nothing decoded from this buffer is still in use, so it can be reused in place.
+            if (readPosition > 0) {
+                buffer.limit(buffer.position()).position(readPosition);
+                buffer.compact();
+                readPosition = 0;
+            }
+            return;
+        }
+        if (readPosition + required <= buffer.capacity()) {
+            //frames handed out are still in use, but the next one fits after them.
+            return;
+        }
+        ReferenceCountedBuffer next = pool.acquire(Math.max(required, DEFAULT_SIZE));
+        ByteBuffer nextBuffer = next.view();
+        nextBuffer.put(buffer.duplicate().limit(buffer.position()).position(readPosition));
+        current.release();
+        current = next;
+        buffer = nextBuffer;
+        readPosition = 0;
+    }
+
+    //capacity needed to hold the whole of the partially read frame.
+    private int requiredCapacity(int leftover) {
+        if (leftover < 4) {
+            return 4;
+        }
+        return 4 + buffer.getInt(readPosition);
+    }
+
+    void release() {
+        if (current != null) {
+            current.release();
+            current = null;
+            buffer = null;
+        }
+    }
+
+    boolean holdsBuffer() {
+        return current != null;
+    }
+}
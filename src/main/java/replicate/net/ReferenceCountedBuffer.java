@@ -0,0 +1,55 @@
+package replicate.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A read-only buffer shared by several outbound messages, e.g. a payload which
+ * is broadcast to all the peers. Every holder calls retain before handing the
+ * buffer on and release once it is done with it. When the count drops to zero
+ * the release action runs, which can return the memory to a pool.
+ */
+public class ReferenceCountedBuffer {
+    private final ByteBuffer buffer;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    private final Runnable releaseAction;
+
+    public ReferenceCountedBuffer(ByteBuffer buffer, Runnable releaseAction) {
+        this.buffer = buffer;
+        this.releaseAction = releaseAction;
+    }
+
+    public static ReferenceCountedBuffer wrap(byte[] bytes) {
+        return new ReferenceCountedBuffer(ByteBuffer.wrap(bytes), () -> {});
+    }
+
+    public ReferenceCountedBuffer retain() {
+        int count = refCount.getAndIncrement();
+        if (count <= 0) {
+            refCount.getAndDecrement();
+            throw new IllegalStateException("Buffer is already released");
+        }
+        return this;
+    }
+
+    public void release() {
+        int count = refCount.decrementAndGet();
+        if (count == 0) {
+            releaseAction.run();
+        } else if (count < 0) {
+            throw new IllegalStateException("Buffer released more times than it was retained");
+        }
+    }
+
+    //a view with its own position. The contents must not be modified.
+    public ByteBuffer view() {
+        if (refCount.get() <= 0) {
+            throw new IllegalStateException("Buffer is already released");
+        }
+        return buffer.duplicate();
+    }
+
+    public int refCount() {
+        return refCount.get();
+    }
+}
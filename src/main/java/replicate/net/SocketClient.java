@@ -2,75 +2,144 @@ package replicate.net;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import replicate.common.JsonSerDes;
 import replicate.common.RequestOrResponse;
 
 import java.io.Closeable;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.List;
 
 public class SocketClient<T> implements Closeable {
     private static Logger logger = LogManager.getLogger(SocketClient.class.getName());
     private final int readTimeoutMs = 5000;
 
-    Socket clientSocket;
+    SocketChannel channel;
+    Socket clientSocket; //null for unix domain sockets.
+    private final InputStream inputStream;
+    private final BufferPool bufferPool = BufferPool.DEFAULT;
 
     public SocketClient(InetAddressAndPort address) throws IOException {
-        this.clientSocket = new Socket(address.getAddress(), address.getPort());
+        this(address, 0);
+    }
+
+    //connectTimeoutMs 0 waits for the OS to give up on the connect.
+    public SocketClient(InetAddressAndPort address, int connectTimeoutMs) throws IOException {
+        this.channel = SocketChannel.open();
+        this.clientSocket = channel.socket();
+        try {
+            clientSocket.connect(new InetSocketAddress(address.getAddress(), address.getPort()), connectTimeoutMs);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
         clientSocket.setSoTimeout(readTimeoutMs);
+        this.inputStream = clientSocket.getInputStream();
     }
 
-    public void sendOneway(T message) {
-        sendOneway(clientSocket, JsonSerDes.serialize(message));
+    //Unix domain sockets have no read timeout.
+    public SocketClient(UnixDomainSocketAddress address) throws IOException {
+        this.channel = SocketChannel.open(address);
+        this.clientSocket = null;
+        this.inputStream = Channels.newInputStream(channel);
     }
 
-    public void sendOneway(Socket socket, byte[] serializedMessage) {
+    //Connects over the address's unix domain socket in socketDir if it has one, otherwise over TCP.
+    //A socket file left behind by a listener which did not shut down cleanly refuses connections,
+    //so that also falls back to TCP.
+    public static <T> SocketClient<T> connect(InetAddressAndPort address, Path socketDir) throws IOException {
+        return connect(address, socketDir, 0);
+    }
+
+    //The connect timeout applies only to TCP, a unix domain socket connects or fails straight away.
+    public static <T> SocketClient<T> connect(InetAddressAndPort address, Path socketDir, int connectTimeoutMs) throws IOException {
+        var localAddress = UnixDomainSockets.localAddressOf(socketDir, address);
+        if (localAddress.isPresent()) {
+            try {
+                return new SocketClient<>(localAddress.get());
+            } catch (IOException e) {
+                logger.debug("Unable to connect to " + localAddress.get() + ", connecting over TCP");
+            }
+        }
+        return new SocketClient<>(address, connectTimeoutMs);
+    }
+
+    //The frame is encoded into a pooled direct buffer. A heap buffer would be copied into a
+    //temporary direct buffer by the channel anyway, so the payload is still copied only once.
+    public void sendOneway(RequestOrResponse message) throws IOException {
+        ReferenceCountedBuffer frame = bufferPool.acquire(FrameCodec.frameSize(message));
         try {
-            var outputStream = socket.getOutputStream();
-            var dataStream = new DataOutputStream(outputStream);
-            var messageBytes = serializedMessage;
-            dataStream.writeInt(messageBytes.length);
-            dataStream.write(messageBytes);
-            dataStream.flush();
-        } catch (IOException e) {
-            new RuntimeException(e);
+            write(FrameCodec.encode(message, frame.view()));
+        } finally {
+            frame.release();
+            message.releasePayload();
+        }
+    }
+
+    /**
+     * Writes the messages as one BatchRequest frame, with a single write.
+     */
+    public void sendBatch(List<RequestOrResponse> messages) throws IOException {
+        int innerFramesSize = 0;
+        for (RequestOrResponse message : messages) {
+            innerFramesSize += FrameCodec.frameSize(message);
+        }
+        ReferenceCountedBuffer frame = bufferPool.acquire(FrameCodec.BATCH_HEADER_SIZE + innerFramesSize);
+        try {
+            ByteBuffer buffer = frame.view();
+            FrameCodec.encodeBatchHeader(innerFramesSize, buffer);
+            for (RequestOrResponse message : messages) {
+                FrameCodec.encodeHeader(message, buffer).put(message.getPayload());
+            }
+            write(buffer.flip());
+        } finally {
+            frame.release();
+            for (RequestOrResponse message : messages) {
+                message.releasePayload();
+            }
         }
     }
 
-    public byte[] read() {
-      return read(clientSocket);
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
     }
 
-    byte[] read(Socket socket) {
+    public RequestOrResponse read() {
         try {
-            var inputStream = socket.getInputStream();
             var dataInputStream = new DataInputStream(inputStream);
             var size = dataInputStream.readInt();
             var responseBytes = new byte[size];
-            dataInputStream.read(responseBytes);
-            return responseBytes;
+            dataInputStream.readFully(responseBytes);
+            return FrameCodec.decode(ByteBuffer.wrap(responseBytes));
             
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public RequestOrResponse blockingSend(T requestOrResponse) {
-        sendOneway(clientSocket, JsonSerDes.serialize(requestOrResponse));
-        return JsonSerDes.deserialize(read(clientSocket), RequestOrResponse.class);
+    public RequestOrResponse blockingSend(RequestOrResponse requestOrResponse) throws IOException {
+        sendOneway(requestOrResponse);
+        return read();
     }
 
     public void close() {
         try {
-            clientSocket.close();
+            channel.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     public boolean isClosed() {
-        return clientSocket.isClosed();
+        return !channel.isOpen();
     }
 }
@@ -7,21 +7,38 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-public class SocketListener extends Thread implements Logging {
+public class SocketListener extends Thread implements Listener, Logging {
     private final InetAddressAndPort listenIp;
-    private final Config config;
     private final ServerSocket serverSocket;
     private RequestConsumer server;
-    private List<SocketHandlerThread> clientThreads = new ArrayList<>();
+    private List<SocketHandler> clientThreads = new CopyOnWriteArrayList<>();
+    private final ThreadFactory connectionThreads;
+    private final int readTimeoutMs;
 
     public SocketListener(RequestConsumer server, InetAddressAndPort listenIp, Config config) {
+        this(server, listenIp, VirtualThreads.platformThreadFactory("connection-" + listenIp + "-"), config.getHeartBeatIntervalMs() * 10);
+    }
+
+    /**
+     * Thread per connection, with each connection on a virtual thread.
+     * A virtual thread blocked on a read costs a few hundred bytes, so there is no read
+     * timeout to reclaim idle connections, and tens of thousands of connections can be open.
+     */
+    public static SocketListener withVirtualThreads(RequestConsumer server, InetAddressAndPort listenIp) {
+        return new SocketListener(server, listenIp, VirtualThreads.factory("connection-" + listenIp + "-"), 0);
+    }
+
+    SocketListener(RequestConsumer server, InetAddressAndPort listenIp, ThreadFactory connectionThreads, int readTimeoutMs) {
+        super("acceptor-" + listenIp);
         this.server = server;
         this.listenIp = listenIp;
-        this.config = config;
+        this.connectionThreads = connectionThreads;
+        this.readTimeoutMs = readTimeoutMs;
         try {
             this.serverSocket = new ServerSocket();
             this.serverSocket.bind(new InetSocketAddress(listenIp.getAddress(), listenIp.getPort()));
@@ -44,9 +61,9 @@ public class SocketListener extends Thread implements Logging {
                  * For a single connection, need to have a dedicated thread constantly reading from connection.
                  * Can be optimized by using NIO.
                  */
-                SocketHandlerThread socketHandlerThread = new SocketHandlerThread(clientSocket);
-                socketHandlerThread.start();
-                clientThreads.add(socketHandlerThread);
+                SocketHandler socketHandler = new SocketHandler(clientSocket);
+                connectionThreads.newThread(socketHandler).start();
+                clientThreads.add(socketHandler);
 
             } catch (IOException e) {
                 getLogger().debug(e);
@@ -57,7 +74,7 @@ public class SocketListener extends Thread implements Logging {
 
     //<codeFragment name="readTimeout">
     private void setReadTimeout(Socket clientSocket) throws SocketException {
-        clientSocket.setSoTimeout(config.getHeartBeatIntervalMs() * 10);
+        clientSocket.setSoTimeout(readTimeoutMs);
     }
     //</codeFragment>
 
@@ -69,14 +86,15 @@ public class SocketListener extends Thread implements Logging {
     }
 
     private void closeAllClientConnections() {
-        for (SocketHandlerThread clientThread : clientThreads) {
+        for (SocketHandler clientThread : clientThreads) {
             closeClient(clientThread);
         }
     }
 
-    private void closeClient(SocketHandlerThread clientThread) {
+    private void closeClient(SocketHandler clientThread) {
         clientThread.closeConnection();
         clientThread.isRunning = false;
+        clientThreads.remove(clientThread);
     }
 
     private void closeQuitely() {
@@ -95,11 +113,12 @@ public class SocketListener extends Thread implements Logging {
         return listenIp;
     }
 
-    class SocketHandlerThread extends Thread implements Logging {
+    //Runs on its own thread, a platform or a virtual thread depending on the listener.
+    class SocketHandler implements Runnable, Logging {
         private final BlockingIOConnection clientConnection;
         volatile boolean isRunning = false;
 
-        public SocketHandlerThread(Socket clientSocket) {
+        public SocketHandler(Socket clientSocket) {
             this.clientConnection = new BlockingIOConnection(server, clientSocket);
         }
 
@@ -120,6 +139,14 @@ public class SocketListener extends Thread implements Logging {
 
         private void handleRequest() {
             RequestOrResponse request = clientConnection.readRequest();
+            if (FrameCodec.isBatch(request)) {
+                FrameCodec.decodeBatch(request.getPayload()).forEach(this::handle);
+            } else {
+                handle(request);
+            }
+        }
+
+        private void handle(RequestOrResponse request) {
             MessageId messageId = MessageId.valueOf(request.getRequestId());
             server.accept(new Message<>(request, new Message.Header(request.getFromAddress(), request.getCorrelationId(), messageId), clientConnection));
         }
@@ -0,0 +1,78 @@
+package replicate.net;
+
+import replicate.common.Config;
+import replicate.common.RequestOrResponse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The transport built on plain sockets. Frames to a peer go through its
+ * OutboundChannel. Connections are served either by the NIO reactors or by a
+ * virtual thread per connection, @see TransportMode.
+ * With a unix socket directory configured, the NIO listeners also accept connections
+ * on unix domain sockets and peers on the same host are sent to over them.
+ */
+public class SocketTransport implements Transport {
+    private final TransportMode mode;
+    private final int reactorThreads;
+    private final int dispatchThreads;
+    private final WriteWatermarks watermarks;
+    private final int outboundQueueSize;
+    private final long reconnectBackoffMs;
+    private final long connectTimeoutMs;
+    private final int batchMaxBytes;
+    private final long batchLingerMs;
+    private final Path unixSocketDir;
+
+    private final Map<InetAddressAndPort, OutboundChannel> channels = new ConcurrentHashMap<>();
+
+    public SocketTransport(Config config) {
+        this.mode = config.getTransportMode();
+        this.reactorThreads = config.getListenerReactorThreads();
+        this.dispatchThreads = config.getListenerDispatchThreads();
+        this.watermarks = config.getWriteWatermarks();
+        this.outboundQueueSize = config.getPeerOutboundQueueSize();
+        this.reconnectBackoffMs = config.getPeerReconnectBackoffMs();
+        this.connectTimeoutMs = config.getPeerConnectTimeoutMs();
+        this.batchMaxBytes = config.getPeerBatchMaxBytes();
+        this.batchLingerMs = config.getPeerBatchLingerMs();
+        this.unixSocketDir = config.getUnixSocketDir();
+    }
+
+    @Override
+    public Listener listen(InetAddressAndPort address, RequestConsumer consumer) throws IOException {
+        if (mode == TransportMode.VIRTUAL_THREADS) {
+            return SocketListener.withVirtualThreads(consumer, address);
+        }
+        return new NIOSocketListener(consumer, address, reactorThreads, dispatchThreads, watermarks, unixSocketDir);
+    }
+
+    @Override
+    public void send(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
+        channelTo(address).send(message, onFailure);
+    }
+
+    private OutboundChannel channelTo(InetAddressAndPort address) {
+        return channels.computeIfAbsent(address, a -> new OutboundChannel(a, outboundQueueSize, reconnectBackoffMs, connectTimeoutMs, batchMaxBytes, batchLingerMs, unixSocketDir));
+    }
+
+    @Override
+    public void disconnect(InetAddressAndPort address) {
+        OutboundChannel channel = channels.remove(address);
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (OutboundChannel channel : channels.values()) {
+            channel.close();
+        }
+        channels.clear();
+    }
+}
@@ -0,0 +1,37 @@
+package replicate.net;
+
+import replicate.common.RequestOrResponse;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * How replicas exchange frames. A transport creates listeners for the peer and
+ * client addresses, and sends frames to peers over connections it manages.
+ * Consumers given to a listener must decode the payload before accept returns,
+ * transports are free to reuse the receive buffer after that.
+ * @see SocketTransport
+ * @see replicate.net.netty.NettyTransport
+ * @see replicate.net.grpc.GrpcTransport
+ */
+public interface Transport {
+
+    Listener listen(InetAddressAndPort address, RequestConsumer consumer) throws IOException;
+
+    //the listener for client requests, which are sent with SocketClient.
+    default Listener listenForClients(InetAddressAndPort address, RequestConsumer consumer) throws IOException {
+        return listen(address, consumer);
+    }
+
+    /**
+     * Sends the message asynchronously.
+     * @throws IOException if the message can not be queued, e.g. OutboundQueueFullException.
+     * Failures to write a queued message are reported to onFailure.
+     */
+    void send(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) throws IOException;
+
+    //closes the connection to the peer. The next send opens a new one.
+    void disconnect(InetAddressAndPort address);
+
+    void close();
+}
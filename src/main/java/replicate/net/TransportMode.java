@@ -0,0 +1,19 @@
+package replicate.net;
+
+/**
+ * How a replica serves its peer and client connections.
+ */
+public enum TransportMode {
+    //selector based reactors, @see NIOSocketListener
+    NIO,
+    //blocking reads and writes, with a virtual thread per connection, @see SocketListener
+    VIRTUAL_THREADS,
+    //Netty event loops for both listening and sending, @see replicate.net.netty.NettyTransport
+    NETTY,
+    //one gRPC bidirectional stream per peer, @see replicate.net.grpc.GrpcTransport
+    GRPC,
+    //queues between replicas in the same JVM, for benchmarks, @see InJvmTransport
+    IN_JVM,
+    //messages delivered by a discrete event simulation in virtual time, @see replicate.simulation.Simulation
+    SIMULATED
+}
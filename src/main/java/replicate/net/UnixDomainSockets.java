@@ -0,0 +1,36 @@
+package replicate.net;
+
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Replicas and clients on the same host can talk over unix domain sockets instead of
+ * TCP loopback. They share a socket directory, where a listener for an address binds
+ * a socket file named after that address, next to its TCP socket.
+ * A connection to an address uses the socket file if there is one, so a peer is
+ * treated as co-located exactly when its listener has bound in the shared directory.
+ * Other peers are connected over TCP as usual.
+ */
+public class UnixDomainSockets {
+
+    public static UnixDomainSocketAddress addressFor(Path socketDir, InetAddressAndPort address) {
+        return UnixDomainSocketAddress.of(socketDir.resolve(address.getAddress().getHostAddress() + "_" + address.getPort() + ".sock"));
+    }
+
+    //The socket of a listener for the address on this host, if one is bound.
+    public static Optional<UnixDomainSocketAddress> localAddressOf(Path socketDir, InetAddressAndPort address) {
+        if (socketDir == null) {
+            return Optional.empty();
+        }
+        UnixDomainSocketAddress socketAddress = addressFor(socketDir, address);
+        return Files.exists(socketAddress.getPath()) ? Optional.of(socketAddress) : Optional.empty();
+    }
+
+    //A socket file left behind by a listener which did not shut down cleanly would fail the bind.
+    static void deleteSocketFile(UnixDomainSocketAddress address) throws IOException {
+        Files.deleteIfExists(address.getPath());
+    }
+}
@@ -0,0 +1,87 @@
+package replicate.net;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates virtual threads when running on Java 21 or later.
+ * The code is compiled for Java 17, so the Thread.ofVirtual builder is looked up reflectively.
+ * On older runtimes daemon platform threads are used instead, so the same blocking
+ * code runs everywhere, just without the scalability of virtual threads.
+ * Java 19 and 20 have Thread.ofVirtual but it throws unless preview features are enabled,
+ * so it is called once up front and only counted as available if that works.
+ */
+public class VirtualThreads {
+    private static Logger logger = LogManager.getLogger(VirtualThreads.class);
+
+    private static final Method ofVirtual = probe(lookup(Thread.class, "ofVirtual"));
+    private static final Method newThreadPerTaskExecutor = lookup(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    public static boolean isAvailable() {
+        return ofVirtual != null;
+    }
+
+    public static ThreadFactory factory(String namePrefix) {
+        if (!isAvailable()) {
+            logger.warn("Virtual threads need Java 21, using platform threads for " + namePrefix);
+            return platformThreadFactory(namePrefix);
+        }
+        try {
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create virtual thread factory", e);
+        }
+    }
+
+    //A new thread for every task. Blocking in a task then ties up a cheap virtual thread, not a pooled platform thread.
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        ThreadFactory threadFactory = factory(namePrefix);
+        if (newThreadPerTaskExecutor == null) {
+            return Executors.newCachedThreadPool(threadFactory);
+        }
+        try {
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create thread per task executor", e);
+        }
+    }
+
+    static ThreadFactory platformThreadFactory(String namePrefix) {
+        AtomicInteger threadNo = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, namePrefix + threadNo.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Method probe(Method ofVirtual) {
+        if (ofVirtual == null) {
+            return null;
+        }
+        try {
+            ofVirtual.invoke(null);
+            return ofVirtual;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Thread.ofVirtual is present but not usable, using platform threads", e);
+            return null;
+        }
+    }
+
+    private static Method lookup(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
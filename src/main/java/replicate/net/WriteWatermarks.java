@@ -0,0 +1,17 @@
+package replicate.net;
+
+/**
+ * Limits on the bytes of responses waiting to be written to a connection.
+ * Once more than highBytes are pending, the connection stops reading new requests,
+ * so a client which does not read its responses can not make the server buffer
+ * without limit. Reading resumes when the pending bytes drop to lowBytes.
+ */
+public record WriteWatermarks(int lowBytes, int highBytes) {
+    public static final WriteWatermarks DEFAULT = new WriteWatermarks(1024 * 1024, 4 * 1024 * 1024);
+
+    public WriteWatermarks {
+        if (lowBytes < 0 || highBytes < lowBytes) {
+            throw new IllegalArgumentException("Invalid write watermarks low=" + lowBytes + " high=" + highBytes);
+        }
+    }
+}
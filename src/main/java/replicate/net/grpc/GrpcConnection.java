@@ -0,0 +1,41 @@
+package replicate.net.grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import replicate.common.RequestOrResponse;
+import replicate.net.ClientConnection;
+
+/**
+ * The response side of a stream accepted by a GrpcListener.
+ * Stream observers are not thread safe, so writes are serialised here.
+ */
+class GrpcConnection implements ClientConnection {
+    private final ServerCallStreamObserver<RequestOrResponse> responses;
+    private boolean closed;
+
+    GrpcConnection(ServerCallStreamObserver<RequestOrResponse> responses) {
+        this.responses = responses;
+    }
+
+    @Override
+    public synchronized void write(RequestOrResponse response) {
+        if (closed || responses.isCancelled()) {
+            response.releasePayload();
+            return;
+        }
+        try {
+            responses.onNext(response);
+        } finally {
+            response.releasePayload(); //the marshaller has copied it.
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            if (!responses.isCancelled()) {
+                responses.onCompleted();
+            }
+        }
+    }
+}
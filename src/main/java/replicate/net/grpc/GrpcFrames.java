@@ -0,0 +1,205 @@
+package replicate.net.grpc;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import io.grpc.MethodDescriptor;
+import replicate.common.RequestOrResponse;
+import replicate.net.InetAddressAndPort;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ReplicationService/exchange method, with marshallers for the FrameBatch and Frame
+ * messages of replication.proto written directly against protobuf's coded streams.
+ * Payloads are written straight from the message's buffer, without building
+ * intermediate protobuf objects.
+ */
+class GrpcFrames {
+    static final String SERVICE_NAME = "replicate.ReplicationService";
+    //large enough for snapshots, gRPC's default is 4MB.
+    static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+
+    //fields of FrameBatch
+    private static final int FRAMES = 1;
+    //fields of Frame
+    private static final int REQUEST_ID = 1;
+    private static final int CORRELATION_ID = 2;
+    private static final int GENERATION = 3;
+    private static final int ERROR = 4;
+    private static final int FROM = 5;
+    private static final int PAYLOAD = 6;
+    //fields of PeerAddress
+    private static final int ADDRESS = 1;
+    private static final int PORT = 2;
+
+    static final MethodDescriptor.Marshaller<RequestOrResponse> FRAME_MARSHALLER = new MethodDescriptor.Marshaller<>() {
+        @Override
+        public InputStream stream(RequestOrResponse message) {
+            byte[] bytes = new byte[frameSize(message)];
+            write(bytes, out -> writeFrameFields(out, message));
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public RequestOrResponse parse(InputStream stream) {
+            try {
+                return decodeFrame(CodedInputStream.newInstance(stream));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    static final MethodDescriptor.Marshaller<List<RequestOrResponse>> BATCH_MARSHALLER = new MethodDescriptor.Marshaller<>() {
+        @Override
+        public InputStream stream(List<RequestOrResponse> frames) {
+            int size = 0;
+            for (RequestOrResponse frame : frames) {
+                size += lengthDelimitedSize(FRAMES, frameSize(frame));
+            }
+            byte[] bytes = new byte[size];
+            write(bytes, out -> {
+                for (RequestOrResponse frame : frames) {
+                    out.writeTag(FRAMES, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                    out.writeUInt32NoTag(frameSize(frame));
+                    writeFrameFields(out, frame);
+                }
+            });
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public List<RequestOrResponse> parse(InputStream stream) {
+            try {
+                CodedInputStream in = CodedInputStream.newInstance(stream);
+                List<RequestOrResponse> frames = new ArrayList<>();
+                int tag;
+                while ((tag = in.readTag()) != 0) {
+                    if (WireFormat.getTagFieldNumber(tag) == FRAMES) {
+                        int oldLimit = in.pushLimit(in.readRawVarint32());
+                        frames.add(decodeFrame(in));
+                        in.popLimit(oldLimit);
+                    } else {
+                        in.skipField(tag);
+                    }
+                }
+                return frames;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    static final MethodDescriptor<List<RequestOrResponse>, RequestOrResponse> EXCHANGE =
+            MethodDescriptor.<List<RequestOrResponse>, RequestOrResponse>newBuilder()
+                    .setType(MethodDescriptor.MethodType.BIDI_STREAMING)
+                    .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, "exchange"))
+                    .setRequestMarshaller(BATCH_MARSHALLER)
+                    .setResponseMarshaller(FRAME_MARSHALLER)
+                    .build();
+
+    private interface Writer {
+        void writeTo(CodedOutputStream out) throws IOException;
+    }
+
+    private static void write(byte[] bytes, Writer writer) {
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        try {
+            writer.writeTo(out);
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //encoded size of a Frame, without its tag and length.
+    static int frameSize(RequestOrResponse message) {
+        InetAddressAndPort from = message.getFromAddress();
+        return CodedOutputStream.computeInt32Size(REQUEST_ID, message.getRequestId())
+                + CodedOutputStream.computeInt32Size(CORRELATION_ID, message.getCorrelationId())
+                + CodedOutputStream.computeInt32Size(GENERATION, message.getGeneration())
+                + (message.isError() ? CodedOutputStream.computeBoolSize(ERROR, true) : 0)
+                + (from == null ? 0 : lengthDelimitedSize(FROM, peerAddressSize(from)))
+                + lengthDelimitedSize(PAYLOAD, message.getPayload().remaining());
+    }
+
+    private static int lengthDelimitedSize(int field, int size) {
+        return CodedOutputStream.computeTagSize(field) + CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+    }
+
+    private static int peerAddressSize(InetAddressAndPort address) {
+        return CodedOutputStream.computeByteArraySize(ADDRESS, address.getAddress().getAddress())
+                + CodedOutputStream.computeInt32Size(PORT, address.getPort());
+    }
+
+    private static void writeFrameFields(CodedOutputStream out, RequestOrResponse message) throws IOException {
+        ByteBuffer payload = message.getPayload();
+        InetAddressAndPort from = message.getFromAddress();
+        out.writeInt32(REQUEST_ID, message.getRequestId());
+        out.writeInt32(CORRELATION_ID, message.getCorrelationId());
+        out.writeInt32(GENERATION, message.getGeneration());
+        if (message.isError()) {
+            out.writeBool(ERROR, true);
+        }
+        if (from != null) {
+            out.writeTag(FROM, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(peerAddressSize(from));
+            out.writeByteArray(ADDRESS, from.getAddress().getAddress());
+            out.writeInt32(PORT, from.getPort());
+        }
+        out.writeTag(PAYLOAD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(payload.remaining());
+        out.writeRawBytes(payload);
+    }
+
+    //reads the fields of one Frame, up to the current limit.
+    private static RequestOrResponse decodeFrame(CodedInputStream in) throws IOException {
+        int requestId = 0;
+        int correlationId = 0;
+        int generation = 0;
+        boolean error = false;
+        InetAddressAndPort from = null;
+        ByteBuffer payload = ByteBuffer.allocate(0);
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case REQUEST_ID -> requestId = in.readInt32();
+                case CORRELATION_ID -> correlationId = in.readInt32();
+                case GENERATION -> generation = in.readInt32();
+                case ERROR -> error = in.readBool();
+                case FROM -> from = decodePeerAddress(in);
+                case PAYLOAD -> payload = in.readByteBuffer();
+                default -> in.skipField(tag);
+            }
+        }
+        RequestOrResponse message = new RequestOrResponse(generation, requestId, payload, correlationId, from);
+        if (error) {
+            message.setError();
+        }
+        return message;
+    }
+
+    private static InetAddressAndPort decodePeerAddress(CodedInputStream in) throws IOException {
+        int oldLimit = in.pushLimit(in.readRawVarint32());
+        byte[] address = new byte[0];
+        int port = 0;
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case ADDRESS -> address = in.readByteArray();
+                case PORT -> port = in.readInt32();
+                default -> in.skipField(tag);
+            }
+        }
+        in.popLimit(oldLimit);
+        return new InetAddressAndPort(InetAddress.getByAddress(address), port);
+    }
+}
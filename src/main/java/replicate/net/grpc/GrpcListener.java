@@ -0,0 +1,100 @@
+package replicate.net.grpc;
+
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import replicate.common.Message;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+import replicate.net.InetAddressAndPort;
+import replicate.net.Listener;
+import replicate.net.RequestConsumer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the ReplicationService. Each peer holds one exchange stream open, and the frames
+ * read from it are handed to the consumer on the stream's transport thread, in the order
+ * they were sent. The next batch is only requested from the peer once the consumer
+ * returns, so a slow consumer holds back the peer through HTTP/2 flow control.
+ */
+class GrpcListener implements Listener {
+    private static Logger logger = LogManager.getLogger(GrpcListener.class);
+
+    private final InetAddressAndPort address;
+    private final RequestConsumer consumer;
+    private final Server server;
+    private boolean started;
+
+    GrpcListener(InetAddressAndPort address, RequestConsumer consumer) {
+        this.address = address;
+        this.consumer = consumer;
+        ServerServiceDefinition service = ServerServiceDefinition.builder(GrpcFrames.SERVICE_NAME)
+                .addMethod(GrpcFrames.EXCHANGE, ServerCalls.asyncBidiStreamingCall(this::exchange))
+                .build();
+        this.server = NettyServerBuilder.forAddress(new InetSocketAddress(address.getAddress(), address.getPort()))
+                .directExecutor()
+                .maxInboundMessageSize(GrpcFrames.MAX_MESSAGE_SIZE)
+                .addService(service)
+                .build();
+    }
+
+    @Override
+    public synchronized void start() {
+        try {
+            server.start();
+            started = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to listen on " + address, e);
+        }
+    }
+
+    @Override
+    public synchronized void shudown() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        server.shutdownNow();
+        try {
+            server.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted", e);
+        }
+    }
+
+    private StreamObserver<List<RequestOrResponse>> exchange(StreamObserver<RequestOrResponse> responses) {
+        GrpcConnection connection = new GrpcConnection((ServerCallStreamObserver<RequestOrResponse>) responses);
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(List<RequestOrResponse> requests) {
+                for (RequestOrResponse request : requests) {
+                    MessageId messageId = MessageId.valueOf(request.getRequestId());
+                    var header = new Message.Header(request.getFromAddress(), request.getCorrelationId(), messageId);
+                    consumer.accept(new Message<>(request, header, connection));
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                logger.debug("Stream to " + address + " failed: " + t.getMessage());
+                consumer.close(connection);
+            }
+
+            @Override
+            public void onCompleted() {
+                consumer.close(connection);
+                connection.close();
+            }
+        };
+    }
+}
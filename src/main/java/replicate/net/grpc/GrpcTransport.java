@@ -0,0 +1,247 @@
+package replicate.net.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ClientResponseObserver;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import replicate.common.Config;
+import replicate.common.RequestOrResponse;
+import replicate.net.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Peer traffic over gRPC. Each replica holds one bidirectional exchange stream to each
+ * peer, on an HTTP/2 connection managed by gRPC, which also does the reconnect backoff.
+ * Frames are protobuf Frame messages, @see replication.proto.
+ * Only the envelope has a schema. The consensus messages themselves have no protobuf
+ * schemas, a Frame's payload is the message encoded with the configured PeerMessageCodec,
+ * CBOR or the binary codec, as on the socket transports.
+ *
+ * Sends queue the frame for the peer and a writer thread drains the queue, writing all the
+ * frames queued so far as one FrameBatch message, of up to the peer batch size. gRPC flushes
+ * every message written to a stream, so this keeps a burst of messages from costing a flush
+ * each. While HTTP/2 flow control holds the stream back, frames stay queued, up to the high
+ * write watermark in payload bytes, and are written once the stream is ready again.
+ * Sends beyond that fail with OutboundQueueFullException.
+ *
+ * Clients keep talking the socket frame protocol, so the client listener is a NIOSocketListener.
+ */
+public class GrpcTransport implements Transport {
+    private static Logger logger = LogManager.getLogger(GrpcTransport.class);
+
+    private final int reactorThreads;
+    private final int dispatchThreads;
+    private final WriteWatermarks watermarks;
+    private final Path unixSocketDir;
+    private final int batchMaxBytes;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "grpc-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<InetAddressAndPort, Peer> peers = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public GrpcTransport(Config config) {
+        this.reactorThreads = config.getListenerReactorThreads();
+        this.dispatchThreads = config.getListenerDispatchThreads();
+        this.watermarks = config.getWriteWatermarks();
+        this.unixSocketDir = config.getUnixSocketDir();
+        this.batchMaxBytes = config.getPeerBatchMaxBytes();
+    }
+
+    @Override
+    public Listener listen(InetAddressAndPort address, RequestConsumer consumer) {
+        return new GrpcListener(address, consumer);
+    }
+
+    @Override
+    public Listener listenForClients(InetAddressAndPort address, RequestConsumer consumer) throws IOException {
+        return new NIOSocketListener(consumer, address, reactorThreads, dispatchThreads, watermarks, unixSocketDir);
+    }
+
+    @Override
+    public void send(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
+        if (closed) {
+            message.releasePayload();
+            throw new IOException("Transport is closed");
+        }
+        peers.computeIfAbsent(address, Peer::new).send(message, onFailure);
+    }
+
+    @Override
+    public void disconnect(InetAddressAndPort address) {
+        Peer peer = peers.remove(address);
+        if (peer != null) {
+            peer.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        peers.values().forEach(Peer::close);
+        peers.clear();
+        writer.shutdown();
+    }
+
+    private record Pending(RequestOrResponse message, Consumer<IOException> onFailure) {}
+
+    private class Peer {
+        private final InetAddressAndPort address;
+        private final ManagedChannel channel;
+        //guarded by this
+        private ClientCallStreamObserver<List<RequestOrResponse>> stream;
+        private final Queue<Pending> backlog = new ArrayDeque<>();
+        private long backlogBytes;
+        private boolean drainScheduled;
+        private final List<RequestOrResponse> batch = new ArrayList<>();
+        private final List<Pending> batchPending = new ArrayList<>();
+
+        Peer(InetAddressAndPort address) {
+            this.address = address;
+            this.channel = NettyChannelBuilder.forAddress(new InetSocketAddress(address.getAddress(), address.getPort()))
+                    .usePlaintext()
+                    .directExecutor()
+                    .maxInboundMessageSize(GrpcFrames.MAX_MESSAGE_SIZE)
+                    .build();
+        }
+
+        synchronized void send(RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
+            int size = message.getPayload().remaining();
+            if (backlogBytes + size > watermarks.highBytes()) {
+                message.releasePayload();
+                throw new OutboundQueueFullException(address, watermarks.highBytes());
+            }
+            backlog.add(new Pending(message, onFailure));
+            backlogBytes += size;
+            if (!drainScheduled) {
+                drainScheduled = true;
+                writer.execute(this::drain);
+            }
+        }
+
+        //Writes what is queued as FrameBatch messages, while gRPC reports the stream ready.
+        //Runs on the writer thread, and on the transport thread when the stream becomes ready.
+        private synchronized void drain() {
+            drainScheduled = false;
+            if (stream == null) {
+                stream = openStream();
+            }
+            while (stream.isReady() && !backlog.isEmpty()) {
+                int batchBytes = 0;
+                do {
+                    Pending next = backlog.poll();
+                    int size = next.message().getPayload().remaining();
+                    backlogBytes -= size;
+                    batchBytes += size;
+                    batch.add(next.message());
+                    batchPending.add(next);
+                } while (!backlog.isEmpty() && batchBytes < batchMaxBytes);
+                try {
+                    stream.onNext(batch);
+                } catch (RuntimeException e) {
+                    //e.g. the call already terminated. The batch and everything queued behind it fail with the stream.
+                    writeFailed(e);
+                    return;
+                } finally {
+                    batch.forEach(RequestOrResponse::releasePayload); //the marshaller has copied them.
+                    batch.clear();
+                    batchPending.clear();
+                }
+            }
+        }
+
+        private void writeFailed(RuntimeException cause) {
+            IOException failure = new IOException("Write to " + address + " failed", cause);
+            batchPending.forEach(pending -> pending.onFailure().accept(failure));
+            var failedStream = stream;
+            streamFailed(failedStream, cause);
+            failedStream.cancel("Write failed", cause);
+        }
+
+        //The request stream is handed to the listener before the call starts.
+        private ClientCallStreamObserver<List<RequestOrResponse>> openStream() {
+            var call = channel.newCall(GrpcFrames.EXCHANGE, CallOptions.DEFAULT);
+            var listener = new StreamListener();
+            ClientCalls.asyncBidiStreamingCall(call, listener);
+            return listener.requestStream;
+        }
+
+        //the next drain opens a new stream.
+        private synchronized void streamFailed(ClientCallStreamObserver<List<RequestOrResponse>> failedStream, Throwable cause) {
+            if (stream != failedStream) {
+                return;
+            }
+            logger.error("Stream to " + address + " failed: " + cause.getMessage());
+            stream = null;
+            failBacklog(new IOException("Stream to " + address + " failed", cause));
+        }
+
+        //Requests waiting on the queued messages fail now, instead of waiting to expire.
+        private void failBacklog(IOException failure) {
+            Pending pending;
+            while ((pending = backlog.poll()) != null) {
+                pending.message().releasePayload();
+                pending.onFailure().accept(failure);
+            }
+            backlogBytes = 0;
+        }
+
+        synchronized void close() {
+            if (stream != null) {
+                stream.cancel("Transport closed", null);
+                stream = null;
+            }
+            failBacklog(new IOException("Connection to " + address + " is closed"));
+            channel.shutdownNow();
+        }
+
+        private class StreamListener implements ClientResponseObserver<List<RequestOrResponse>, RequestOrResponse> {
+            private ClientCallStreamObserver<List<RequestOrResponse>> requestStream;
+
+            @Override
+            public void beforeStart(ClientCallStreamObserver<List<RequestOrResponse>> requestStream) {
+                this.requestStream = requestStream;
+                requestStream.setOnReadyHandler(() -> {
+                    synchronized (Peer.this) {
+                        if (stream == requestStream) {
+                            drain();
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onNext(RequestOrResponse response) {
+                //peers answer with messages of their own, sent to our listener.
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                streamFailed(requestStream, t);
+            }
+
+            @Override
+            public void onCompleted() {
+                streamFailed(requestStream, new IOException("Closed by peer"));
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package replicate.net.netty;
+
+import io.netty.channel.Channel;
+import replicate.common.RequestOrResponse;
+import replicate.net.ClientConnection;
+
+/**
+ * Responses to a request received by a NettyListener, written on the connection's event loop.
+ */
+class NettyConnection implements ClientConnection {
+    private final Channel channel;
+
+    NettyConnection(Channel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(RequestOrResponse response) {
+        channel.writeAndFlush(NettyFrames.encode(channel.alloc(), response), channel.voidPromise());
+    }
+
+    @Override
+    public void close() {
+        channel.close();
+    }
+}
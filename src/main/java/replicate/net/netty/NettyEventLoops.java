@@ -0,0 +1,69 @@
+package replicate.net.netty;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Uses the native epoll transport when netty-transport-native-epoll is on the classpath
+ * and the platform supports it, otherwise the NIO transport.
+ * The epoll classes are only referenced by name, so they are an optional dependency.
+ */
+class NettyEventLoops {
+    private static Logger logger = LogManager.getLogger(NettyEventLoops.class);
+    private static final String EPOLL = "io.netty.channel.epoll.";
+    static final boolean useEpoll = epollAvailable();
+
+    static EventLoopGroup newGroup(int threads, String name) {
+        ThreadFactory threadFactory = new DefaultThreadFactory(name, true);
+        if (useEpoll) {
+            try {
+                return (EventLoopGroup) Class.forName(EPOLL + "EpollEventLoopGroup")
+                        .getConstructor(int.class, ThreadFactory.class)
+                        .newInstance(threads, threadFactory);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to create epoll event loop group", e);
+            }
+        }
+        return new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Class<? extends ServerChannel> serverChannelClass() {
+        return useEpoll ? (Class<? extends ServerChannel>) epollClass("EpollServerSocketChannel") : NioServerSocketChannel.class;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Class<? extends SocketChannel> channelClass() {
+        return useEpoll ? (Class<? extends SocketChannel>) epollClass("EpollSocketChannel") : NioSocketChannel.class;
+    }
+
+    private static Class<?> epollClass(String name) {
+        try {
+            return Class.forName(EPOLL + name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean epollAvailable() {
+        try {
+            boolean available = (Boolean) Class.forName(EPOLL + "Epoll").getMethod("isAvailable").invoke(null);
+            logger.info("Netty native epoll transport " + (available ? "available" : "not available on this platform"));
+            return available;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warn("Unable to load Netty native epoll transport", e);
+            return false;
+        }
+    }
+}
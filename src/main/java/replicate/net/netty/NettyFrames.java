@@ -0,0 +1,41 @@
+package replicate.net.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import replicate.common.RequestOrResponse;
+import replicate.net.FrameCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The same frames as the socket transport, @see FrameCodec, so the two interoperate.
+ * Frames are encoded straight into pooled direct ByteBufs.
+ */
+class NettyFrames {
+    static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    //splits the stream on the int size prefix and strips it.
+    static LengthFieldBasedFrameDecoder newFrameDecoder() {
+        return new LengthFieldBasedFrameDecoder(MAX_FRAME_SIZE, 0, 4, 0, 4);
+    }
+
+    //the message's payload is copied into the frame, so its shared payload is released here.
+    static ByteBuf encode(ByteBufAllocator allocator, RequestOrResponse message) {
+        try {
+            int frameSize = FrameCodec.frameSize(message);
+            ByteBuf frame = allocator.directBuffer(frameSize);
+            FrameCodec.encode(message, frame.nioBuffer(0, frameSize));
+            return frame.writerIndex(frameSize);
+        } finally {
+            message.releasePayload();
+        }
+    }
+
+    //The payload of the returned message is a view of the frame's memory,
+    //valid until the frame is released.
+    static RequestOrResponse decode(ByteBuf frame) {
+        ByteBuffer buffer = frame.nioBuffer();
+        return FrameCodec.decode(buffer);
+    }
+}
@@ -0,0 +1,117 @@
+package replicate.net.netty;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.*;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import replicate.common.Message;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+import replicate.net.*;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Serves connections on the transport's event loops.
+ * Requests are handed to the consumer on the connection's event loop, in the order they
+ * were read, and the frame is released once the consumer returns.
+ * The write watermarks map to Netty's channel watermarks. While a connection has more
+ * than the high watermark of responses pending, it stops reading (auto read off).
+ */
+class NettyListener implements Listener {
+    private static Logger logger = LogManager.getLogger(NettyListener.class);
+
+    private final InetAddressAndPort address;
+    private final RequestConsumer consumer;
+    private final EventLoopGroup bossGroup;
+    private final EventLoopGroup workerGroup;
+    private final WriteWatermarks watermarks;
+    private final ChannelGroup connections = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private Channel serverChannel;
+
+    NettyListener(InetAddressAndPort address, RequestConsumer consumer, EventLoopGroup bossGroup, EventLoopGroup workerGroup, WriteWatermarks watermarks) {
+        this.address = address;
+        this.consumer = consumer;
+        this.bossGroup = bossGroup;
+        this.workerGroup = workerGroup;
+        this.watermarks = watermarks;
+    }
+
+    @Override
+    public synchronized void start() {
+        serverChannel = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NettyEventLoops.serverChannelClass())
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(watermarks.lowBytes(), watermarks.highBytes()))
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        connections.add(channel);
+                        channel.pipeline().addLast(NettyFrames.newFrameDecoder(), new RequestHandler(new NettyConnection(channel)));
+                    }
+                })
+                .bind(new InetSocketAddress(address.getAddress(), address.getPort()))
+                .syncUninterruptibly()
+                .channel();
+    }
+
+    @Override
+    public synchronized void shudown() {
+        if (serverChannel == null) {
+            return;
+        }
+        serverChannel.close().syncUninterruptibly();
+        serverChannel = null;
+        connections.close().awaitUninterruptibly();
+    }
+
+    private class RequestHandler extends SimpleChannelInboundHandler<ByteBuf> {
+        private final NettyConnection connection;
+
+        RequestHandler(NettyConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+            RequestOrResponse request = NettyFrames.decode(frame);
+            if (FrameCodec.isBatch(request)) {
+                FrameCodec.decodeBatch(request.getPayload()).forEach(this::dispatch);
+            } else {
+                dispatch(request);
+            }
+        }
+
+        private void dispatch(RequestOrResponse request) {
+            MessageId messageId = MessageId.valueOf(request.getRequestId());
+            var header = new Message.Header(request.getFromAddress(), request.getCorrelationId(), messageId);
+            consumer.accept(new Message<>(request, header, connection));
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+            ctx.channel().config().setAutoRead(ctx.channel().isWritable());
+            ctx.fireChannelWritabilityChanged();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            consumer.close(connection);
+            ctx.fireChannelInactive();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            logger.error("Closing connection from " + ctx.channel().remoteAddress() + " to " + address, cause);
+            ctx.close();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.time.Duration;
 class CallbackDetails {
     RequestCallback requestCallback;
     long createTimeNanos;
+    TimingWheel.Timeout timeout; //cancelled when the response arrives.
 
     public CallbackDetails(RequestCallback requestCallback, long createTimeNanos) {
         this.requestCallback = requestCallback;
@@ -0,0 +1,229 @@
+package replicate.net.requestwaitinglist;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import replicate.common.SystemClock;
+import replicate.net.InetAddressAndPort;
+import replicate.net.PeerLatencies;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A RequestWaitingList for requests keyed by int correlation ids, which is what
+ * replicas use for the requests they send to each other.
+ * The ids index an open addressing hash table of ints, with linear probing, so they
+ * are never boxed. Each entry points to a slot holding the callback and a TimingWheel
+ * timeout. Slots are reused once their request completes, and the table only grows
+ * when all of them are in use, so once warmed up adding and completing requests
+ * allocate nothing.
+ * Callbacks are invoked after the table is unlocked.
+ * The time from adding a request to handling its response is recorded in
+ * PeerLatencies for the node which responded.
+ */
+public class PendingRequestTable<Response> {
+    private static Logger logger = LogManager.getLogger(PendingRequestTable.class);
+    private static final int INITIAL_SLOTS = 64;
+    private static final int EMPTY = -1;
+    private static final Duration DEFAULT_RESOLUTION = Duration.ofMillis(10);
+    private static final int TICKS_PER_WHEEL = 512;
+    private static final InetAddressAndPort NONE = null;
+
+    private final SystemClock clock;
+    private final Duration expirationDuration;
+    private final TimingWheel timingWheel;
+    private final ScheduledExecutorService executor;
+    private final PeerLatencies latencies = new PeerLatencies();
+
+    //correlation id to slot. Twice as many entries as slots, so it is never more than half full.
+    private int[] table;
+    private int mask;
+    //slots, indexed by the table.
+    private int[] keys;
+    private RequestCallback<Response>[] callbacks; //null for a free slot.
+    private TimingWheel.Timeout[] timeouts;
+    private long[] sentAtNanos;
+    private int[] freeSlots;
+    private int freeCount;
+
+    public PendingRequestTable(SystemClock clock, Duration expirationDuration) {
+        this(clock, expirationDuration, DEFAULT_RESOLUTION.compareTo(expirationDuration) < 0 ? DEFAULT_RESOLUTION : expirationDuration);
+    }
+
+    public PendingRequestTable(SystemClock clock, Duration expirationDuration, Duration resolution) {
+        this.clock = clock;
+        this.expirationDuration = expirationDuration;
+        this.timingWheel = new TimingWheel(resolution, TICKS_PER_WHEEL, clock.nanoTime());
+        this.keys = new int[0];
+        this.callbacks = newCallbacks(0);
+        this.timeouts = new TimingWheel.Timeout[0];
+        this.sentAtNanos = new long[0];
+        this.freeSlots = new int[0];
+        growTo(INITIAL_SLOTS);
+        this.executor = clock.newScheduledExecutor();
+        executor.scheduleWithFixedDelay(this::expire, resolution.toNanos(), resolution.toNanos(), NANOSECONDS);
+    }
+
+    public void add(int correlationId, RequestCallback<Response> callback) {
+        add(correlationId, callback, expirationDuration);
+    }
+
+    public synchronized void add(int correlationId, RequestCallback<Response> callback, Duration timeout) {
+        int index = indexOf(correlationId);
+        int slot;
+        if (table[index] != EMPTY) {
+            slot = table[index]; //replaces the earlier request with the same id.
+        } else {
+            if (freeCount == 0) {
+                growTo(keys.length * 2);
+                index = indexOf(correlationId);
+            }
+            slot = freeSlots[--freeCount];
+            table[index] = slot;
+            keys[slot] = correlationId;
+        }
+        callbacks[slot] = callback;
+        long now = clock.nanoTime();
+        sentAtNanos[slot] = now;
+        timingWheel.schedule(timeouts[slot], now + timeout.toNanos());
+    }
+
+    public void handleResponse(int correlationId, Response response, InetAddressAndPort fromNode) {
+        RequestCallback<Response> callback;
+        long sentAt;
+        synchronized (this) {
+            int slot = table[indexOf(correlationId)];
+            if (slot == EMPTY) {
+                return; //already completed or expired.
+            }
+            sentAt = sentAtNanos[slot];
+            callback = remove(correlationId);
+        }
+        if (fromNode != NONE) {
+            latencies.record(fromNode, clock.nanoTime() - sentAt);
+        }
+        callback.onResponse(response, fromNode);
+    }
+
+    public void handleResponse(int correlationId, Response response) {
+        handleResponse(correlationId, response, NONE);
+    }
+
+    public void handleError(int correlationId, Exception e) {
+        RequestCallback<Response> callback = remove(correlationId);
+        if (callback == null) {
+            return; //already completed or expired.
+        }
+        callback.onError(e);
+    }
+
+    public synchronized int pendingRequests() {
+        return keys.length - freeCount;
+    }
+
+    public PeerLatencies latencies() {
+        return latencies;
+    }
+
+    synchronized int capacity() {
+        return keys.length;
+    }
+
+    void expire() {
+        timingWheel.advance(clock.nanoTime());
+    }
+
+    private void expire(int slot) {
+        RequestCallback<Response> callback;
+        int correlationId;
+        synchronized (this) {
+            //the slot might have completed, or been reused for a request which is not due yet,
+            //after the wheel took its timeout.
+            if (callbacks[slot] == null || timeouts[slot].isScheduled()) {
+                return;
+            }
+            correlationId = keys[slot];
+            callback = remove(correlationId);
+        }
+        logger.info("Expiring " + correlationId);
+        callback.onError(new TimeoutException("Request expired"));
+    }
+
+    private synchronized RequestCallback<Response> remove(int correlationId) {
+        int index = indexOf(correlationId);
+        int slot = table[index];
+        if (slot == EMPTY) {
+            return null;
+        }
+        RequestCallback<Response> callback = callbacks[slot];
+        callbacks[slot] = null;
+        timeouts[slot].cancel();
+        freeSlots[freeCount++] = slot;
+        deleteAt(index);
+        return callback;
+    }
+
+    //the entry for the id, or the empty one where it would go.
+    private int indexOf(int correlationId) {
+        int index = home(correlationId);
+        while (table[index] != EMPTY && keys[table[index]] != correlationId) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private int home(int correlationId) {
+        int hash = correlationId * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    //Shifts back the entries after the deleted one which would otherwise not be found, instead of leaving a tombstone.
+    private void deleteAt(int index) {
+        int next = index;
+        while (true) {
+            next = (next + 1) & mask;
+            int slot = table[next];
+            if (slot == EMPTY) {
+                break;
+            }
+            int home = home(keys[slot]);
+            boolean reachableWithoutIndex = index <= next ? (index < home && home <= next) : (index < home || home <= next);
+            if (!reachableWithoutIndex) {
+                table[index] = slot;
+                index = next;
+            }
+        }
+        table[index] = EMPTY;
+    }
+
+    private void growTo(int slots) {
+        int oldSlots = keys.length;
+        keys = Arrays.copyOf(keys, slots);
+        callbacks = Arrays.copyOf(callbacks, slots);
+        timeouts = Arrays.copyOf(timeouts, slots);
+        sentAtNanos = Arrays.copyOf(sentAtNanos, slots);
+        freeSlots = Arrays.copyOf(freeSlots, slots);
+        for (int slot = slots - 1; slot >= oldSlots; slot--) {
+            final int s = slot;
+            timeouts[slot] = timingWheel.newTimeout(() -> expire(s));
+            freeSlots[freeCount++] = slot;
+        }
+        table = new int[slots * 2];
+        mask = table.length - 1;
+        Arrays.fill(table, EMPTY);
+        for (int slot = 0; slot < oldSlots; slot++) {
+            if (callbacks[slot] != null) {
+                table[indexOf(keys[slot])] = slot;
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <R> RequestCallback<R>[] newCallbacks(int size) {
+        return new RequestCallback[size];
+    }
+}
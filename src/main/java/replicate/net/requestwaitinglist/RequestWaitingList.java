@@ -6,15 +6,12 @@ import replicate.common.SystemClock;
 import replicate.net.InetAddressAndPort;
 
 import java.time.Duration;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeoutException;
-import java.util.stream.Collectors;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /**
  * The nodes expecting messages from other nodes as response
@@ -65,73 +62,101 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  *  <─ ─ ─ ─                │                 │           │          │
  *          │               │                 │           │          │
  *          │               │                 │           │          │
+ *
+ * Each request gets a timeout in a TimingWheel, after the default expiration duration
+ * or its own. Adding a request and completing it are O(1), and expiry only looks at
+ * the requests due in the ticks which passed. Timeouts fire at most one tick, the
+ * resolution, after they are due.
  */
 
 public class RequestWaitingList<Key, Response> {
     private static Logger logger = LogManager.getLogger(RequestWaitingList.class);
+    private static final Duration DEFAULT_RESOLUTION = Duration.ofMillis(10);
+    private static final int TICKS_PER_WHEEL = 512;
 
     private Map<Key, CallbackDetails> pendingRequests = new ConcurrentHashMap<>();
     private InetAddressAndPort NONE;
 
     public void add(Key key, RequestCallback<Response> callback) {
+        add(key, callback, expirationDuration);
+    }
+
+    //with a timeout of its own, instead of the expiration duration of the list.
+    public void add(Key key, RequestCallback<Response> callback, Duration timeout) {
         long now = clock.nanoTime();
         logger.debug("RequestWaitingList adding " + key + " at " + now);
-        pendingRequests.put(key, new CallbackDetails(callback, now));
+        CallbackDetails callbackDetails = new CallbackDetails(callback, now);
+        pendingRequests.put(key, callbackDetails);
+        callbackDetails.timeout = timingWheel.schedule(() -> expire(key, callbackDetails), now + timeout.toNanos());
     }
 
     private SystemClock clock;
-    private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
-    private Duration expirationDuration; //do not expire for now.
+    private ScheduledExecutorService executor;
+    private Duration expirationDuration;
+    private final TimingWheel timingWheel;
+
     public RequestWaitingList(SystemClock clock) {
-        this(clock, Duration.ofMillis(1000)); //TODO: Keeping this as 1
-        // second occasionally expires some get requests and fails read-repair tests
+        //Requests used to be checked for expiry once a second, so they expired between 1 and 2 seconds
+        //after being added. Tests delay messages by Network.MESSAGE_DELAY, 1 second, so with exact
+        //timeouts the default is the upper end of that.
+        this(clock, Duration.ofMillis(2000));
     }
+
     public RequestWaitingList(SystemClock clock, Duration duration) {
+        this(clock, duration, DEFAULT_RESOLUTION.compareTo(duration) < 0 ? DEFAULT_RESOLUTION : duration);
+    }
+
+    //resolution is the tick of the timing wheel, how late after their timeout requests can expire.
+    public RequestWaitingList(SystemClock clock, Duration duration, Duration resolution) {
         this.expirationDuration = duration;
         this.clock = clock;
-        executor.scheduleWithFixedDelay(this::expire, expirationDuration.toMillis(), expirationDuration.toMillis(), MILLISECONDS);
+        this.timingWheel = new TimingWheel(resolution, TICKS_PER_WHEEL, clock.nanoTime());
+        this.executor = clock.newScheduledExecutor();
+        executor.scheduleWithFixedDelay(this::expire, resolution.toNanos(), resolution.toNanos(), NANOSECONDS);
     }
 
-    private void expire() {
-        List<Key> expiredRequestKeys = getExpiredRequestKeys();
-        if (expiredRequestKeys.isEmpty()) {
-            return;
-        }
-        logger.info("Expiring " + expiredRequestKeys);
-        expiredRequestKeys.stream().forEach(expiredRequestKey -> {
-            CallbackDetails cb = pendingRequests.remove(expiredRequestKey);
-            cb.requestCallback.onError(new TimeoutException("Request expired"));
-        });
+    void expire() {
+        timingWheel.advance(clock.nanoTime());
     }
 
-    private List<Key> getExpiredRequestKeys() {
-        return pendingRequests.entrySet().stream().filter(entry -> entry.getValue().isExpired(this.expirationDuration, clock.nanoTime())).map(e -> e.getKey()).collect(Collectors.toList());
+    private void expire(Key key, CallbackDetails callbackDetails) {
+        //a response might have removed it just before the timeout fired.
+        if (pendingRequests.remove(key, callbackDetails)) {
+            logger.info("Expiring " + key);
+            callbackDetails.requestCallback.onError(new TimeoutException("Request expired"));
+        }
     }
 
-    public void handleResponse(Key key, Response response) {
-        if (!pendingRequests.containsKey(key)) {
-            return;
-        }
-        logger.debug("RequestWaitingList received response for " + key + " at " + clock.nanoTime());
+    private CallbackDetails remove(Object key) {
         CallbackDetails callbackDetails = pendingRequests.remove(key);
-        callbackDetails.getRequestCallback().onResponse(response, NONE);//TODO:Possibly use Optional
+        if (callbackDetails != null && callbackDetails.timeout != null) {
+            callbackDetails.timeout.cancel();
+        }
+        return callbackDetails;
+    }
 
+    public void handleResponse(Key key, Response response) {
+        handleResponse(key, response, NONE);//TODO:Possibly use Optional
     }
 
     public void handleResponse(Key key, Response response, InetAddressAndPort fromNode) {
         logger.debug("RequestWaitingList received response for " + key + " at " + clock.nanoTime());
-
-        if (!pendingRequests.containsKey(key)) {
+        CallbackDetails callbackDetails = remove(key);
+        if (callbackDetails == null) {
             return;
         }
-        CallbackDetails callbackDetails = pendingRequests.remove(key);
         callbackDetails.getRequestCallback().onResponse(response, fromNode);
-
     }
 
     public void handleError(int requestId, Exception e) {
-        CallbackDetails callbackDetails = pendingRequests.remove(requestId);
+        CallbackDetails callbackDetails = remove(requestId);
+        if (callbackDetails == null) {
+            return; //already completed or expired.
+        }
         callbackDetails.getRequestCallback().onError(e);
     }
 
+    public int pendingRequests() {
+        return pendingRequests.size();
+    }
 }
@@ -0,0 +1,163 @@
+package replicate.net.requestwaitinglist;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel, as described by Varghese and Lauck.
+ * Time is split into ticks of the configured resolution, and a timeout goes into the
+ * bucket for its deadline tick, modulo the number of buckets. Scheduling and
+ * cancelling are O(1), they only link or unlink the timeout in its bucket.
+ * advance visits only the buckets of the ticks which passed since the last call,
+ * and expires the timeouts in them whose deadline tick has come. Timeouts further
+ * away than one turn of the wheel stay in their bucket until a later turn.
+ * Timeouts expire at most one tick after their deadline.
+ * A Timeout can be scheduled again after it expired or was cancelled, so callers
+ * tracking many short lived requests can keep one per slot instead of allocating
+ * one per request, @see PendingRequestTable.
+ */
+public class TimingWheel {
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final long startNanos;
+    private long currentTick; //all ticks up to and including this one are expired.
+    private int size;
+
+    public TimingWheel(Duration resolution, int ticksPerWheel, long startNanos) {
+        if (resolution.toNanos() <= 0) {
+            throw new IllegalArgumentException("resolution must be positive " + resolution);
+        }
+        this.tickNanos = resolution.toNanos();
+        int bucketCount = Integer.highestOneBit(Math.max(1, ticksPerWheel - 1)) << 1;
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.mask = bucketCount - 1;
+        this.startNanos = startNanos;
+    }
+
+    public Timeout schedule(Runnable task, long deadlineNanos) {
+        Timeout timeout = newTimeout(task);
+        schedule(timeout, deadlineNanos);
+        return timeout;
+    }
+
+    //A timeout which is not scheduled yet.
+    public Timeout newTimeout(Runnable task) {
+        return new Timeout(task);
+    }
+
+    //Schedules the timeout, moving it to the new deadline if it is already scheduled.
+    public synchronized void schedule(Timeout timeout, long deadlineNanos) {
+        if (timeout.bucket != null) {
+            timeout.bucket.remove(timeout);
+            size--;
+        }
+        long deadlineTick = Math.floorDiv(deadlineNanos - startNanos + tickNanos - 1, tickNanos);
+        timeout.deadlineTick = Math.max(deadlineTick, currentTick + 1);
+        buckets[(int) (timeout.deadlineTick & mask)].add(timeout);
+        size++;
+    }
+
+    /**
+     * Expires the timeouts whose deadline passed before nowNanos, and returns how many did.
+     * Their tasks run on the calling thread, after the wheel is unlocked, so they can
+     * schedule or cancel other timeouts.
+     */
+    public int advance(long nowNanos) {
+        List<Timeout> expired = expireUpTo(Math.floorDiv(nowNanos - startNanos, tickNanos));
+        for (Timeout timeout : expired) {
+            timeout.task.run();
+        }
+        return expired.size();
+    }
+
+    private synchronized List<Timeout> expireUpTo(long tick) {
+        List<Timeout> expired = new ArrayList<>();
+        //after a full turn, every bucket has been visited once.
+        long lastTick = Math.min(tick, currentTick + buckets.length);
+        for (long t = currentTick + 1; t <= lastTick; t++) {
+            buckets[(int) (t & mask)].expire(tick, expired);
+        }
+        currentTick = Math.max(currentTick, tick);
+        size -= expired.size();
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public class Timeout {
+        private final Runnable task;
+        private long deadlineTick;
+        private Timeout next;
+        private Timeout prev;
+        private Bucket bucket;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        //false once it expired or was cancelled.
+        public boolean isScheduled() {
+            synchronized (TimingWheel.this) {
+                return bucket != null;
+            }
+        }
+
+        //false if it already expired or was cancelled.
+        public boolean cancel() {
+            synchronized (TimingWheel.this) {
+                if (bucket == null) {
+                    return false;
+                }
+                bucket.remove(this);
+                size--;
+                return true;
+            }
+        }
+    }
+
+    private static class Bucket {
+        private Timeout head;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.next = null;
+            timeout.prev = null;
+            timeout.bucket = null;
+        }
+
+        void expire(long tick, List<Timeout> expired) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.deadlineTick <= tick) {
+                    remove(timeout);
+                    expired.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+    }
+}
@@ -12,7 +12,6 @@ import replicate.twophaseexecution.CompareAndSwap;
 import replicate.wal.Command;
 import replicate.wal.SetValueCommand;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -175,7 +174,7 @@ public class SingleValuePaxos extends Replica {
             return null;
         }
 
-        Command command = Command.deserialize(new ByteArrayInputStream(acceptedValue));
+        Command command = Command.deserialize(acceptedValue);
         if (command instanceof SetValueCommand setValueCommand) {
             return handleSetValueCommand(setValueCommand);
 
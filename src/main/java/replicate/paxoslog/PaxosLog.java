@@ -20,6 +20,7 @@ import replicate.twophaseexecution.messages.ExecuteCommandResponse;
 import replicate.vsr.CompletionCallback;
 import replicate.wal.Command;
 import replicate.wal.SetValueCommand;
+import replicate.wal.SetValueCommandReader;
 
 import java.io.IOException;
 import java.util.*;
@@ -37,6 +38,8 @@ public class PaxosLog extends Replica {
     Map<String, String> kv = new HashMap<>();
 
     private final SetValueCommand NO_OP_COMMAND = new SetValueCommand("", "");
+    //reused for every entry applied on the singular update thread.
+    private final SetValueCommandReader setValueCommand = new SetValueCommandReader();
     int serverId;
     RequestWaitingList requestWaitingList;
     public PaxosLog(String name, SystemClock clock, Config config, InetAddressAndPort clientAddress, InetAddressAndPort peerConnectionAddress, List<InetAddressAndPort> peers) throws IOException {
@@ -131,7 +134,9 @@ public class PaxosLog extends Replica {
         return sendPrepareRequest(index, monotonicId).
                 thenCompose((result) -> {
                     byte[] proposedValue = getProposalValue(index, initialValue, result.values());
-                    logger.debug(getName() + " proposing " + Command.deserialize(proposedValue) + " for index " + index + " Initial value is " + Command.deserialize(initialValue));
+                    if (logger.isDebugEnabled()) {
+                        logger.debug(getName() + " proposing " + Command.deserialize(proposedValue) + " for index " + index + " Initial value is " + Command.deserialize(initialValue));
+                    }
                     return sendProposeRequest(index, proposedValue, monotonicId);
 
                 }).thenCompose(proposedValue -> {
@@ -157,7 +162,7 @@ public class PaxosLog extends Replica {
     }
 
     private CompletableFuture<Boolean> sendCommitRequest(int index, byte[] value, MonotonicId monotonicId) {
-        AsyncQuorumCallback<CommitResponse> commitCallback = new AsyncQuorumCallback<CommitResponse>(getNoOfReplicas(), c -> c.success);
+        AsyncQuorumCallback<CommitResponse> commitCallback = new AsyncQuorumCallback<CommitResponse>(getNoOfReplicas(), phase2Quorum(), c -> c.success);
         logger.info(getName() + " sending commit request for " + index);
         sendMessageToReplicas(commitCallback, MessageId.Commit, new CommitRequest(index, value, monotonicId));
         return commitCallback.getQuorumFuture().thenApply(result -> true);
@@ -165,13 +170,13 @@ public class PaxosLog extends Replica {
 
 
     private CompletableFuture<byte[]> sendProposeRequest(int index, byte[] proposedValue, MonotonicId monotonicId) {
-        var proposalCallback = new AsyncQuorumCallback<ProposalResponse>(getNoOfReplicas(), p -> p.success);
-        sendMessageToReplicas(proposalCallback, MessageId.ProposeRequest, new ProposalRequest(monotonicId, index, proposedValue));
+        var proposalCallback = new AsyncQuorumCallback<ProposalResponse>(getNoOfReplicas(), phase2Quorum(), p -> p.success);
+        sendMessageToQuorum(proposalCallback, MessageId.ProposeRequest, new ProposalRequest(monotonicId, index, proposedValue));
         return proposalCallback.getQuorumFuture().thenApply(r -> proposedValue);
     }
 
     private CompletableFuture<Map<InetAddressAndPort, PrepareResponse>> sendPrepareRequest(int index, MonotonicId monotonicId) {
-        var callback = new AsyncQuorumCallback<PrepareResponse>(getNoOfReplicas(), p -> p.promised);
+        var callback = new AsyncQuorumCallback<PrepareResponse>(getNoOfReplicas(), phase1Quorum(), p -> p.promised);
         logger.info(getName() + " sending prepare request for " + index);
         sendMessageToReplicas(callback, MessageId.Prepare, new PrepareRequest(index, monotonicId));
         return callback.getQuorumFuture();
@@ -214,13 +219,14 @@ public class PaxosLog extends Replica {
     }
 
     private void addAndApply(int index, byte[] logEntry) {
+        if (setValueCommand.wrap(logEntry)) {
+            String value = setValueCommand.value();
+            kv.put(setValueCommand.key(), value);
+            requestWaitingList.handleResponse(index, new ExecuteCommandResponse(Optional.of(value), true));
+            return;
+        }
         var command = Command.deserialize(logEntry);
-        if (command instanceof SetValueCommand) {
-            SetValueCommand setValueCommand = (SetValueCommand)command;
-            kv.put(setValueCommand.getKey(), setValueCommand.getValue());
-            requestWaitingList.handleResponse(index, new ExecuteCommandResponse(Optional.of(setValueCommand.getValue()), true));
-
-        } else if (command instanceof CompareAndSwap) {
+        if (command instanceof CompareAndSwap) {
             CompareAndSwap cas = (CompareAndSwap)command;
             Optional<String> existingValue = Optional.ofNullable(kv.get(cas.getKey()));
             if (existingValue.equals(cas.getExistingValue())) {
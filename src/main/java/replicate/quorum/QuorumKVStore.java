@@ -14,7 +14,8 @@ import java.util.concurrent.CompletableFuture;
 
 /**
  * A simple key value store with replication handled using 'quorum'.
- * Each client request is sent to all the replicas.
+ * Each client request is sent to all the replicas. With thrifty quorums or
+ * hedged reads configured, reads are sent to the fastest quorum first.
  * Client communicate to the node by request-response rpc.(They expect
  * and wait for the response on the same connection)
  * Replicas communicate by message passing.
@@ -110,7 +111,11 @@ public class QuorumKVStore extends Replica {
         logger.info("Handling get request for " + clientRequest.getKey() + " in " + getName());
         GetValueRequest requestToReplicas = new GetValueRequest(clientRequest.getKey());
         AsyncQuorumCallback<GetValueResponse> quorumCallback = new AsyncQuorumCallback<GetValueResponse>(getNoOfReplicas());
-        sendMessageToReplicas(quorumCallback, MessageId.VersionedGetValueRequest, requestToReplicas);
+        if (config.isHedgedReads()) {
+            sendHedgedMessageToQuorum(quorumCallback, MessageId.VersionedGetValueRequest, requestToReplicas);
+        } else {
+            sendMessageToQuorum(quorumCallback, MessageId.VersionedGetValueRequest, requestToReplicas);
+        }
         return quorumCallback.getQuorumFuture().thenComposeAsync((responses) -> {
             return new ReadRepairer(this, responses, config.isAsyncReadRepair()).readRepair();
         });
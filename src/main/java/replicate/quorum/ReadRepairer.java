@@ -37,8 +37,9 @@ class ReadRepairer {
             return CompletableFuture.completedFuture(latestStoredValue);
         }
         List<CompletableFuture<RequestOrResponse>> responseFutures = new ArrayList<>();
-        var writeRequest = createSetValueRequest(latestStoredValue.getKey(), latestStoredValue.getValue(), latestStoredValue.getTimestamp());
         for (InetAddressAndPort nodesHavingStaleValue : nodesHavingStaleValues) {
+            //each request needs its own correlation id, to be matched with its own response.
+            var writeRequest = createSetValueRequest(latestStoredValue.getKey(), latestStoredValue.getValue(), latestStoredValue.getTimestamp());
             var requestCallback = new CompletionCallback();
             logger.info("Sending read repair request to " + nodesHavingStaleValue + ":" + latestStoredValue.getValue());
             responseFutures.add(requestCallback.getFuture());
@@ -54,11 +55,10 @@ class ReadRepairer {
         }
     }
 
-    int requestId = new Random().nextInt();
     private RequestOrResponse createSetValueRequest(String key, String value, long timestamp) {
         VersionedSetValueRequest setValueRequest = new VersionedSetValueRequest(key, value, -1, -1, timestamp);
         RequestOrResponse requestOrResponse = new RequestOrResponse(MessageId.VersionedSetValueRequest.getId(),
-                JsonSerDes.serialize(setValueRequest), requestId++, replica.getPeerConnectionAddress());
+                JsonSerDes.serialize(setValueRequest), replica.newCorrelationId(), replica.getPeerConnectionAddress());
         return requestOrResponse;
     }
 
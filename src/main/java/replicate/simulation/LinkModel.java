@@ -0,0 +1,37 @@
+package replicate.simulation;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Latency, jitter and bandwidth of a simulated link. Each message takes its size
+ * divided by the bandwidth to transmit, then the latency plus a uniformly random
+ * part of the jitter to arrive. A bandwidth of zero means transmission takes no time.
+ */
+public record LinkModel(Duration latency, Duration jitter, long bytesPerSecond) {
+
+    public static LinkModel latency(Duration latency) {
+        return new LinkModel(latency, Duration.ZERO, 0);
+    }
+
+    public LinkModel withJitter(Duration jitter) {
+        return new LinkModel(latency, jitter, bytesPerSecond);
+    }
+
+    public LinkModel withBandwidth(long bytesPerSecond) {
+        return new LinkModel(latency, jitter, bytesPerSecond);
+    }
+
+    long transmissionNanos(int sizeBytes) {
+        if (bytesPerSecond <= 0) {
+            return 0;
+        }
+        return sizeBytes * 1_000_000_000L / bytesPerSecond;
+    }
+
+    long latencyNanos(Random random) {
+        long jitterNanos = jitter.toNanos();
+        long extra = jitterNanos > 0 ? (long) (random.nextDouble() * jitterNanos) : 0;
+        return latency.toNanos() + extra;
+    }
+}
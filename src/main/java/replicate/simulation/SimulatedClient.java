@@ -0,0 +1,62 @@
+package replicate.simulation;
+
+import replicate.common.JsonSerDes;
+import replicate.common.MessagePayload;
+import replicate.common.NetworkClient;
+import replicate.common.RequestOrResponse;
+import replicate.net.ClientConnection;
+import replicate.net.FrameCodec;
+import replicate.net.InetAddressAndPort;
+
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A client at an address of the simulation. Requests and their responses cross the
+ * links between it and the replicas like any other message, and the returned future
+ * completes on the simulation thread when the response arrives.
+ */
+public class SimulatedClient {
+    private final Simulation simulation;
+    private final InetAddressAndPort address;
+    private int nextCorrelationId;
+
+    public SimulatedClient(Simulation simulation, InetAddressAndPort address) {
+        this.simulation = simulation;
+        this.address = address;
+    }
+
+    public <Req extends MessagePayload, Res> CompletableFuture<NetworkClient.Response<Res>> send(Req request, InetAddressAndPort to, Class<Res> responseClass) {
+        CompletableFuture<NetworkClient.Response<Res>> response = new CompletableFuture<>();
+        if (simulation.listenerAt(to) == null) {
+            response.completeExceptionally(new ConnectException("Connection refused: nothing listening on " + to));
+            return response;
+        }
+        RequestOrResponse message = new RequestOrResponse(request.getMessageId().getId(), JsonSerDes.serialize(request), nextCorrelationId++);
+        ClientConnection replyTo = new ClientConnection() {
+            @Override
+            public void write(RequestOrResponse reply) {
+                ByteBuffer frame = FrameCodec.encode(reply);
+                reply.releasePayload();
+                simulation.transmit(to, address, frame.remaining(), () -> {
+                    frame.getInt(); //size prefix
+                    response.complete(parse(FrameCodec.decode(frame), responseClass));
+                });
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        SimulatedTransport.transmit(simulation, address, to, message, replyTo, response::completeExceptionally);
+        return response;
+    }
+
+    private static <Res> NetworkClient.Response<Res> parse(RequestOrResponse reply, Class<Res> responseClass) {
+        if (reply.isError()) {
+            return NetworkClient.Response.error(JsonSerDes.deserialize(reply.getPayload(), String.class));
+        }
+        return NetworkClient.Response.result(JsonSerDes.deserialize(reply.getPayload(), responseClass));
+    }
+}
@@ -0,0 +1,38 @@
+package replicate.simulation;
+
+import replicate.common.SystemClock;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Reads the simulation's virtual time, and hands out executors which run their
+ * tasks as simulation events. Clock skew added to it shifts now() as usual.
+ */
+public class SimulatedClock extends SystemClock {
+    private final Simulation simulation;
+
+    SimulatedClock(Simulation simulation) {
+        this.simulation = simulation;
+    }
+
+    @Override
+    public long nanoTime() {
+        return simulation.nanoTime();
+    }
+
+    @Override
+    protected long currentTimeMillis() {
+        return Simulation.START_EPOCH_MILLIS + simulation.nanoTime() / 1_000_000;
+    }
+
+    @Override
+    public ScheduledExecutorService newScheduledExecutor() {
+        return new SimulatedExecutor(simulation);
+    }
+
+    @Override
+    public Random newRandom() {
+        return new Random(simulation.random().nextLong());
+    }
+}
@@ -0,0 +1,144 @@
+package replicate.simulation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * A ScheduledExecutorService whose tasks are simulation events. Tasks run on the
+ * simulation's thread, in virtual time, so waiting on their futures would never return.
+ * After shutdown, tasks already scheduled still run, as with the JDK executors,
+ * except for periodic ones. shutdownNow drops them all.
+ */
+class SimulatedExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+    private final Simulation simulation;
+    private boolean shutdown;
+    private boolean stopped;
+
+    SimulatedExecutor(Simulation simulation) {
+        this.simulation = simulation;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(Executors.callable(command, null), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        checkNotShutdown();
+        SimulatedFuture<V> future = new SimulatedFuture<>(callable);
+        future.scheduleAfter(unit.toNanos(delay));
+        return future;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        checkNotShutdown();
+        PeriodicFuture future = new PeriodicFuture(command, unit.toNanos(period), true);
+        future.scheduleAfter(unit.toNanos(initialDelay));
+        return future;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        checkNotShutdown();
+        PeriodicFuture future = new PeriodicFuture(command, unit.toNanos(delay), false);
+        future.scheduleAfter(unit.toNanos(initialDelay));
+        return future;
+    }
+
+    private void checkNotShutdown() {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        stopped = true;
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return stopped;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return stopped;
+    }
+
+    private class SimulatedFuture<V> extends FutureTask<V> implements ScheduledFuture<V> {
+        long timeNanos;
+
+        SimulatedFuture(Callable<V> callable) {
+            super(callable);
+        }
+
+        SimulatedFuture(Runnable runnable) {
+            super(runnable, null);
+        }
+
+        void scheduleAfter(long delayNanos) {
+            Simulation.Event event = simulation.schedule(delayNanos, this::runEvent);
+            timeNanos = event.timeNanos;
+        }
+
+        void runEvent() {
+            if (!stopped) {
+                run();
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(timeNanos - simulation.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    private class PeriodicFuture extends SimulatedFuture<Void> {
+        private final long periodNanos;
+        private final boolean fixedRate;
+
+        PeriodicFuture(Runnable command, long periodNanos, boolean fixedRate) {
+            super(command);
+            this.periodNanos = periodNanos;
+            this.fixedRate = fixedRate;
+        }
+
+        @Override
+        void runEvent() {
+            if (stopped || shutdown) {
+                return;
+            }
+            //runAndReset leaves the future cancelled, or done if the task threw, which stops the repeats.
+            if (runAndReset()) {
+                long next = fixedRate ? timeNanos + periodNanos : simulation.nanoTime() + periodNanos;
+                scheduleAfter(next - simulation.nanoTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package replicate.simulation;
+
+import replicate.common.Message;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+import replicate.net.ClientConnection;
+import replicate.net.InetAddressAndPort;
+import replicate.net.Listener;
+import replicate.net.RequestConsumer;
+
+/**
+ * A listener bound to an address in the simulation, @see SimulatedTransport.
+ * Messages are handed to the consumer when their delivery event runs.
+ */
+class SimulatedListener implements Listener {
+    private final Simulation simulation;
+    private final InetAddressAndPort address;
+    private final RequestConsumer consumer;
+
+    SimulatedListener(Simulation simulation, InetAddressAndPort address, RequestConsumer consumer) {
+        this.simulation = simulation;
+        this.address = address;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void start() {
+        simulation.bind(address, this);
+    }
+
+    @Override
+    public void shudown() {
+        simulation.unbind(address, this);
+    }
+
+    void deliver(RequestOrResponse message, ClientConnection replyTo) {
+        var header = new Message.Header(message.getFromAddress(), message.getCorrelationId(), MessageId.valueOf(message.getRequestId()));
+        consumer.accept(new Message<>(message, header, replyTo));
+    }
+}
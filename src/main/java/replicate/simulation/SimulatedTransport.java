@@ -0,0 +1,88 @@
+package replicate.simulation;
+
+import replicate.common.RequestOrResponse;
+import replicate.net.ClientConnection;
+import replicate.net.FrameCodec;
+import replicate.net.InetAddressAndPort;
+import replicate.net.Listener;
+import replicate.net.RequestConsumer;
+import replicate.net.Transport;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Sends messages through the simulation, which delivers them after the time the
+ * link model gives for their encoded size, @see Simulation#transmit.
+ * Messages are encoded when sent, so the sender's payload buffer can be released
+ * straight away, and decoded by the receiver when they arrive.
+ * A message to an address nobody listens on fails the send, and one whose receiver
+ * went away while it was in flight is reported to onFailure, as a reset connection would be.
+ */
+public class SimulatedTransport implements Transport {
+    //Peers reply with messages of their own, so writes to the peer connection go nowhere.
+    private static final ClientConnection NO_REPLIES = new ClientConnection() {
+        @Override
+        public void write(RequestOrResponse response) {
+            response.releasePayload();
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final Simulation simulation;
+    private boolean closed;
+
+    public SimulatedTransport(Simulation simulation) {
+        this.simulation = simulation;
+    }
+
+    @Override
+    public Listener listen(InetAddressAndPort address, RequestConsumer consumer) {
+        return new SimulatedListener(simulation, address, consumer);
+    }
+
+    @Override
+    public void send(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
+        try {
+            if (closed) {
+                throw new IOException("Transport is closed");
+            }
+            if (simulation.listenerAt(address) == null) {
+                throw new ConnectException("Connection refused: nothing listening on " + address);
+            }
+            transmit(simulation, message.getFromAddress(), address, message, NO_REPLIES, onFailure);
+        } finally {
+            message.releasePayload();
+        }
+    }
+
+    static void transmit(Simulation simulation, InetAddressAndPort from, InetAddressAndPort to, RequestOrResponse message,
+                         ClientConnection replyTo, Consumer<IOException> onFailure) {
+        ByteBuffer frame = FrameCodec.encode(message);
+        int size = frame.remaining();
+        simulation.transmit(from, to, size, () -> {
+            SimulatedListener listener = simulation.listenerAt(to);
+            if (listener == null) {
+                onFailure.accept(new IOException("Connection reset: " + to + " stopped listening"));
+                return;
+            }
+            frame.getInt(); //size prefix
+            listener.deliver(FrameCodec.decode(frame), replyTo);
+        });
+    }
+
+    @Override
+    public void disconnect(InetAddressAndPort address) {
+        //no connections to close.
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,180 @@
+package replicate.simulation;
+
+import replicate.net.InetAddressAndPort;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Discrete event simulation of a cluster, on a single thread and in virtual time.
+ * Replicas get their executors and random numbers from a SimulatedClock, so heartbeats,
+ * election timeouts, request expiry and the singular update queues all become events
+ * here, and with Config.withSimulation messages between replicas and clients are
+ * delivered as events after the latency and transmission time of their link.
+ * Events run one at a time, in order of their virtual time and then of scheduling,
+ * and virtual time jumps straight to the next event. So a run is as fast as the code
+ * being run, and the same seed always gives the same history.
+ *
+ * Not thread safe. Everything runs on the thread calling runFor or runUntil.
+ */
+public class Simulation {
+    //fixed, so that wall clock reads are the same across runs too.
+    static final long START_EPOCH_MILLIS = 1_600_000_000_000L;
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final Random random;
+    private final Map<InetAddressAndPort, SimulatedListener> listeners = new HashMap<>();
+    private final Map<Link, LinkState> links = new HashMap<>();
+    private final Map<Link, LinkModel> linkModels = new HashMap<>();
+    private LinkModel defaultLinkModel = LinkModel.latency(Duration.ofMillis(1));
+    private long nowNanos;
+    private long nextSequence;
+    private long eventsRun;
+    private long messagesSent;
+
+    public Simulation(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public SimulatedClock newClock() {
+        return new SimulatedClock(this);
+    }
+
+    public long nanoTime() {
+        return nowNanos;
+    }
+
+    public long eventsRun() {
+        return eventsRun;
+    }
+
+    //messages put on any link, by replicas and clients.
+    public long messagesSent() {
+        return messagesSent;
+    }
+
+    public int pendingEvents() {
+        return events.size();
+    }
+
+    //Seeds the random numbers of every clock, so they are drawn in the same order on every run.
+    Random random() {
+        return random;
+    }
+
+    public void setDefaultLink(LinkModel model) {
+        this.defaultLinkModel = model;
+    }
+
+    //the model for messages from one address to the other. The reverse direction is not changed.
+    public void setLink(InetAddressAndPort from, InetAddressAndPort to, LinkModel model) {
+        linkModels.put(new Link(from, to), model);
+    }
+
+    Event schedule(long delayNanos, Runnable task) {
+        return scheduleAt(nowNanos + Math.max(0, delayNanos), task);
+    }
+
+    Event scheduleAt(long timeNanos, Runnable task) {
+        Event event = new Event(Math.max(timeNanos, nowNanos), nextSequence++, task);
+        events.add(event);
+        return event;
+    }
+
+    /**
+     * Runs all the events due in the next duration of virtual time, and moves the
+     * clock to its end.
+     */
+    public void runFor(Duration duration) {
+        long end = nowNanos + duration.toNanos();
+        while (!events.isEmpty() && events.peek().timeNanos <= end) {
+            runNext();
+        }
+        nowNanos = end;
+    }
+
+    /**
+     * Runs events until the condition holds, checking it after each one.
+     * @return false if the timeout, in virtual time, passed first.
+     */
+    public boolean runUntil(BooleanSupplier condition, Duration timeout) {
+        long end = nowNanos + timeout.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (events.isEmpty() || events.peek().timeNanos > end) {
+                nowNanos = end;
+                return condition.getAsBoolean();
+            }
+            runNext();
+        }
+        return true;
+    }
+
+    private void runNext() {
+        Event event = events.poll();
+        nowNanos = event.timeNanos;
+        eventsRun++;
+        event.task.run();
+    }
+
+    void bind(InetAddressAndPort address, SimulatedListener listener) {
+        if (listeners.putIfAbsent(address, listener) != null) {
+            throw new IllegalStateException("Address already in use: " + address);
+        }
+    }
+
+    void unbind(InetAddressAndPort address, SimulatedListener listener) {
+        listeners.remove(address, listener);
+    }
+
+    SimulatedListener listenerAt(InetAddressAndPort address) {
+        return listeners.get(address);
+    }
+
+    /**
+     * Runs the delivery once a message of the given size has crossed the link.
+     * A link sends one message at a time, so a message waits for the ones before it
+     * to be transmitted, and messages on a link arrive in the order they were sent,
+     * whatever the jitter.
+     */
+    void transmit(InetAddressAndPort from, InetAddressAndPort to, int sizeBytes, Runnable delivery) {
+        messagesSent++;
+        Link link = new Link(from, to);
+        LinkState state = links.computeIfAbsent(link, l -> new LinkState());
+        LinkModel model = linkModels.getOrDefault(link, defaultLinkModel);
+        long departure = Math.max(nowNanos, state.busyUntilNanos);
+        state.busyUntilNanos = departure + model.transmissionNanos(sizeBytes);
+        long arrival = Math.max(state.busyUntilNanos + model.latencyNanos(random), state.lastArrivalNanos);
+        state.lastArrivalNanos = arrival;
+        scheduleAt(arrival, delivery);
+    }
+
+    static final class Event implements Comparable<Event> {
+        final long timeNanos;
+        final long sequence;
+        final Runnable task;
+
+        Event(long timeNanos, long sequence, Runnable task) {
+            this.timeNanos = timeNanos;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(timeNanos, other.timeNanos);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private record Link(InetAddressAndPort from, InetAddressAndPort to) {
+    }
+
+    private static final class LinkState {
+        long busyUntilNanos;
+        long lastArrivalNanos;
+    }
+}
@@ -3,14 +3,15 @@ package replicate.twophaseexecution;
 import replicate.common.JsonSerDes;
 import replicate.wal.Command;
 
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 public class CompareAndSwap extends Command {
     private String key;
     Optional<String> existingValue;
     String newValue;
+    //the CBOR body is needed for both bodySize and serializeBody, so it is encoded once.
+    private transient byte[] serializedBody;
 
     public CompareAndSwap(String key, Optional<String> existingValue, String newValue) {
         this.key = key;
@@ -18,8 +19,11 @@ public class CompareAndSwap extends Command {
         this.newValue = newValue;
     }
 
-    public static Command deserialize(byte[] bytes) {
-        return JsonSerDes.deserialize(bytes, CompareAndSwap.class);
+    //the body takes the rest of the buffer.
+    public static Command deserializeBody(ByteBuffer buffer) {
+        CompareAndSwap cas = JsonSerDes.deserialize(buffer, CompareAndSwap.class);
+        buffer.position(buffer.limit());
+        return cas;
     }
 
     public Optional<String> getExistingValue() {
@@ -35,9 +39,25 @@ public class CompareAndSwap extends Command {
     }
 
     @Override
-    protected void serialize(DataOutputStream os) throws IOException {
-        os.writeInt(Command.CasCommandType);
-        os.write(JsonSerDes.serialize(this));
+    protected int commandType() {
+        return Command.CasCommandType;
+    }
+
+    @Override
+    protected int bodySize() {
+        return serializedBody().length;
+    }
+
+    @Override
+    protected void serializeBody(ByteBuffer buffer) {
+        buffer.put(serializedBody());
+    }
+
+    private byte[] serializedBody() {
+        if (serializedBody == null) {
+            serializedBody = JsonSerDes.serialize(this);
+        }
+        return serializedBody;
     }
 
     private CompareAndSwap() {
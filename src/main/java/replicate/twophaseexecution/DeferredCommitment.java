@@ -4,12 +4,12 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import replicate.common.*;
 import replicate.net.InetAddressAndPort;
+import replicate.net.requestwaitinglist.RequestWaitingList;
 import replicate.twophaseexecution.messages.*;
 import replicate.vsr.CompletionCallback;
 import replicate.wal.Command;
 import replicate.wal.DurableKVStore;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.List;
@@ -61,6 +61,7 @@ import java.util.function.Function;
 public class DeferredCommitment extends Replica {
     Command acceptedCommand; //intermediate storage waiting for confirmation.
     DurableKVStore kvStore; //final storage exposed to clients.
+    RequestWaitingList<BigInteger, ExecuteCommandResponse> clientRequestWaitingList; //client requests waiting for their command to commit.
 
     // what to do with other requests?
     //if not accepting other requests..
@@ -74,6 +75,7 @@ public class DeferredCommitment extends Replica {
     public DeferredCommitment(String name, Config config, SystemClock clock, InetAddressAndPort clientConnectionAddress, InetAddressAndPort peerConnectionAddress, List<InetAddressAndPort> peerAddresses) throws IOException {
         super(name, config, clock, clientConnectionAddress, peerConnectionAddress, peerAddresses);
         this.kvStore = new DurableKVStore(config);
+        this.clientRequestWaitingList = new RequestWaitingList<>(clock);
     }
 
     @Override
@@ -110,20 +112,20 @@ public class DeferredCommitment extends Replica {
             sendOneway(message.getFromAddress(), new CommitCommandResponse(isCommitted, existingValue), message.getCorrelationId());
             //complete pending client requests.
             logger.info("Completing client request for " + requestIdentifier(t.getCommand()));
-            requestWaitingList.handleResponse(requestIdentifier(command.serialize()), new ExecuteCommandResponse(existingValue, isCommitted));
+            clientRequestWaitingList.handleResponse(requestIdentifier(command.serialize()), new ExecuteCommandResponse(existingValue, isCommitted));
             return;
         }
         throw new IllegalArgumentException("Unknown command " + command);
     }
 
     static Command getCommand(byte[] command) {
-        return Command.deserialize(new ByteArrayInputStream(command));
+        return Command.deserialize(command);
     }
 
     CompletableFuture<ExecuteCommandResponse> handleExecute(ExecuteCommandRequest t) {
         byte[] command = getCommand(t.command).serialize();
-        CompletionCallback<ExecuteCommandResponse> completionCallback = new CompletionCallback();
-        requestWaitingList.add(requestIdentifier(command), completionCallback);
+        CompletionCallback<ExecuteCommandResponse> completionCallback = new CompletionCallback<>();
+        clientRequestWaitingList.add(requestIdentifier(command), completionCallback);
         executeTwoPhases(command);
         return completionCallback.getFuture();
     }
@@ -146,7 +148,7 @@ public class DeferredCommitment extends Replica {
         //phase 1 - propose
         ProposeRequest proposal = new ProposeRequest(command);
         AsyncQuorumCallback<ProposeResponse> proposeQuorumCallback = new AsyncQuorumCallback<>(getNoOfReplicas(), p -> p.isAccepted());
-        sendMessageToReplicas(proposeQuorumCallback, proposal.getMessageId(), proposal);
+        sendMessageToQuorum(proposeQuorumCallback, proposal.getMessageId(), proposal);
         return proposeQuorumCallback.getQuorumFuture();
     }
 
@@ -75,8 +75,8 @@ public class RecoverableDeferredCommitment extends DeferredCommitment {
 
     @Override
     CompletableFuture<ExecuteCommandResponse> handleExecute(ExecuteCommandRequest newCommand) {
-        CompletionCallback<ExecuteCommandResponse> callback = new CompletionCallback();
-        requestWaitingList.add(requestIdentifier(newCommand.command), callback);
+        CompletionCallback<ExecuteCommandResponse> callback = new CompletionCallback<>();
+        clientRequestWaitingList.add(requestIdentifier(newCommand.command), callback);
         //phase 1
         prepare().
                 thenCompose(r -> {
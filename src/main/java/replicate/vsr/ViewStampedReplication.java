@@ -134,7 +134,7 @@ public class ViewStampedReplication extends Replica {
         logger.info(getName() + " Received DoViewChange from " + message.getFromAddress() + " for view " + doViewChange.viewNumber);
         doViewChangeCounter++;
         doViewChangeMessages.add(doViewChange);
-        if (doViewChangeCounter == quorum()) {
+        if (doViewChangeCounter == phase1Quorum()) {
             logger.info("");
             DoViewChange selectedViewChange = pickViewChangeMessageWithHighestNormalViewnumber(doViewChangeMessages);
             this.log = selectedViewChange.log;
@@ -166,7 +166,7 @@ public class ViewStampedReplication extends Replica {
             transitionToViewChange();
         }
         startViewChangeCounter++;
-        if (startViewChangeCounter == quorum()) {
+        if (startViewChangeCounter == phase1Quorum()) {
             InetAddressAndPort primaryForView = configuration.getPrimaryForView(viewNumber);
             logger.info(getName() + " StartViewChange quorum reached." + primaryForView + " is the new primary." + " Sending DoViewChange");
             sendOneway(primaryForView, new DoViewChange(viewNumber, log, normalStatusViewNumber, opNumber, commitNumber), message.getCorrelationId());
@@ -197,7 +197,7 @@ public class ViewStampedReplication extends Replica {
         //from last commit number to the entry which is quorum accepted.
         for (int i = commitNumber + 1; i <= log.size(); i++) {
             LogEntry logEntry = log.get(i);
-            if (logEntry == null || !logEntry.isQuorumAccepted(quorum())) {
+            if (logEntry == null || !logEntry.isQuorumAccepted(phase2Quorum())) {
                 break;
             }
             commitNumber = i;
@@ -248,7 +248,9 @@ public class ViewStampedReplication extends Replica {
 
     public CompletableFuture<ExecuteCommandResponse> handleClientRequest(ExecuteCommandRequest request) {
         if (!isPrimaryForView(viewNumber, getPeerConnectionAddress())) {
-            return CompletableFuture.completedFuture(ExecuteCommandResponse.errorResponse("Not processing as the request is sent to backup."));
+            //the primary of the view is not known until the view change completes.
+            var primary = status == Status.Normal ? clientAddressOf(getPrimaryAddress()) : Optional.<InetAddressAndPort>empty();
+            return CompletableFuture.failedFuture(new NotLeaderException("Not processing as the request is sent to backup.", primary));
         };
 
         opNumber = opNumber + 1;
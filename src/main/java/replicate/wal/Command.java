@@ -3,7 +3,10 @@ package replicate.wal;
 
 import replicate.twophaseexecution.CompareAndSwap;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 
 public abstract class Command {
     public static final int NO_CLIENT_ID = -1;
@@ -33,44 +36,67 @@ public abstract class Command {
         return (T) this;
     }
 
+    //clientId, requestNumber and the command type.
+    static final int HEADER_SIZE = 8 + 4 + 4;
+
+    /**
+     * Commands are written straight into a ByteBuffer. The caller can pass a
+     * pooled or reused buffer with at least serializedSize() bytes remaining.
+     */
     public byte[] serialize() {
-        try {
-            var baos = new ByteArrayOutputStream();
-            var dataInputStream = new DataOutputStream(baos);
-            dataInputStream.writeLong(clientId);
-            dataInputStream.writeInt(requestNumber);
-            serialize(dataInputStream);
-            return baos.toByteArray();
+        var buffer = ByteBuffer.allocate(serializedSize());
+        serialize(buffer);
+        return buffer.array();
+    }
 
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    public int serializedSize() {
+        return HEADER_SIZE + bodySize();
+    }
+
+    public void serialize(ByteBuffer buffer) {
+        buffer.putLong(clientId);
+        buffer.putInt(requestNumber);
+        buffer.putInt(commandType());
+        serializeBody(buffer);
     }
 
-    protected abstract void serialize(DataOutputStream os) throws IOException;
+    protected abstract int commandType();
+
+    protected abstract int bodySize();
 
-    public static Command deserialize(byte[] is) {
-        return deserialize(new ByteArrayInputStream(is));
+    protected abstract void serializeBody(ByteBuffer buffer);
+
+    public static Command deserialize(byte[] bytes) {
+        return deserialize(ByteBuffer.wrap(bytes));
     }
 
     public static Command deserialize(InputStream is) {
-      try {
-          DataInputStream daos = new DataInputStream(is);
-          var clientId = daos.readLong();
-          var requestNumber = daos.readInt();
-          int commandType = daos.readInt();
-          if (commandType == SetValueType) {
-              return SetValueCommand.deserialize(daos).withClientId(clientId).withRequestNumber(requestNumber);
-          } else if (commandType == CompositeCommandType) {
-              return CompositeCommand.deserialize(daos.readAllBytes());
-          }
-          else if (commandType == CasCommandType) {
-            return CompareAndSwap.deserialize(daos.readAllBytes());
-
-          } else throw new IllegalArgumentException("Unknown commandType " + commandType);
-      } catch (Exception e) {
-          throw new RuntimeException(e);
-      }
+        try {
+            return deserialize(is.readAllBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //Reads the command from the buffer position up to its limit.
+    public static Command deserialize(ByteBuffer buffer) {
+        var clientId = buffer.getLong();
+        var requestNumber = buffer.getInt();
+        int commandType = buffer.getInt();
+        Command command;
+        if (commandType == SetValueType) {
+            command = SetValueCommand.deserializeBody(buffer);
+        } else if (commandType == CompositeCommandType) {
+            command = CompositeCommand.deserializeBody(buffer);
+        } else if (commandType == CasCommandType) {
+            command = CompareAndSwap.deserializeBody(buffer);
+        } else throw new IllegalArgumentException("Unknown commandType " + commandType);
+        return command.withClientId(clientId).withRequestNumber(requestNumber);
+    }
+
+    //Peeks the type of the serialized command without decoding it.
+    public static int commandType(ByteBuffer buffer) {
+        return buffer.getInt(buffer.position() + 12);
     }
 
     public boolean hasClientId() {
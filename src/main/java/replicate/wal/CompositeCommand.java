@@ -1,43 +1,43 @@
 package replicate.wal;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
 public class CompositeCommand extends Command {
     List<Command> commands = new ArrayList<>();
+
+    @Override
+    protected int commandType() {
+        return CompositeCommandType;
+    }
+
     @Override
-    public void serialize(DataOutputStream os) throws IOException {
-        os.writeInt(CompositeCommandType);
-        os.writeInt(commands.size());
+    protected int bodySize() {
+        int size = 4;
         for (Command command : commands) {
-            byte[] bytes = command.serialize();
-            Command deserialize = deserialize(new ByteArrayInputStream(bytes));
+            size += 4 + command.serializedSize();
+        }
+        return size;
+    }
 
-            os.writeInt(bytes.length);
-            os.write(bytes);
+    @Override
+    protected void serializeBody(ByteBuffer buffer) {
+        buffer.putInt(commands.size());
+        for (Command command : commands) {
+            buffer.putInt(command.serializedSize());
+            command.serialize(buffer);
         }
     }
 
-    public static Command deserialize(byte[] bytes) {
+    static CompositeCommand deserializeBody(ByteBuffer buffer) {
         CompositeCommand cc = new CompositeCommand();
-        ByteArrayInputStream is = new ByteArrayInputStream(bytes);
-        DataInputStream daos = new DataInputStream(is);
-        try {
-            int noOfCommands = daos.readInt();
-            for (int i = 0; i < noOfCommands; i++) {
-                int size = daos.readInt();
-                byte[]data = new byte[size];
-                daos.read(data);
-                Command deserialize = deserialize(new ByteArrayInputStream(data));
-                cc.add(deserialize);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        int noOfCommands = buffer.getInt();
+        for (int i = 0; i < noOfCommands; i++) {
+            int size = buffer.getInt();
+            cc.add(Command.deserialize(buffer.slice(buffer.position(), size)));
+            buffer.position(buffer.position() + size);
         }
         return cc;
     }
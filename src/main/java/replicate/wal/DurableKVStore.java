@@ -2,7 +2,6 @@ package replicate.wal;
 
 import replicate.common.Config;
 
-import java.io.ByteArrayInputStream;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -56,19 +55,14 @@ public class DurableKVStore {
     }
 
     private void applyEntries(List<WALEntry> walEntries) {
+        var setValueCommand = new SetValueCommandReader();
         for (WALEntry walEntry : walEntries) {
-            Command command = deserialize(walEntry);
-            if (command instanceof SetValueCommand) {
-                SetValueCommand setValueCommand = (SetValueCommand) command;
-                kv.put(setValueCommand.key, setValueCommand.value);
+            if (setValueCommand.wrap(walEntry.getData())) {
+                kv.put(setValueCommand.key(), setValueCommand.value());
             }
         }
     }
 
-    private Command deserialize(WALEntry walEntry) {
-        return Command.deserialize(new ByteArrayInputStream(walEntry.getData()));
-    }
-
     public void close() {
         wal.close();
         kv.clear();
@@ -0,0 +1,110 @@
+package replicate.wal;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Strings in commands are stored in the format of DataOutputStream.writeUTF,
+ * an unsigned short length followed by modified UTF-8 bytes.
+ * These helpers read and write the same bytes directly from a ByteBuffer,
+ * so existing WAL files stay readable.
+ */
+class ModifiedUtf8 {
+
+    static int sizeOf(String s) {
+        return 2 + encodedLength(s);
+    }
+
+    static void write(ByteBuffer buffer, String s) {
+        int length = encodedLength(s);
+        if (length > 0xFFFF) {
+            throw new IllegalArgumentException("String too long to encode: " + length + " bytes");
+        }
+        buffer.putShort((short) length);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                buffer.put((byte) c);
+            } else if (c <= 0x07FF) {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    static String read(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        String s = decode(buffer, buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return s;
+    }
+
+    static void skip(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        buffer.position(buffer.position() + length);
+    }
+
+    //decodes the string stored at offset, without moving the buffer position.
+    static String decode(ByteBuffer buffer, int offset, int length) {
+        if (offset + length > buffer.limit()) {
+            throw new BufferUnderflowException();
+        }
+        if (isAscii(buffer, offset, length)) {
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.ISO_8859_1);
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        char[] chars = new char[length];
+        int count = 0;
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int b = buffer.get(i) & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+                i++;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (buffer.get(i + 1) & 0x3F));
+                i += 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                chars[count++] = (char) (((b & 0x0F) << 12) | ((buffer.get(i + 1) & 0x3F) << 6) | (buffer.get(i + 2) & 0x3F));
+                i += 3;
+            } else {
+                throw new IllegalArgumentException("Malformed modified UTF-8 at " + i);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static boolean isAscii(ByteBuffer buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int encodedLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c <= 0x07FF) {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
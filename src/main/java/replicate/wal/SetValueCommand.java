@@ -2,10 +2,7 @@ package replicate.wal;
 
 import com.google.common.base.Objects;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 public class SetValueCommand extends Command {
 //<codeFragment name = "setValueCommand">
@@ -22,20 +19,24 @@ public class SetValueCommand extends Command {
     }
 
     @Override
-    public void serialize(DataOutputStream os) throws IOException {
-        os.writeInt(SetValueType);
-        os.writeUTF(key);
-        os.writeUTF(value);
-        os.writeUTF(attachLease);
+    protected int commandType() {
+        return SetValueType;
     }
 
-    public static SetValueCommand deserialize(InputStream is) {
-        try {
-            DataInputStream dataInputStream = new DataInputStream(is);
-            return new SetValueCommand(dataInputStream.readUTF(), dataInputStream.readUTF(), dataInputStream.readUTF());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    @Override
+    protected int bodySize() {
+        return ModifiedUtf8.sizeOf(key) + ModifiedUtf8.sizeOf(value) + ModifiedUtf8.sizeOf(attachLease);
+    }
+
+    @Override
+    protected void serializeBody(ByteBuffer buffer) {
+        ModifiedUtf8.write(buffer, key);
+        ModifiedUtf8.write(buffer, value);
+        ModifiedUtf8.write(buffer, attachLease);
+    }
+
+    static SetValueCommand deserializeBody(ByteBuffer buffer) {
+        return new SetValueCommand(ModifiedUtf8.read(buffer), ModifiedUtf8.read(buffer), ModifiedUtf8.read(buffer));
     }
 //</codeFragment>
 
@@ -0,0 +1,62 @@
+package replicate.wal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight over a serialized SetValueCommand.
+ * wrap only records where the fields are, key() and value() decode them on demand,
+ * so applying a log entry does not allocate a Command, and code which only
+ * needs the key never materializes the value.
+ * A reader is not thread safe. It is meant to be reused by the single thread
+ * applying the log entries.
+ */
+public class SetValueCommandReader {
+    private ByteBuffer buffer;
+    private int keyOffset;
+    private int keyLength;
+    private int valueOffset;
+    private int valueLength;
+    private int leaseLength;
+
+    public boolean wrap(byte[] bytes) {
+        return wrap(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Points the reader at the command in the buffer.
+     * Returns false, leaving the reader unchanged, if the buffer holds some other command.
+     */
+    public boolean wrap(ByteBuffer buffer) {
+        if (Command.commandType(buffer) != Command.SetValueType) {
+            return false;
+        }
+        this.buffer = buffer;
+        int offset = buffer.position() + Command.HEADER_SIZE;
+        keyLength = buffer.getShort(offset) & 0xFFFF;
+        keyOffset = offset + 2;
+        valueLength = buffer.getShort(keyOffset + keyLength) & 0xFFFF;
+        valueOffset = keyOffset + keyLength + 2;
+        leaseLength = buffer.getShort(valueOffset + valueLength) & 0xFFFF;
+        return true;
+    }
+
+    public long clientId() {
+        return buffer.getLong(buffer.position());
+    }
+
+    public int requestNumber() {
+        return buffer.getInt(buffer.position() + 8);
+    }
+
+    public String key() {
+        return ModifiedUtf8.decode(buffer, keyOffset, keyLength);
+    }
+
+    public String value() {
+        return ModifiedUtf8.decode(buffer, valueOffset, valueLength);
+    }
+
+    public boolean hasLease() {
+        return leaseLength > 0;
+    }
+}
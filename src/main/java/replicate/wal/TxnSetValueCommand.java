@@ -2,10 +2,7 @@ package replicate.wal;
 
 import com.google.common.base.Objects;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 public class TxnSetValueCommand extends Command {
@@ -21,23 +18,26 @@ public class TxnSetValueCommand extends Command {
     }
 
     @Override
-    public void serialize(DataOutputStream os) throws IOException {
-        os.writeInt(Command.SetValueType);
-        os.writeUTF(key);
-        os.writeUTF(value);
-        os.writeUTF(txnId.toString());
+    protected int commandType() {
+        return Command.SetValueType;
     }
 
-    public static TxnSetValueCommand deserialize(InputStream is) {
-        try {
-            DataInputStream dataInputStream = new DataInputStream(is);
-            return new TxnSetValueCommand(UUID.fromString(dataInputStream.readUTF()),
-                    dataInputStream.readUTF(),
-                    dataInputStream.readUTF());
+    @Override
+    protected int bodySize() {
+        return ModifiedUtf8.sizeOf(key) + ModifiedUtf8.sizeOf(value) + ModifiedUtf8.sizeOf(txnId.toString());
+    }
+
+    @Override
+    protected void serializeBody(ByteBuffer buffer) {
+        ModifiedUtf8.write(buffer, key);
+        ModifiedUtf8.write(buffer, value);
+        ModifiedUtf8.write(buffer, txnId.toString());
+    }
 
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    static TxnSetValueCommand deserializeBody(ByteBuffer buffer) {
+        String key = ModifiedUtf8.read(buffer);
+        String value = ModifiedUtf8.read(buffer);
+        return new TxnSetValueCommand(UUID.fromString(ModifiedUtf8.read(buffer)), key, value);
     }
 //</codeFragment>
 
@@ -3,7 +3,16 @@ package replicate.common;
 import org.junit.Test;
 import replicate.paxos.messages.PrepareResponse;
 
-import static org.junit.Assert.assertTrue;
+import replicate.net.InetAddressAndPort;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
 
 public class AsyncQuorumCallbackTest {
     @Test
@@ -16,4 +25,82 @@ public class AsyncQuorumCallbackTest {
         assertTrue(callback.quorumFuture.isCompletedExceptionally());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void completesAsSoonAsQuorumIsReached() {
+        AsyncQuorumCallback<PrepareResponse> callback = new AsyncQuorumCallback<>(5, p -> p.promised);
+        InetAddressAndPort first = TestUtils.randomAddress();
+        InetAddressAndPort rejected = TestUtils.randomAddress();
+        callback.onResponse(new PrepareResponse(true), first);
+        callback.onResponse(new PrepareResponse(false), rejected);
+        callback.onResponse(new PrepareResponse(true), TestUtils.randomAddress());
+        assertFalse(callback.quorumFuture.isDone());
+
+        callback.onResponse(new PrepareResponse(true), TestUtils.randomAddress());
+        Map<InetAddressAndPort, PrepareResponse> responses = callback.quorumFuture.join();
+        assertEquals(4, responses.size());
+        assertFalse(responses.get(rejected).promised);
+
+        callback.onError(new RuntimeException("late failure"));
+        assertFalse(callback.quorumFuture.isCompletedExceptionally());
+    }
+
+    @Test
+    public void failsOnlyAfterAllReplicasHaveAnswered() {
+        AsyncQuorumCallback<PrepareResponse> callback = new AsyncQuorumCallback<>(5, p -> p.promised);
+        callback.onResponse(new PrepareResponse(true), TestUtils.randomAddress());
+        callback.onError(new RuntimeException("timed out"));
+        callback.onResponse(new PrepareResponse(false), TestUtils.randomAddress());
+        callback.onError(new RuntimeException("timed out"));
+        assertFalse(callback.quorumFuture.isDone());
+
+        callback.onResponse(new PrepareResponse(true), TestUtils.randomAddress());
+        assertTrue(callback.quorumFuture.isCompletedExceptionally());
+    }
+
+    @Test
+    public void concurrentResponsesCompleteFutureExactlyOnce() throws Exception {
+        int replicas = 101;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 50; round++) {
+                AsyncQuorumCallback<PrepareResponse> callback = new AsyncQuorumCallback<>(replicas, p -> p.promised);
+                AtomicInteger completions = new AtomicInteger();
+                callback.getQuorumFuture().whenComplete((r, e) -> completions.incrementAndGet());
+                CountDownLatch start = new CountDownLatch(1);
+                CountDownLatch done = new CountDownLatch(replicas);
+                for (int i = 0; i < replicas; i++) {
+                    boolean promised = i % 3 != 0;
+                    InetAddressAndPort from = InetAddressAndPort.create("127.0.0.1", 9000 + i);
+                    executor.execute(() -> {
+                        try {
+                            start.await();
+                            callback.onResponse(new PrepareResponse(promised), from);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                }
+                start.countDown();
+                assertTrue(done.await(5, TimeUnit.SECONDS));
+
+                assertEquals(1, completions.get());
+                Map<InetAddressAndPort, PrepareResponse> responses = callback.getQuorumFuture().join();
+                assertTrue(responses.values().stream().filter(p -> p.promised).count() >= replicas / 2 + 1);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void completesWithExplicitQuorumSmallerThanMajority() {
+        AsyncQuorumCallback<PrepareResponse> callback = new AsyncQuorumCallback<>(5, 2, p -> p.promised);
+        callback.onResponse(new PrepareResponse(true), TestUtils.randomAddress());
+        assertFalse(callback.quorumFuture.isDone());
+
+        callback.onResponse(new PrepareResponse(true), TestUtils.randomAddress());
+        assertEquals(2, callback.quorumFuture.join().size());
+    }
+}
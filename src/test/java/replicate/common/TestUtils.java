@@ -12,6 +12,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import static org.junit.Assert.fail;
@@ -144,15 +145,25 @@ public class TestUtils {
     }
 
     public static <T extends Replica> Map<String, T> startCluster(List<String> nodeNames, ReplicaFactory<T> factory) throws IOException {
+        return startCluster(nodeNames, config -> {}, factory);
+    }
+
+    //configure is applied to the config of every replica, e.g. to pick the transport.
+    public static <T extends Replica> Map<String, T> startCluster(List<String> nodeNames, Consumer<Config> configure, ReplicaFactory<T> factory) throws IOException {
         int clusterSize = nodeNames.size();
         Map<String, T> clusterNodes = new HashMap<>();
         SystemClock clock = new SystemClock();
         List<InetAddressAndPort> addresses = TestUtils.createNAddresses(clusterSize);
         List<InetAddressAndPort> clientInterfaceAddresses = TestUtils.createNAddresses(clusterSize);
+        List<Peer> servers = new ArrayList<>();
+        for (int i = 0; i < clusterSize; i++) {
+            servers.add(new Peer(i, addresses.get(i), clientInterfaceAddresses.get(i)));
+        }
         for (int i = 0; i < clusterSize; i++) {
             //public static void main(String[]args) {
-            Config config = new Config(TestUtils.tempDir("clusternode_" + i).getAbsolutePath());
+            Config config = new Config(TestUtils.tempDir("clusternode_" + i).getAbsolutePath()).withServers(servers);
             config.setServerId(i);
+            configure.accept(config);
             String nodeName = nodeNames.get(i);
             T replica =  factory.create(nodeName, config, clock, clientInterfaceAddresses.get(i), addresses.get(i), addresses);
             replica.start();
@@ -0,0 +1,81 @@
+package replicate.common.codec;
+
+import org.junit.Test;
+import replicate.common.JsonSerDes;
+import replicate.common.MessageId;
+import replicate.common.MonotonicId;
+import replicate.mpaxoswithheartbeats.HeartbeatResponse;
+import replicate.paxoslog.messages.CommitRequest;
+import replicate.paxoslog.messages.PrepareRequest;
+import replicate.paxoslog.messages.PrepareResponse;
+import replicate.paxoslog.messages.ProposalRequest;
+import replicate.quorum.messages.GetValueRequest;
+import replicate.twophaseexecution.messages.ExecuteCommandRequest;
+import replicate.vsr.messages.Prepare;
+import replicate.wal.SetValueCommand;
+
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class BinaryMessageCodecTest {
+    BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    @Test
+    public void encodesProposalRequestInFewerBytesThanCbor() {
+        byte[] command = new SetValueCommand("title", "Microservices").serialize();
+        var request = new ProposalRequest(new MonotonicId(10, 1), 42, command);
+
+        byte[] bytes = codec.encode(MessageId.ProposeRequest, request);
+        var decoded = codec.decode(MessageId.ProposeRequest, bytes, ProposalRequest.class);
+
+        assertEquals(request.generation, decoded.generation);
+        assertEquals(42, decoded.index);
+        assertArrayEquals(command, decoded.proposedValue);
+        assertTrue(bytes.length < JsonSerDes.serialize(request).length);
+    }
+
+    @Test
+    public void roundTripsOptionalAndNullableFields() {
+        var promise = new PrepareResponse(true, Optional.of(new byte[]{1, 2, 3}), Optional.empty());
+        var decodedPromise = codec.decode(MessageId.Promise, codec.encode(MessageId.Promise, promise), PrepareResponse.class);
+        assertTrue(decodedPromise.promised);
+        assertArrayEquals(new byte[]{1, 2, 3}, decodedPromise.acceptedValue.get());
+        assertEquals(Optional.empty(), decodedPromise.acceptedGeneration);
+
+        var prepare = new PrepareRequest(-1, new MonotonicId(Integer.MAX_VALUE, -1));
+        var decodedPrepare = codec.decode(MessageId.Prepare, codec.encode(MessageId.Prepare, prepare), PrepareRequest.class);
+        assertEquals(Integer.valueOf(-1), decodedPrepare.index);
+        assertEquals(prepare.generation, decodedPrepare.generation);
+
+        var commit = new CommitRequest(7, null, MonotonicId.empty());
+        var decodedCommit = codec.decode(MessageId.Commit, codec.encode(MessageId.Commit, commit), CommitRequest.class);
+        assertNull(decodedCommit.committedValue);
+        assertEquals(MonotonicId.empty(), decodedCommit.generation);
+
+        var heartbeatResponse = new HeartbeatResponse(false, null);
+        var decodedResponse = codec.decode(MessageId.HeartBeatResponse, codec.encode(MessageId.HeartBeatResponse, heartbeatResponse), HeartbeatResponse.class);
+        assertFalse(decodedResponse.success);
+        assertNull(decodedResponse.fullLogBallot);
+    }
+
+    @Test
+    public void picksSerializerByPayloadClassForSharedMessageIds() {
+        var prepare = new Prepare(3, new ExecuteCommandRequest(new byte[]{9}), 12, 11);
+        var decoded = codec.decode(MessageId.Prepare, codec.encode(MessageId.Prepare, prepare), Prepare.class);
+        assertEquals(3, decoded.viewNumber);
+        assertArrayEquals(new byte[]{9}, decoded.request.command);
+        assertEquals(12, decoded.opNumber);
+        assertEquals(11, decoded.commitNumber);
+    }
+
+    @Test
+    public void fallsBackToCborForUnregisteredMessages() {
+        var request = new GetValueRequest("title");
+        assertFalse(codec.hasSerializer(MessageId.GetValueRequest, GetValueRequest.class));
+
+        byte[] bytes = codec.encode(MessageId.GetValueRequest, request);
+        assertArrayEquals(JsonSerDes.serialize(request), bytes);
+        assertEquals("title", codec.decode(MessageId.GetValueRequest, bytes, GetValueRequest.class).getKey());
+    }
+}
@@ -3,6 +3,7 @@ package replicate.mpaxoswithheartbeats;
 import org.junit.Before;
 import org.junit.Test;
 import replicate.common.ClusterTest;
+import replicate.common.LeaderAwareClient;
 import replicate.common.NetworkClient;
 import replicate.common.TestUtils;
 import replicate.paxos.messages.GetValueResponse;
@@ -12,6 +13,7 @@ import replicate.twophaseexecution.messages.ExecuteCommandResponse;
 import replicate.wal.SetValueCommand;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -51,6 +53,27 @@ public class MultiPaxosWithHeartbeatsTest extends ClusterTest<MultiPaxosWithHear
         return nodes.stream().filter(e -> e.isLeader()).findFirst().get();
     }
 
+    @Test
+    public void replicatesWithBinaryPeerMessages() throws Exception {
+        tearDown();
+        super.nodes = TestUtils.startCluster(Arrays.asList("athens", "byzantium", "cyrene"),
+                config -> config.withBinaryPeerMessages(),
+                (name, config, clock, clientConnectionAddress, peerConnectionAddress, peers) -> new MultiPaxosWithHeartbeats(name, clock, config, clientConnectionAddress, peerConnectionAddress, peers));
+        //followers only stay followers while the leader's heartbeats decode.
+        TestUtils.waitUntilTrue(() -> nodes.values().stream().anyMatch(n -> n.isLeader())
+                        && nodes.values().stream().filter(n -> n.isFollower()).count() == nodes.size() - 1,
+                "Waiting for leader election", Duration.ofSeconds(10));
+        var leader = getLeader();
+
+        var networkClient = new NetworkClient();
+        byte[] command = new SetValueCommand("title", "Microservices").serialize();
+        var setValueResponse = networkClient.sendAndReceive(new ExecuteCommandRequest(command), leader.getClientConnectionAddress(), ExecuteCommandResponse.class).getResult();
+        assertEquals(Optional.of("Microservices"), setValueResponse.getResponse());
+        TestUtils.waitUntilTrue(() -> nodes.values().stream().allMatch(n -> "Microservices".equals(n.kv.get("title"))),
+                "Waiting for every replica to apply the command", Duration.ofSeconds(2));
+        assertTrue(leader.isLeader());
+    }
+
     @Test
     public void setsSingleValue() throws Exception {
         var networkClient = new NetworkClient();
@@ -76,6 +99,46 @@ public class MultiPaxosWithHeartbeatsTest extends ClusterTest<MultiPaxosWithHear
     }
 
 
+    @Test
+    public void followersRedirectClientsToTheLeader() throws Exception {
+        var follower = followers.get(0);
+        //the follower redirects without a leader address until the leader's heartbeat reaches it.
+        TestUtils.waitUntilTrue(() -> setValueOn(follower).getLeaderAddress().isPresent(), "Waiting for the follower to redirect to the leader", Duration.ofSeconds(2));
+
+        var response = setValueOn(follower);
+        assertTrue(response.isRedirect());
+        assertEquals(Optional.of(leader.getClientConnectionAddress()), response.getLeaderAddress());
+    }
+
+    private NetworkClient.Response<ExecuteCommandResponse> setValueOn(MultiPaxosWithHeartbeats replica) {
+        byte[] command = new SetValueCommand("title", "Microservices").serialize();
+        try {
+            return new NetworkClient().sendAndReceive(new ExecuteCommandRequest(command), replica.getClientConnectionAddress(), ExecuteCommandResponse.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    public void leaderAwareClientCachesTheLeaderAndFailsOverToTheNewOne() throws Exception {
+        var replicaAddresses = nodes.values().stream().map(n -> n.getClientConnectionAddress()).collect(Collectors.toList());
+        try (var client = new LeaderAwareClient(replicaAddresses)) {
+            byte[] command = new SetValueCommand("title", "Microservices").serialize();
+            var response = client.send(new ExecuteCommandRequest(command), ExecuteCommandResponse.class).get();
+            assertEquals(Optional.of("Microservices"), response.getResult().getResponse());
+            assertEquals(leader.getClientConnectionAddress(), client.getCachedLeader());
+
+            leader.shutdown();
+            TestUtils.waitUntilTrue(() -> followers.stream().anyMatch(f -> f.isLeader()), "Waiting for a new leader", Duration.ofSeconds(5));
+            var newLeader = getLeaderFrom(followers);
+
+            command = new SetValueCommand("author", "Martin").serialize();
+            response = client.send(new ExecuteCommandRequest(command), ExecuteCommandResponse.class).get();
+            assertEquals(Optional.of("Martin"), response.getResult().getResponse());
+            assertEquals(newLeader.getClientConnectionAddress(), client.getCachedLeader());
+        }
+    }
+
     @Test //FIXME:Flaky test
     public void oldLeaderStepsDownWhenHeartbeatForLowerBallotIsRejected() throws Exception {
         MultiPaxosWithHeartbeats follower1 = followers.get(0);
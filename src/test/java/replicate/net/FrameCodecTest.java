@@ -0,0 +1,64 @@
+package replicate.net;
+
+import org.junit.Test;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class FrameCodecTest {
+
+    @Test
+    public void decodesHeaderAndPayloadFromTheSameBuffer() {
+        var from = InetAddressAndPort.create("127.0.0.1", 9000);
+        var message = new RequestOrResponse(3, MessageId.ProposeRequest.getId(), new byte[]{1, 2, 3}, 42, from);
+
+        ByteBuffer frame = FrameCodec.encode(message);
+        assertEquals(frame.remaining() - 4, frame.getInt());
+        var decoded = FrameCodec.decode(frame);
+
+        assertEquals(Integer.valueOf(MessageId.ProposeRequest.getId()), decoded.getRequestId());
+        assertEquals(Integer.valueOf(42), decoded.getCorrelationId());
+        assertEquals(Integer.valueOf(3), decoded.getGeneration());
+        assertEquals(from, decoded.getFromAddress());
+        assertFalse(decoded.isError());
+        assertArrayEquals(new byte[]{1, 2, 3}, decoded.getMessageBodyJson());
+        assertSame(frame.array(), decoded.getPayload().array());
+    }
+
+    @Test
+    public void encodesErrorFlagWithoutFromAddress() {
+        var message = new RequestOrResponse(MessageId.SetValueResponse.getId(), "failed".getBytes(), 7).setError();
+
+        ByteBuffer frame = FrameCodec.encode(message);
+        frame.getInt();
+        var decoded = FrameCodec.decode(frame);
+
+        assertTrue(decoded.isError());
+        assertNull(decoded.getFromAddress());
+        assertEquals("failed", new String(decoded.getMessageBodyJson()));
+    }
+
+    @Test
+    public void sharedPayloadIsWrittenAfterPerMessageHeader() {
+        var from = InetAddressAndPort.create("127.0.0.1", 9000);
+        var released = new AtomicBoolean();
+        var payload = new ReferenceCountedBuffer(ByteBuffer.wrap(new byte[]{4, 5, 6}), () -> released.set(true));
+
+        var first = new RequestOrResponse(MessageId.Commit.getId(), payload.retain(), 1, from);
+        var second = new RequestOrResponse(MessageId.Commit.getId(), payload.retain(), 2, from);
+        payload.release();
+
+        ByteBuffer frame = ByteBuffer.allocate(64);
+        frame.put(FrameCodec.encodeHeader(second)).put(second.getPayload()).flip();
+        assertEquals(FrameCodec.encode(second), frame);
+
+        first.releasePayload();
+        assertFalse(released.get());
+        second.releasePayload();
+        assertTrue(released.get());
+    }
+}
@@ -0,0 +1,66 @@
+package replicate.net;
+
+import org.junit.Test;
+import replicate.common.*;
+import replicate.paxoslog.PaxosLog;
+import replicate.twophaseexecution.messages.ExecuteCommandRequest;
+import replicate.twophaseexecution.messages.ExecuteCommandResponse;
+import replicate.wal.SetValueCommand;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class InJvmTransportTest {
+
+    @Test
+    public void deliversMessagesInOrderWithoutSockets() throws IOException {
+        var transport = new InJvmTransport(new Config("/tmp"));
+        var address = InetAddressAndPort.create("127.0.0.1", 1);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        var listener = transport.listen(address, message -> received.add(message.getCorrelationId()));
+        listener.start();
+
+        for (int i = 0; i < 100; i++) {
+            transport.send(address, new RequestOrResponse(MessageId.Commit.getId(), new byte[]{1}, i), e -> {});
+        }
+        assertEquals(100, received.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), received.get(i));
+        }
+
+        listener.shudown();
+        try {
+            transport.send(address, new RequestOrResponse(MessageId.Commit.getId(), new byte[]{1}, 100), e -> {});
+            fail("Expected the send to fail once nothing is listening");
+        } catch (ConnectException e) {
+            //expected
+        }
+        transport.close();
+    }
+
+    @Test
+    public void replicasPassMessagesByReference() throws IOException {
+        Map<String, PaxosLog> nodes = TestUtils.startCluster(Arrays.asList("athens", "byzantium", "cyrene"),
+                config -> config.withInJvmTransport(true),
+                (name, config, clock, clientConnectionAddress, peerConnectionAddress, peers) -> new PaxosLog(name, clock, config, clientConnectionAddress, peerConnectionAddress, peers));
+        try {
+            PaxosLog athens = nodes.get("athens");
+            //network faults are injected as with the socket transports.
+            athens.dropMessagesTo(nodes.get("cyrene"));
+
+            var networkClient = new NetworkClient();
+            byte[] command = new SetValueCommand("title", "Microservices").serialize();
+            var response = networkClient.sendAndReceive(new ExecuteCommandRequest(command), athens.getClientConnectionAddress(), ExecuteCommandResponse.class).getResult();
+            assertEquals(Optional.of("Microservices"), response.getResponse());
+        } finally {
+            nodes.values().forEach(Replica::shutdown);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package replicate.net;
+
+import org.junit.Test;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+import replicate.common.TestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class NIOSocketListenerTest {
+
+    @Test
+    public void connectionsShareReactorAndDispatchThreads() throws IOException {
+        var address = TestUtils.randomLocalAddress();
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        var listener = new NIOSocketListener(message -> received.add(message.getCorrelationId()), address, 2, 2, WriteWatermarks.DEFAULT);
+        listener.start();
+
+        List<SocketClient> clients = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            var client = new SocketClient(address);
+            client.sendOneway(new RequestOrResponse(MessageId.Commit.getId(), new byte[]{1}, i));
+            clients.add(client);
+        }
+        TestUtils.waitUntilTrue(() -> received.size() == 20, "Waiting for all messages", Duration.ofSeconds(2));
+
+        assertEquals(20, listener.cnxns.size());
+        assertTrue(listenerThreads(address) <= 1 + 2 + 2);
+
+        clients.forEach(SocketClient::close);
+        listener.shudown();
+    }
+
+    @Test
+    public void servesSameHostClientsAndPeersOverUnixDomainSocket() throws IOException {
+        var address = TestUtils.randomLocalAddress();
+        var socketDir = TestUtils.tempDir("uds").toPath();
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        RequestConsumer echo = request -> {
+            received.add(request.getCorrelationId());
+            request.getClientConnection().write(new RequestOrResponse(MessageId.SetValueResponse.getId(), "ok".getBytes(), request.getCorrelationId()));
+        };
+        var listener = new NIOSocketListener(echo, address, 1, 2, WriteWatermarks.DEFAULT, socketDir);
+        listener.start();
+        assertTrue(UnixDomainSockets.localAddressOf(socketDir, address).isPresent());
+
+        try (SocketClient<Object> client = SocketClient.connect(address, socketDir)) {
+            assertNull("connected over the unix domain socket", client.clientSocket);
+            RequestOrResponse response = client.blockingSend(new RequestOrResponse(MessageId.SetValueRequest.getId(), new byte[]{1}, 1));
+            assertEquals("ok", new String(response.getMessageBodyJson()));
+        }
+
+        var peerChannel = new OutboundChannel(address, 100, 100, 64 * 1024, 0, socketDir);
+        peerChannel.send(new RequestOrResponse(MessageId.Commit.getId(), new byte[]{1}, 2), e -> {});
+        TestUtils.waitUntilTrue(() -> received.contains(2), "Waiting for the peer message", Duration.ofSeconds(2));
+        peerChannel.close();
+
+        listener.shudown();
+        assertFalse(UnixDomainSockets.localAddressOf(socketDir, address).isPresent());
+    }
+
+    @Test
+    public void stopsReadingFromAClientWhichDoesNotReadItsResponses() throws IOException {
+        var address = TestUtils.randomLocalAddress();
+        RequestConsumer respondWithLargePayload = request -> request.getClientConnection()
+                .write(new RequestOrResponse(MessageId.SetValueResponse.getId(), new byte[64 * 1024], request.getCorrelationId()));
+        var listener = new NIOSocketListener(respondWithLargePayload, address, 1, 2, new WriteWatermarks(64 * 1024, 256 * 1024));
+        listener.start();
+
+        int noOfRequests = 400;
+        var client = new SocketClient(address);
+        for (int i = 0; i < noOfRequests; i++) {
+            client.sendOneway(new RequestOrResponse(MessageId.SetValueRequest.getId(), new byte[]{1}, i));
+        }
+        TestUtils.waitUntilTrue(() -> listener.readPausedConnections() == 1, "Waiting for reads to pause", Duration.ofSeconds(5));
+        assertTrue(listener.readPauses() >= 1);
+
+        for (int i = 0; i < noOfRequests; i++) {
+            client.read();
+        }
+        TestUtils.waitUntilTrue(() -> listener.readPausedConnections() == 0 && listener.pendingWriteBytes() == 0,
+                "Waiting for reads to resume", Duration.ofSeconds(2));
+
+        client.close();
+        listener.shudown();
+    }
+
+    @Test
+    public void dropsResponsesWrittenAfterTheConnectionCloses() throws IOException {
+        var address = TestUtils.randomLocalAddress();
+        var listener = new NIOSocketListener(request -> {}, address, 1, 1, WriteWatermarks.DEFAULT);
+        var pool = new BufferPool();
+        int sizeClass = BufferPool.sizeClass(4096);
+        pool.acquire(4096).release(); //allocate the slab, so a leaked buffer shows up as one less available.
+        int available = pool.available(sizeClass);
+
+        var selector = Selector.open();
+        var channel = SocketChannel.open(new InetSocketAddress(address.getAddress(), address.getPort()));
+        channel.configureBlocking(false);
+        var key = channel.register(selector, SelectionKey.OP_READ);
+        var connection = new NIOConnection(channel, key, listener, request -> {}, Runnable::run, pool, WriteWatermarks.DEFAULT);
+        connection.close();
+        connection.write(new RequestOrResponse(MessageId.SetValueResponse.getId(), new byte[]{1}, 1));
+
+        assertEquals(available, pool.available(sizeClass));
+
+        selector.close();
+        listener.shudown();
+    }
+
+    private static long listenerThreads(InetAddressAndPort address) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().endsWith("-" + address))
+                .count();
+    }
+}
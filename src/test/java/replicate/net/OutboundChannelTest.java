@@ -0,0 +1,183 @@
+package replicate.net;
+
+import org.junit.Test;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+import replicate.common.TestUtils;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OutboundChannelTest {
+
+    @Test
+    public void writesQueuedMessagesOverOneConnection() throws IOException {
+        var address = TestUtils.randomLocalAddress();
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        var listener = new NIOSocketListener(message -> received.add(message.getCorrelationId()), address);
+        listener.start();
+
+        var channel = new OutboundChannel(address, 100, 100);
+        for (int i = 0; i < 10; i++) {
+            channel.send(message(i), e -> {});
+        }
+        TestUtils.waitUntilTrue(() -> received.size() == 10, "Waiting for all messages", Duration.ofSeconds(2));
+        assertEquals(1, listener.cnxns.size());
+
+        channel.close();
+        listener.shudown();
+    }
+
+    @Test
+    public void reportsWriteFailuresToTheCallerAndReconnects() throws IOException {
+        var address = TestUtils.randomLocalAddress();
+        List<IOException> failures = new CopyOnWriteArrayList<>();
+        var channel = new OutboundChannel(address, 100, 10);
+
+        channel.send(message(1), failures::add); //nobody listening yet.
+        TestUtils.waitUntilTrue(() -> failures.size() == 1, "Waiting for failure", Duration.ofSeconds(2));
+
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        var listener = new NIOSocketListener(message -> received.add(message.getCorrelationId()), address);
+        listener.start();
+        TestUtils.waitUntilTrue(() -> {
+            try {
+                channel.send(message(2), e -> {});
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return received.contains(2);
+        }, "Waiting for reconnect", Duration.ofSeconds(2));
+        assertTrue(failures.get(0).getMessage() != null);
+
+        channel.close();
+        listener.shudown();
+    }
+
+    @Test
+    public void keepsWritingWhenAFailureCallbackThrows() throws IOException {
+        var address = TestUtils.randomLocalAddress();
+        List<IOException> failures = new CopyOnWriteArrayList<>();
+        var channel = new OutboundChannel(address, 100, 10);
+
+        channel.send(message(1), e -> {
+            failures.add(e);
+            throw new RejectedExecutionException("update queue is shut down");
+        }); //nobody listening yet.
+        TestUtils.waitUntilTrue(() -> failures.size() == 1, "Waiting for failure", Duration.ofSeconds(2));
+
+        channel.send(message(2), failures::add);
+        TestUtils.waitUntilTrue(() -> failures.size() == 2, "Waiting for the writer to fail the next message", Duration.ofSeconds(2));
+
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        var listener = new NIOSocketListener(message -> received.add(message.getCorrelationId()), address);
+        listener.start();
+        TestUtils.waitUntilTrue(() -> {
+            try {
+                channel.send(message(3), e -> {});
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return received.contains(3);
+        }, "Waiting for reconnect", Duration.ofSeconds(2));
+
+        channel.close();
+        listener.shudown();
+    }
+
+    @Test
+    public void coalescesMessagesQueuedWithinLingerIntoOneBatchFrame() throws IOException {
+        var address = TestUtils.randomLocalAddress();
+        try (var serverSocket = new ServerSocket()) {
+            serverSocket.bind(new InetSocketAddress(address.getAddress(), address.getPort()));
+            var channel = new OutboundChannel(address, 100, 100, 64 * 1024, 500);
+            for (int i = 0; i < 10; i++) {
+                channel.send(message(i), e -> {});
+            }
+
+            try (var socket = serverSocket.accept()) {
+                var in = new DataInputStream(socket.getInputStream());
+                var frame = new byte[in.readInt()];
+                in.readFully(frame);
+                var batch = FrameCodec.decode(ByteBuffer.wrap(frame));
+
+                assertTrue(FrameCodec.isBatch(batch));
+                var correlationIds = FrameCodec.decodeBatch(batch.getPayload()).stream()
+                        .map(RequestOrResponse::getCorrelationId).collect(Collectors.toList());
+                assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), correlationIds);
+            }
+            channel.close();
+        }
+    }
+
+    @Test
+    public void listenerDispatchesBatchedMessagesInOrder() throws IOException {
+        var address = TestUtils.randomLocalAddress();
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        var listener = new NIOSocketListener(message -> received.add(message.getCorrelationId()), address);
+        listener.start();
+
+        var channel = new OutboundChannel(address, 100, 100, 64 * 1024, 500);
+        for (int i = 0; i < 50; i++) {
+            channel.send(message(i), e -> {});
+        }
+        TestUtils.waitUntilTrue(() -> received.size() == 50, "Waiting for all messages", Duration.ofSeconds(2));
+        for (int i = 0; i < 50; i++) {
+            assertEquals(Integer.valueOf(i), received.get(i));
+        }
+
+        channel.close();
+        listener.shudown();
+    }
+
+    @Test
+    public void failsConnectsWhichTakeLongerThanTheTimeout() throws IOException {
+        var address = TestUtils.randomLocalAddress();
+        //a listener which never accepts. Once its backlog is full, further connects hang.
+        List<Socket> backlog = new ArrayList<>();
+        try (var serverSocket = new ServerSocket()) {
+            serverSocket.bind(new InetSocketAddress(address.getAddress(), address.getPort()), 1);
+            for (int i = 0; i < 4; i++) {
+                var socket = new Socket();
+                try {
+                    socket.connect(new InetSocketAddress(address.getAddress(), address.getPort()), 100);
+                } catch (SocketTimeoutException e) {
+                    break; //the backlog is full.
+                } finally {
+                    backlog.add(socket);
+                }
+            }
+
+            List<IOException> failures = new CopyOnWriteArrayList<>();
+            var channel = new OutboundChannel(address, 100, 100, 200, 0, 0, null);
+            long start = System.nanoTime();
+            channel.send(message(1), failures::add);
+            TestUtils.waitUntilTrue(() -> failures.size() == 1, "Waiting for the connect to time out", Duration.ofSeconds(2));
+            assertTrue(failures.get(0) instanceof SocketTimeoutException);
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+            channel.close();
+        } finally {
+            for (Socket socket : backlog) {
+                socket.close();
+            }
+        }
+    }
+
+    private static RequestOrResponse message(int correlationId) {
+        return new RequestOrResponse(MessageId.Commit.getId(), new byte[]{1}, correlationId);
+    }
+}
@@ -0,0 +1,50 @@
+package replicate.net;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PeerLatenciesTest {
+    private final InetAddressAndPort athens = InetAddressAndPort.create("10.0.0.1", 9000);
+    private final InetAddressAndPort byzantium = InetAddressAndPort.create("10.0.0.2", 9000);
+    private final InetAddressAndPort cyrene = InetAddressAndPort.create("10.0.0.3", 9000);
+
+    @Test
+    public void smoothsRoundTripTimesTowardsNewSamples() {
+        PeerLatencies latencies = new PeerLatencies();
+        assertEquals(PeerLatencies.UNKNOWN, latencies.smoothedRttNanos(athens));
+
+        latencies.record(athens, 8000);
+        assertEquals(8000, latencies.smoothedRttNanos(athens));
+
+        latencies.record(athens, 16000);
+        assertEquals(9000, latencies.smoothedRttNanos(athens));
+    }
+
+    @Test
+    public void ranksUnmeasuredPeersFirstThenFastest() {
+        PeerLatencies latencies = new PeerLatencies();
+        latencies.record(athens, 5000);
+        latencies.record(byzantium, 1000);
+
+        assertEquals(List.of(cyrene, byzantium, athens), latencies.fastestFirst(List.of(athens, byzantium, cyrene)));
+    }
+
+    @Test
+    public void percentilesComeFromTheLatestSamples() {
+        PeerLatencies latencies = new PeerLatencies();
+        for (int i = 1; i <= 100; i++) {
+            latencies.record(athens, i * 1000);
+        }
+        assertEquals(95_000, latencies.percentileNanos(athens, 0.95));
+        assertEquals(PeerLatencies.UNKNOWN, latencies.percentileNanos(byzantium, 0.95));
+
+        //only the last window of samples counts, so an old slow spell is forgotten.
+        for (int i = 0; i < PeerLatencies.WINDOW; i++) {
+            latencies.record(athens, 2000);
+        }
+        assertEquals(2000, latencies.percentileNanos(athens, 0.95));
+    }
+}
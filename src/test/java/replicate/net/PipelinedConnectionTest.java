@@ -0,0 +1,86 @@
+package replicate.net;
+
+import org.junit.Test;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+import replicate.common.TestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class PipelinedConnectionTest {
+
+    @Test
+    public void matchesResponsesToRequestsWhenAnsweredOutOfOrder() throws Exception {
+        var address = TestUtils.randomLocalAddress();
+        //the payload is only valid until accept returns, so the body is copied out.
+        record Received(ClientConnection connection, int correlationId, byte[] body) {}
+        List<Received> received = new CopyOnWriteArrayList<>();
+        var listener = new NIOSocketListener(message -> received.add(new Received(message.getClientConnection(),
+                message.getCorrelationId(), message.messagePayload().getMessageBodyJson())), address);
+        listener.start();
+
+        var connection = new PipelinedConnection(address, null, Duration.ofSeconds(5));
+        List<CompletableFuture<RequestOrResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            responses.add(connection.send(new RequestOrResponse(MessageId.SetValueRequest.getId(), String.valueOf(i).getBytes())));
+        }
+        TestUtils.waitUntilTrue(() -> received.size() == 100, "Waiting for all requests", Duration.ofSeconds(2));
+        assertEquals(100, connection.pendingRequests());
+
+        //echo each request's body back, last request first.
+        for (int i = received.size() - 1; i >= 0; i--) {
+            var request = received.get(i);
+            request.connection().write(new RequestOrResponse(MessageId.SetValueResponse.getId(),
+                    request.body(), request.correlationId()));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(String.valueOf(i), new String(responses.get(i).get().getMessageBodyJson()));
+        }
+        assertEquals(0, connection.pendingRequests());
+
+        connection.close();
+        listener.shudown();
+    }
+
+    @Test
+    public void failsPendingRequestsWhenTheConnectionCloses() throws Exception {
+        var address = TestUtils.randomLocalAddress();
+        var listener = new NIOSocketListener(request -> {}, address);
+        listener.start();
+
+        var connection = new PipelinedConnection(address, null, Duration.ofSeconds(5));
+        var response = connection.send(new RequestOrResponse(MessageId.SetValueRequest.getId(), new byte[]{1}));
+        listener.shudown();
+
+        var e = assertThrows(ExecutionException.class, response::get);
+        assertTrue(e.getCause() instanceof IOException);
+        assertTrue(connection.isClosed());
+        assertTrue(connection.send(new RequestOrResponse(MessageId.SetValueRequest.getId(), new byte[]{1})).isCompletedExceptionally());
+    }
+
+    @Test
+    public void timesOutRequestsWithoutResponse() throws Exception {
+        var address = TestUtils.randomLocalAddress();
+        var listener = new NIOSocketListener(request -> {}, address);
+        listener.start();
+
+        var connection = new PipelinedConnection(address, null, Duration.ofMillis(100));
+        var response = connection.send(new RequestOrResponse(MessageId.SetValueRequest.getId(), new byte[]{1}));
+
+        var e = assertThrows(ExecutionException.class, response::get);
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertEquals(0, connection.pendingRequests());
+
+        connection.close();
+        listener.shudown();
+    }
+}
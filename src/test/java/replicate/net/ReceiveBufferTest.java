@@ -0,0 +1,107 @@
+package replicate.net;
+
+import org.junit.Test;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReceiveBufferTest {
+
+    @Test
+    public void decodesSeveralFramesFromOneRead() throws IOException {
+        var pool = new BufferPool();
+        var receive = new ReceiveBuffer(pool);
+        receive.readFrom(channelOf(message(1, 10), message(2, 20), message(3, 30)));
+
+        List<RequestOrResponse> frames = drain(receive);
+
+        assertEquals(3, frames.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Integer.valueOf(i + 1), frames.get(i).getCorrelationId());
+            assertEquals((i + 1) * 10, frames.get(i).getPayload().remaining());
+        }
+        frames.forEach(RequestOrResponse::releasePayload);
+    }
+
+    @Test
+    public void bufferGoesBackToPoolOnceDecodedFramesAreReleased() throws IOException {
+        var pool = new BufferPool();
+        int sizeClass = BufferPool.sizeClass(ReceiveBuffer.DEFAULT_SIZE);
+        var receive = new ReceiveBuffer(pool);
+
+        receive.readFrom(channelOf(message(1, 10)));
+        int availableWhileReading = pool.available(sizeClass);
+        List<RequestOrResponse> frames = drain(receive);
+        assertFalse(receive.holdsBuffer());
+        assertEquals(availableWhileReading, pool.available(sizeClass)); //still held by the decoded frame.
+
+        frames.get(0).releasePayload();
+        assertEquals(availableWhileReading + 1, pool.available(sizeClass));
+    }
+
+    @Test
+    public void holdsBufferOnlyWhileAFrameIsPartlyRead() throws IOException {
+        var receive = new ReceiveBuffer(new BufferPool());
+        assertFalse(receive.holdsBuffer());
+
+        ByteBuffer frame = FrameCodec.encode(message(1, 10));
+        receive.readFrom(Channels.newChannel(new ByteArrayInputStream(frame.array(), 0, 8)));
+        assertTrue(drain(receive).isEmpty());
+        assertTrue(receive.holdsBuffer());
+
+        receive.readFrom(Channels.newChannel(new ByteArrayInputStream(frame.array(), 8, frame.remaining() - 8)));
+        List<RequestOrResponse> frames = drain(receive);
+        assertEquals(1, frames.size());
+        assertEquals(10, frames.get(0).getPayload().remaining());
+        assertFalse(receive.holdsBuffer());
+        frames.get(0).releasePayload();
+    }
+
+    @Test
+    public void movesToBiggerBufferForFramesLargerThanTheDefault() throws IOException {
+        var receive = new ReceiveBuffer(new BufferPool());
+        var channel = channelOf(message(1, ReceiveBuffer.DEFAULT_SIZE * 2));
+
+        List<RequestOrResponse> frames = new ArrayList<>();
+        while (frames.isEmpty()) {
+            receive.readFrom(channel);
+            frames.addAll(drain(receive));
+        }
+
+        assertEquals(ReceiveBuffer.DEFAULT_SIZE * 2, frames.get(0).getPayload().remaining());
+        frames.get(0).releasePayload();
+    }
+
+    private static List<RequestOrResponse> drain(ReceiveBuffer receive) {
+        List<RequestOrResponse> frames = new ArrayList<>();
+        RequestOrResponse frame;
+        while ((frame = receive.nextFrame()) != null) {
+            frames.add(frame);
+        }
+        receive.compact();
+        return frames;
+    }
+
+    private static RequestOrResponse message(int correlationId, int payloadSize) {
+        return new RequestOrResponse(MessageId.Commit.getId(), new byte[payloadSize], correlationId);
+    }
+
+    private static ReadableByteChannel channelOf(RequestOrResponse... messages) {
+        var bytes = new ByteArrayOutputStream();
+        for (RequestOrResponse message : messages) {
+            ByteBuffer frame = FrameCodec.encode(message);
+            bytes.write(frame.array(), 0, frame.remaining());
+        }
+        return Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}
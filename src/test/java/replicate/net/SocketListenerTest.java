@@ -0,0 +1,81 @@
+package replicate.net;
+
+import org.junit.Assume;
+import org.junit.Test;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+import replicate.common.TestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SocketListenerTest {
+
+    @Test
+    public void servesEachConnectionOnItsOwnThread() throws Exception {
+        Set<Thread> handlerThreads = echoWithVirtualThreads(200);
+
+        assertEquals(200, handlerThreads.size());
+    }
+
+    @Test
+    public void servesConnectionsOnVirtualThreadsWhenAvailable() throws Exception {
+        Assume.assumeTrue("Virtual threads need Java 21", VirtualThreads.isAvailable());
+
+        Set<Thread> handlerThreads = echoWithVirtualThreads(10);
+
+        for (Thread handlerThread : handlerThreads) {
+            assertTrue(handlerThread.getName() + " is not virtual", isVirtual(handlerThread));
+        }
+    }
+
+    //Sends one request per client and returns the threads the listener handled them on.
+    private Set<Thread> echoWithVirtualThreads(int noOfClients) throws Exception {
+        var address = TestUtils.randomLocalAddress();
+        Set<Thread> handlerThreads = ConcurrentHashMap.newKeySet();
+        RequestConsumer echo = request -> {
+            handlerThreads.add(Thread.currentThread());
+            request.getClientConnection()
+                    .write(new RequestOrResponse(MessageId.SetValueResponse.getId(), request.messagePayload().getMessageBodyJson(), request.getCorrelationId()));
+        };
+        var listener = SocketListener.withVirtualThreads(echo, address);
+        listener.start();
+
+        ExecutorService clients = VirtualThreads.newThreadPerTaskExecutor("test-client-");
+        List<CompletableFuture<RequestOrResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < noOfClients; i++) {
+            int correlationId = i;
+            responses.add(CompletableFuture.supplyAsync(() -> blockingSend(address, correlationId), clients));
+        }
+        for (int i = 0; i < noOfClients; i++) {
+            RequestOrResponse response = responses.get(i).get();
+            assertEquals(Integer.valueOf(i), response.getCorrelationId());
+            assertEquals((byte) i, response.getMessageBodyJson()[0]);
+        }
+
+        clients.shutdown();
+        listener.shudown();
+        return handlerThreads;
+    }
+
+    //Thread.isVirtual is Java 21 only, and the tests compile for Java 17.
+    private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+        return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    private static RequestOrResponse blockingSend(InetAddressAndPort address, int correlationId) {
+        try (var client = new SocketClient<>(address)) {
+            return client.blockingSend(new RequestOrResponse(MessageId.SetValueRequest.getId(), new byte[]{(byte) correlationId}, correlationId));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
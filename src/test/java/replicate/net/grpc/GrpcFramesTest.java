@@ -0,0 +1,132 @@
+package replicate.net.grpc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import org.junit.Test;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+import replicate.net.InetAddressAndPort;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the hand-written marshallers against the messages declared in replication.proto,
+ * so the two can not drift apart. No code is generated from the schema, so its message
+ * declarations are read from the file and turned into descriptors for DynamicMessage.
+ */
+public class GrpcFramesTest {
+    private static final Path SCHEMA = Path.of("src/main/proto/replication.proto");
+    private static final Pattern MESSAGE = Pattern.compile("message (\\w+) \\{([^}]*)}");
+    private static final Pattern FIELD = Pattern.compile("(repeated )?(\\w+) (\\w+) = (\\d+);");
+
+    private final Descriptors.FileDescriptor schema = loadSchema();
+    private final Descriptors.Descriptor frame = schema.findMessageTypeByName("Frame");
+    private final Descriptors.Descriptor frameBatch = schema.findMessageTypeByName("FrameBatch");
+
+    @Test
+    public void encodedFramesParseWithTheSchema() throws IOException {
+        var from = InetAddressAndPort.create("10.0.0.1", 8080);
+        var message = new RequestOrResponse(7, MessageId.ProposeRequest.getId(), "payload".getBytes(), 42, from).setError();
+
+        DynamicMessage parsed = DynamicMessage.parseFrom(frame, GrpcFrames.FRAME_MARSHALLER.stream(message));
+
+        assertTrue(parsed.getUnknownFields().asMap().isEmpty());
+        assertEquals(MessageId.ProposeRequest.getId(), parsed.getField(field(frame, "request_id")));
+        assertEquals(42, parsed.getField(field(frame, "correlation_id")));
+        assertEquals(7, parsed.getField(field(frame, "generation")));
+        assertEquals(true, parsed.getField(field(frame, "error")));
+        assertEquals(ByteString.copyFromUtf8("payload"), parsed.getField(field(frame, "payload")));
+        var peerAddress = (DynamicMessage) parsed.getField(field(frame, "from"));
+        assertEquals(ByteString.copyFrom(from.getAddress().getAddress()), peerAddress.getField(field(peerAddress.getDescriptorForType(), "address")));
+        assertEquals(8080, peerAddress.getField(field(peerAddress.getDescriptorForType(), "port")));
+    }
+
+    @Test
+    public void encodedBatchesParseWithTheSchema() throws IOException {
+        var first = new RequestOrResponse(MessageId.Commit.getId(), new byte[]{1}, 1);
+        var second = new RequestOrResponse(MessageId.Commit.getId(), new byte[]{2, 3}, 2);
+
+        DynamicMessage parsed = DynamicMessage.parseFrom(frameBatch, GrpcFrames.BATCH_MARSHALLER.stream(List.of(first, second)));
+
+        assertTrue(parsed.getUnknownFields().asMap().isEmpty());
+        var frames = field(frameBatch, "frames");
+        assertEquals(2, parsed.getRepeatedFieldCount(frames));
+        var secondFrame = (DynamicMessage) parsed.getRepeatedField(frames, 1);
+        assertEquals(2, secondFrame.getField(field(frame, "correlation_id")));
+        assertEquals(ByteString.copyFrom(new byte[]{2, 3}), secondFrame.getField(field(frame, "payload")));
+    }
+
+    @Test
+    public void batchesBuiltFromTheSchemaDecode() {
+        var from = InetAddressAndPort.create("10.0.0.2", 9090);
+        var peerAddress = DynamicMessage.newBuilder(field(frame, "from").getMessageType())
+                .setField(field(field(frame, "from").getMessageType(), "address"), ByteString.copyFrom(from.getAddress().getAddress()))
+                .setField(field(field(frame, "from").getMessageType(), "port"), 9090)
+                .build();
+        var encodedFrame = DynamicMessage.newBuilder(frame)
+                .setField(field(frame, "request_id"), MessageId.ProposeRequest.getId())
+                .setField(field(frame, "correlation_id"), 5)
+                .setField(field(frame, "generation"), 3)
+                .setField(field(frame, "error"), true)
+                .setField(field(frame, "from"), peerAddress)
+                .setField(field(frame, "payload"), ByteString.copyFromUtf8("payload"))
+                .build();
+        var batch = DynamicMessage.newBuilder(frameBatch)
+                .addRepeatedField(field(frameBatch, "frames"), encodedFrame)
+                .build();
+
+        List<RequestOrResponse> decoded = GrpcFrames.BATCH_MARSHALLER.parse(batch.toByteString().newInput());
+
+        var expected = new RequestOrResponse(3, MessageId.ProposeRequest.getId(), "payload".getBytes(), 5, from).setError();
+        assertEquals(List.of(expected), decoded);
+        assertTrue(decoded.get(0).isError());
+    }
+
+    private static Descriptors.FieldDescriptor field(Descriptors.Descriptor message, String name) {
+        var field = message.findFieldByName(name);
+        assertTrue(message.getName() + " has no field " + name, field != null);
+        return field;
+    }
+
+    //Only the declarations replication.proto uses: scalar, message and repeated fields.
+    private static Descriptors.FileDescriptor loadSchema() {
+        try {
+            String proto = Files.readString(SCHEMA).replaceAll("//.*", "");
+            var file = FileDescriptorProto.newBuilder().setName("replication.proto").setPackage("replicate").setSyntax("proto3");
+            Matcher message = MESSAGE.matcher(proto);
+            while (message.find()) {
+                var descriptor = DescriptorProto.newBuilder().setName(message.group(1));
+                Matcher field = FIELD.matcher(message.group(2));
+                while (field.find()) {
+                    var fieldDescriptor = FieldDescriptorProto.newBuilder()
+                            .setName(field.group(3))
+                            .setNumber(Integer.parseInt(field.group(4)))
+                            .setLabel(field.group(1) == null ? FieldDescriptorProto.Label.LABEL_OPTIONAL : FieldDescriptorProto.Label.LABEL_REPEATED);
+                    switch (field.group(2)) {
+                        case "int32" -> fieldDescriptor.setType(FieldDescriptorProto.Type.TYPE_INT32);
+                        case "bool" -> fieldDescriptor.setType(FieldDescriptorProto.Type.TYPE_BOOL);
+                        case "bytes" -> fieldDescriptor.setType(FieldDescriptorProto.Type.TYPE_BYTES);
+                        default -> fieldDescriptor.setType(FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName(".replicate." + field.group(2));
+                    }
+                    descriptor.addField(fieldDescriptor);
+                }
+                file.addMessageType(descriptor);
+            }
+            return Descriptors.FileDescriptor.buildFrom(file.build(), new Descriptors.FileDescriptor[0]);
+        } catch (IOException | Descriptors.DescriptorValidationException e) {
+            throw new IllegalStateException("Unable to load " + SCHEMA, e);
+        }
+    }
+}
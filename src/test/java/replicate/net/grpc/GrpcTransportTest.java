@@ -0,0 +1,95 @@
+package replicate.net.grpc;
+
+import org.junit.Test;
+import replicate.common.Config;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+import replicate.common.TestUtils;
+import replicate.net.InetAddressAndPort;
+import replicate.net.SocketClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GrpcTransportTest {
+
+    @Test
+    public void deliversMessagesToPeerInOrderOnOneStream() throws IOException {
+        var transport = new GrpcTransport(new Config("/tmp"));
+        var address = TestUtils.randomLocalAddress();
+        var from = InetAddressAndPort.create("127.0.0.1", 9000);
+        List<RequestOrResponse> received = new CopyOnWriteArrayList<>();
+        var listener = transport.listen(address, message -> received.add(message.messagePayload()));
+        listener.start();
+
+        for (int i = 0; i < 1000; i++) {
+            transport.send(address, new RequestOrResponse(MessageId.Commit.getId(), new byte[]{(byte) i}, i, from), e -> {});
+        }
+        TestUtils.waitUntilTrue(() -> received.size() == 1000, "Waiting for all messages", Duration.ofSeconds(5));
+        for (int i = 0; i < 1000; i++) {
+            RequestOrResponse message = received.get(i);
+            assertEquals(Integer.valueOf(i), message.getCorrelationId());
+            assertEquals((byte) i, message.getMessageBodyJson()[0]);
+            assertEquals(from, message.getFromAddress());
+        }
+
+        listener.shudown();
+        transport.close();
+    }
+
+    @Test
+    public void disconnectFailsMessagesStillQueued() throws IOException {
+        var transport = new GrpcTransport(new Config("/tmp"));
+        var address = TestUtils.randomLocalAddress();
+        //accepts connections but never speaks HTTP/2, so the stream never gets ready.
+        try (var serverSocket = new ServerSocket()) {
+            serverSocket.bind(new InetSocketAddress(address.getAddress(), address.getPort()));
+            List<IOException> failures = new CopyOnWriteArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                transport.send(address, new RequestOrResponse(MessageId.Commit.getId(), new byte[]{1}, i), failures::add);
+            }
+
+            transport.disconnect(address);
+
+            assertEquals(3, failures.size());
+            transport.close();
+        }
+    }
+
+    @Test
+    public void marshallersRoundTripAllFields() {
+        var message = new RequestOrResponse(7, MessageId.ProposeRequest.getId(), "payload".getBytes(), -1,
+                InetAddressAndPort.create("10.0.0.1", 8080)).setError();
+        RequestOrResponse decoded = GrpcFrames.FRAME_MARSHALLER.parse(GrpcFrames.FRAME_MARSHALLER.stream(message));
+        assertEquals(message, decoded);
+        assertTrue(decoded.isError());
+
+        var second = new RequestOrResponse(MessageId.Commit.getId(), new byte[]{1, 2}, 3);
+        List<RequestOrResponse> batch = GrpcFrames.BATCH_MARSHALLER.parse(GrpcFrames.BATCH_MARSHALLER.stream(List.of(message, second)));
+        assertEquals(List.of(message, second), batch);
+    }
+
+    @Test
+    public void clientsUseTheSocketProtocol() throws IOException {
+        var transport = new GrpcTransport(new Config("/tmp"));
+        var address = TestUtils.randomLocalAddress();
+        var listener = transport.listenForClients(address, request -> request.getClientConnection()
+                .write(new RequestOrResponse(MessageId.SetValueResponse.getId(), "ok".getBytes(), request.getCorrelationId())));
+        listener.start();
+
+        try (var client = new SocketClient<>(address)) {
+            RequestOrResponse response = client.blockingSend(new RequestOrResponse(MessageId.SetValueRequest.getId(), new byte[]{1}, 42));
+            assertEquals("ok", new String(response.getMessageBodyJson()));
+        }
+
+        listener.shudown();
+        transport.close();
+    }
+}
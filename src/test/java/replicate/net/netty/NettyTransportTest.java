@@ -0,0 +1,90 @@
+package replicate.net.netty;
+
+import org.junit.Test;
+import replicate.common.Config;
+import replicate.common.MessageId;
+import replicate.common.RequestOrResponse;
+import replicate.common.TestUtils;
+import replicate.net.NIOSocketListener;
+import replicate.net.OutboundChannel;
+import replicate.net.SocketClient;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public class NettyTransportTest {
+
+    @Test
+    public void deliversMessagesToPeerInOrder() throws IOException {
+        var transport = new NettyTransport(new Config("/tmp"));
+        var address = TestUtils.randomLocalAddress();
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        var listener = transport.listen(address, message -> received.add(message.getCorrelationId()));
+        listener.start();
+
+        for (int i = 0; i < 100; i++) {
+            transport.send(address, message(i), e -> {});
+        }
+        TestUtils.waitUntilTrue(() -> received.size() == 100, "Waiting for all messages", Duration.ofSeconds(2));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), received.get(i));
+        }
+
+        listener.shudown();
+        transport.close();
+    }
+
+    @Test
+    public void interoperatesWithSocketTransport() throws IOException {
+        var transport = new NettyTransport(new Config("/tmp"));
+        var nettyAddress = TestUtils.randomLocalAddress();
+        List<Integer> receivedByNetty = new CopyOnWriteArrayList<>();
+        var nettyListener = transport.listen(nettyAddress, message -> receivedByNetty.add(message.getCorrelationId()));
+        nettyListener.start();
+
+        var nioAddress = TestUtils.randomLocalAddress();
+        List<Integer> receivedByNio = new CopyOnWriteArrayList<>();
+        var nioListener = new NIOSocketListener(message -> receivedByNio.add(message.getCorrelationId()), nioAddress);
+        nioListener.start();
+
+        //batch frames from an OutboundChannel are unpacked by the Netty listener.
+        var outboundChannel = new OutboundChannel(nettyAddress, 100, 100, 64 * 1024, 50);
+        for (int i = 0; i < 10; i++) {
+            outboundChannel.send(message(i), e -> {});
+            transport.send(nioAddress, message(i), e -> {});
+        }
+        TestUtils.waitUntilTrue(() -> receivedByNetty.size() == 10 && receivedByNio.size() == 10,
+                "Waiting for all messages", Duration.ofSeconds(2));
+
+        outboundChannel.close();
+        nettyListener.shudown();
+        nioListener.shudown();
+        transport.close();
+    }
+
+    @Test
+    public void clientsGetResponsesOnTheirConnection() throws IOException {
+        var transport = new NettyTransport(new Config("/tmp"));
+        var address = TestUtils.randomLocalAddress();
+        var listener = transport.listen(address, request -> request.getClientConnection()
+                .write(new RequestOrResponse(MessageId.SetValueResponse.getId(), "ok".getBytes(), request.getCorrelationId())));
+        listener.start();
+
+        try (var client = new SocketClient<>(address)) {
+            RequestOrResponse response = client.blockingSend(message(42));
+            assertEquals(Integer.valueOf(42), response.getCorrelationId());
+            assertEquals("ok", new String(response.getMessageBodyJson()));
+        }
+
+        listener.shudown();
+        transport.close();
+    }
+
+    private static RequestOrResponse message(int correlationId) {
+        return new RequestOrResponse(MessageId.Commit.getId(), new byte[]{1}, correlationId);
+    }
+}
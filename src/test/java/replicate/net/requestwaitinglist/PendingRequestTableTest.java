@@ -0,0 +1,84 @@
+package replicate.net.requestwaitinglist;
+
+import org.junit.Test;
+import replicate.simulation.Simulation;
+import replicate.vsr.CompletionCallback;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class PendingRequestTableTest {
+
+    @Test
+    public void matchesResponsesToRequestsLikeAMap() throws Exception {
+        var table = new PendingRequestTable<String>(new Simulation(1).newClock(), Duration.ofSeconds(10));
+        Map<Integer, CompletionCallback<String>> model = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            //a small range of ids, including negative ones, so they collide and wrap around the table.
+            int id = random.nextInt(512) - 256;
+            if (random.nextBoolean() && !model.containsKey(id)) {
+                var callback = new CompletionCallback<String>();
+                table.add(id, callback);
+                model.put(id, callback);
+            } else {
+                table.handleResponse(id, "response-" + id);
+                var callback = model.remove(id);
+                if (callback != null) {
+                    assertEquals("response-" + id, callback.getFuture().get());
+                }
+            }
+            assertEquals(model.size(), table.pendingRequests());
+        }
+    }
+
+    @Test
+    public void reusesSlotsOfCompletedRequests() {
+        var table = new PendingRequestTable<String>(new Simulation(1).newClock(), Duration.ofSeconds(10));
+        int capacity = table.capacity();
+        for (int id = 0; id < capacity * 100; id++) {
+            table.add(id, new CompletionCallback<>());
+            table.handleResponse(id, "done");
+        }
+        assertEquals(capacity, table.capacity());
+        assertEquals(0, table.pendingRequests());
+    }
+
+    @Test
+    public void growsWhenAllSlotsAreInUse() {
+        var table = new PendingRequestTable<String>(new Simulation(1).newClock(), Duration.ofSeconds(10));
+        int capacity = table.capacity();
+        for (int id = 0; id <= capacity; id++) {
+            table.add(id, new CompletionCallback<>());
+        }
+        assertEquals(capacity * 2, table.capacity());
+        assertEquals(capacity + 1, table.pendingRequests());
+    }
+
+    @Test
+    public void expiresRequestsWithoutResponse() {
+        var simulation = new Simulation(1);
+        var table = new PendingRequestTable<String>(simulation.newClock(), Duration.ofMillis(100), Duration.ofMillis(10));
+        var expiring = new CompletionCallback<String>();
+        var answered = new CompletionCallback<String>();
+        table.add(1, expiring);
+        table.add(2, answered);
+        table.handleResponse(2, "done");
+        //reuses the slot of request 2, with a later deadline.
+        var later = new CompletionCallback<String>();
+        simulation.runFor(Duration.ofMillis(50));
+        table.add(3, later);
+
+        simulation.runFor(Duration.ofMillis(60));
+        var e = assertThrows(ExecutionException.class, () -> expiring.getFuture().get());
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertFalse(later.getFuture().isDone());
+        assertEquals(1, table.pendingRequests());
+    }
+}
@@ -0,0 +1,62 @@
+package replicate.net.requestwaitinglist;
+
+import org.junit.Test;
+import replicate.simulation.Simulation;
+import replicate.vsr.CompletionCallback;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class RequestWaitingListTest {
+
+    @Test
+    public void expiresRequestsWithinOneTickOfTheirTimeout() {
+        var simulation = new Simulation(1);
+        var requestWaitingList = new RequestWaitingList<Integer, String>(simulation.newClock(), Duration.ofMillis(100), Duration.ofMillis(10));
+        var callback = new CompletionCallback<String>();
+        requestWaitingList.add(1, callback);
+
+        simulation.runFor(Duration.ofMillis(95));
+        assertFalse(callback.getFuture().isDone());
+        simulation.runFor(Duration.ofMillis(15));
+        assertTimedOut(callback);
+        assertEquals(0, requestWaitingList.pendingRequests());
+    }
+
+    @Test
+    public void requestsCanHaveTheirOwnTimeout() {
+        var simulation = new Simulation(1);
+        var requestWaitingList = new RequestWaitingList<Integer, String>(simulation.newClock(), Duration.ofSeconds(1), Duration.ofMillis(10));
+        var shortTimeout = new CompletionCallback<String>();
+        var defaultTimeout = new CompletionCallback<String>();
+        requestWaitingList.add(1, shortTimeout, Duration.ofMillis(50));
+        requestWaitingList.add(2, defaultTimeout);
+
+        simulation.runFor(Duration.ofMillis(70));
+        assertTimedOut(shortTimeout);
+        assertFalse(defaultTimeout.getFuture().isDone());
+    }
+
+    @Test
+    public void respondedRequestsDoNotExpire() throws Exception {
+        var simulation = new Simulation(1);
+        var requestWaitingList = new RequestWaitingList<Integer, String>(simulation.newClock(), Duration.ofMillis(100), Duration.ofMillis(10));
+        var callback = new CompletionCallback<String>();
+        requestWaitingList.add(1, callback);
+
+        simulation.runFor(Duration.ofMillis(50));
+        requestWaitingList.handleResponse(1, "done");
+        simulation.runFor(Duration.ofMillis(200));
+
+        assertEquals("done", callback.getFuture().get());
+        assertEquals(0, requestWaitingList.pendingRequests());
+    }
+
+    private static void assertTimedOut(CompletionCallback<String> callback) {
+        var e = assertThrows(ExecutionException.class, () -> callback.getFuture().get());
+        assertTrue(e.getCause() instanceof TimeoutException);
+    }
+}
@@ -0,0 +1,70 @@
+package replicate.net.requestwaitinglist;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+    private static final long MS = 1_000_000;
+
+    @Test
+    public void expiresTimeoutsWithinOneTickAfterTheirDeadline() {
+        var wheel = new TimingWheel(Duration.ofMillis(10), 8, 0);
+        List<String> expired = new ArrayList<>();
+        wheel.schedule(() -> expired.add("a"), 25 * MS);
+        wheel.schedule(() -> expired.add("b"), 40 * MS);
+
+        wheel.advance(29 * MS);
+        assertEquals(List.of(), expired);
+        wheel.advance(30 * MS);
+        assertEquals(List.of("a"), expired);
+        wheel.advance(40 * MS);
+        assertEquals(List.of("a", "b"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void keepsTimeoutsBeyondOneTurnOfTheWheelForLaterTurns() {
+        var wheel = new TimingWheel(Duration.ofMillis(10), 4, 0);
+        List<String> expired = new ArrayList<>();
+        wheel.schedule(() -> expired.add("near"), 10 * MS);
+        wheel.schedule(() -> expired.add("far"), 130 * MS); //same bucket, three turns later.
+
+        wheel.advance(50 * MS);
+        assertEquals(List.of("near"), expired);
+        wheel.advance(120 * MS);
+        assertEquals(List.of("near"), expired);
+        wheel.advance(130 * MS);
+        assertEquals(List.of("near", "far"), expired);
+    }
+
+    @Test
+    public void cancelledTimeoutsDoNotExpire() {
+        var wheel = new TimingWheel(Duration.ofMillis(10), 8, 0);
+        List<String> expired = new ArrayList<>();
+        var timeout = wheel.schedule(() -> expired.add("a"), 20 * MS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertEquals(0, wheel.size());
+        wheel.advance(100 * MS);
+        assertEquals(List.of(), expired);
+    }
+
+    @Test
+    public void timeoutsAlreadyDueExpireOnTheNextTick() {
+        var wheel = new TimingWheel(Duration.ofMillis(10), 8, 0);
+        wheel.advance(100 * MS);
+        List<String> expired = new ArrayList<>();
+        wheel.schedule(() -> expired.add("late"), 50 * MS);
+
+        wheel.advance(105 * MS);
+        assertEquals(List.of(), expired);
+        wheel.advance(110 * MS);
+        assertEquals(List.of("late"), expired);
+    }
+}
@@ -14,6 +14,7 @@ import replicate.twophaseexecution.messages.ExecuteCommandResponse;
 import replicate.wal.SetValueCommand;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Optional;
 
@@ -35,6 +36,27 @@ public class PaxosLogTest extends ClusterTest<PaxosLog> {
         assertEquals(Optional.of("Microservices"), setValueResponse.getResponse());
     }
 
+    @Test
+    public void replicatesWithBinaryPeerMessages() throws IOException {
+        tearDown();
+        super.nodes = TestUtils.startCluster(Arrays.asList("athens", "byzantium", "cyrene"),
+                config -> config.withBinaryPeerMessages(),
+                (name, config, clock, clientConnectionAddress, peerConnectionAddress, peers) -> new PaxosLog(name, clock, config, clientConnectionAddress, peerConnectionAddress, peers));
+
+        var networkClient = new NetworkClient();
+        var command = new SetValueCommand("title", "Microservices");
+        var setValueResponse = networkClient.sendAndReceive(new ExecuteCommandRequest(command.serialize()), nodes.get("athens").getClientConnectionAddress(), ExecuteCommandResponse.class).getResult();
+        assertEquals(Optional.of("Microservices"), setValueResponse.getResponse());
+
+        //byzantium's prepare for the first index gets athens' accepted value back, and moves on to the next one.
+        command = new SetValueCommand("author", "Martin");
+        setValueResponse = networkClient.sendAndReceive(new ExecuteCommandRequest(command.serialize()), nodes.get("byzantium").getClientConnectionAddress(), ExecuteCommandResponse.class).getResult();
+        assertEquals(Optional.of("Martin"), setValueResponse.getResponse());
+
+        TestUtils.waitUntilTrue(() -> nodes.values().stream().allMatch(n -> "Microservices".equals(n.kv.get("title")) && "Martin".equals(n.kv.get("author"))),
+                "Waiting for every replica to apply both commands", Duration.ofSeconds(2));
+    }
+
     @Test
     public void singleValueNullPaxosGetTest() throws IOException {
         var networkClient = new NetworkClient();
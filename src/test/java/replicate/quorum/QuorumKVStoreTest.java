@@ -13,6 +13,7 @@ import replicate.quorum.messages.SetValueResponse;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.*;
 
 import static org.junit.Assert.assertEquals;
@@ -33,6 +34,30 @@ public class QuorumKVStoreTest extends ClusterTest<QuorumKVStore> {
         cyrene = nodes.get("cyrene");
     }
 
+    @Test
+    public void hedgedReadsDoNotWaitForASlowReplica() throws IOException {
+        tearDown();
+        this.nodes = TestUtils.startCluster(Arrays.asList("athens", "byzantium", "cyrene"),
+                config -> config.withHedgedReads(Duration.ofMillis(100)),
+                (name, config, clock, clientConnectionAddress, peerConnectionAddress, peerAddresses) -> new QuorumKVStore(name, config, clock, clientConnectionAddress, peerConnectionAddress, peerAddresses));
+        athens = nodes.get("athens");
+        KVClient kvClient = new KVClient();
+        assertResponseSuccess(kvClient.setValue(athens.getClientConnectionAddress(), "title", "Microservices"));
+        for (int i = 0; i < 5; i++) {
+            assertResponseValue(kvClient.getValue(athens.getClientConnectionAddress(), "title"), "Microservices");
+        }
+
+        //the replica which reads go to first, along with athens, now takes a second to get them.
+        var others = List.of(nodes.get("byzantium"), nodes.get("cyrene"));
+        var fastest = athens.peerLatencies().fastestFirst(others.stream().map(QuorumKVStore::getPeerConnectionAddress).toList()).get(0);
+        others.stream().filter(n -> n.getPeerConnectionAddress().equals(fastest)).forEach(n -> athens.addDelayForMessagesOfType(n, MessageId.VersionedGetValueRequest));
+
+        long start = System.nanoTime();
+        var getValueResponse = kvClient.getValue(athens.getClientConnectionAddress(), "title");
+        assertResponseValue(getValueResponse, "Microservices");
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(500)) < 0);
+    }
+
     //Read Your Own Writes should give the same value written by me or a later value.
     //Try changing this test to have 5 replicas instead of three.
     //It returns error because Quorum condition will not be met.
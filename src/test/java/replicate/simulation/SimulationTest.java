@@ -0,0 +1,207 @@
+package replicate.simulation;
+
+import org.junit.After;
+import org.junit.Test;
+import replicate.common.Config;
+import replicate.common.Message;
+import replicate.common.NetworkClient;
+import replicate.common.RequestOrResponse;
+import replicate.common.TestUtils;
+import replicate.mpaxoswithheartbeats.MultiPaxosWithHeartbeats;
+import replicate.net.InetAddressAndPort;
+import replicate.net.Listener;
+import replicate.twophaseexecution.messages.ExecuteCommandRequest;
+import replicate.twophaseexecution.messages.ExecuteCommandResponse;
+import replicate.wal.SetValueCommand;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class SimulationTest {
+    private final List<MultiPaxosWithHeartbeats> replicas = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        replicas.forEach(MultiPaxosWithHeartbeats::shutdown);
+    }
+
+    @Test
+    public void electsLeaderAndCommitsInVirtualTime() throws Exception {
+        Simulation simulation = new Simulation(42);
+        startCluster(simulation, 3);
+
+        assertTrue(simulation.runUntil(() -> leader().isPresent(), Duration.ofSeconds(30)));
+
+        var client = new SimulatedClient(simulation, InetAddressAndPort.create("10.0.1.1", 5000));
+        byte[] command = new SetValueCommand("title", "Microservices").serialize();
+        CompletableFuture<NetworkClient.Response<ExecuteCommandResponse>> response
+                = client.send(new ExecuteCommandRequest(command), leader().get().getClientConnectionAddress(), ExecuteCommandResponse.class);
+        assertTrue(simulation.runUntil(response::isDone, Duration.ofSeconds(10)));
+
+        assertEquals(Optional.of("Microservices"), response.get().getResult().getResponse());
+    }
+
+    @Test
+    public void sameSeedGivesSameHistory() throws Exception {
+        List<Long> first = runElectionAndCommit(7);
+        tearDown();
+        replicas.clear();
+        List<Long> second = runElectionAndCommit(7);
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void messagesTakeLatencyPlusTransmissionTime() throws Exception {
+        Simulation simulation = new Simulation(1);
+        InetAddressAndPort from = InetAddressAndPort.create("10.0.0.1", 9000);
+        InetAddressAndPort to = InetAddressAndPort.create("10.0.0.2", 9000);
+        simulation.setLink(from, to, LinkModel.latency(Duration.ofMillis(10)).withBandwidth(1_000_000));
+        List<Long> arrivals = new ArrayList<>();
+        Listener listener = new SimulatedTransport(simulation).listen(to, (Message<RequestOrResponse> message) -> arrivals.add(simulation.nanoTime()));
+        listener.start();
+
+        var transport = new SimulatedTransport(simulation);
+        for (int i = 0; i < 2; i++) {
+            transport.send(to, new RequestOrResponse(1, new byte[10_000], i, from), e -> fail());
+        }
+        simulation.runFor(Duration.ofSeconds(1));
+
+        //10KB take 10ms to transmit at 1MB/s, and the second message waits for the first.
+        assertEquals(2, arrivals.size());
+        assertEquals(20, Duration.ofNanos(arrivals.get(0)).toMillis());
+        assertEquals(30, Duration.ofNanos(arrivals.get(1)).toMillis());
+    }
+
+    @Test
+    public void jitterDoesNotReorderMessagesOnALink() throws Exception {
+        Simulation simulation = new Simulation(3);
+        InetAddressAndPort from = InetAddressAndPort.create("10.0.0.1", 9000);
+        InetAddressAndPort to = InetAddressAndPort.create("10.0.0.2", 9000);
+        simulation.setDefaultLink(LinkModel.latency(Duration.ofMillis(1)).withJitter(Duration.ofMillis(50)));
+        List<Integer> received = new ArrayList<>();
+        new SimulatedTransport(simulation).listen(to, (Message<RequestOrResponse> message) -> received.add(message.getCorrelationId())).start();
+
+        var transport = new SimulatedTransport(simulation);
+        List<Integer> sent = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            transport.send(to, new RequestOrResponse(1, new byte[0], i, from), e -> fail());
+            sent.add(i);
+        }
+        simulation.runFor(Duration.ofSeconds(1));
+
+        assertEquals(sent, received);
+    }
+
+    @Test
+    public void thriftyQuorumsSendFewerMessagesForTheSameCommits() throws Exception {
+        long allReplicas = messagesForCommits(config -> {});
+        tearDown();
+        replicas.clear();
+        long thrifty = messagesForCommits(Config::withThriftyQuorums);
+
+        //each proposal goes to a quorum of 3 out of 5 instead of all 5, saving 2 requests and 2 responses.
+        //commits still go to all of them.
+        assertTrue("thrifty " + thrifty + " all " + allReplicas, thrifty <= allReplicas - 10 * 4);
+    }
+
+    @Test
+    public void thriftyQuorumsFallBackToRemainingReplicasWhenOneIsDown() throws Exception {
+        Simulation simulation = new Simulation(11);
+        startCluster(simulation, 5, Config::withThriftyQuorums);
+        assertTrue(simulation.runUntil(() -> leader().isPresent(), Duration.ofSeconds(30)));
+        var leader = leader().get();
+        var client = new SimulatedClient(simulation, InetAddressAndPort.create("10.0.1.1", 5000));
+        commit(simulation, client, leader, "warmup");
+
+        //the fastest other replica, which would be in the next thrifty quorum.
+        replicas.stream().filter(r -> r != leader).findFirst().ifPresent(r -> leader.dropMessagesTo(r));
+        var response = commit(simulation, client, leader, "Microservices");
+
+        assertEquals(Optional.of("Microservices"), response.getResult().getResponse());
+    }
+
+    @Test
+    public void everyReplicaAppliesCommittedValuesWithThriftyQuorums() throws Exception {
+        Simulation simulation = new Simulation(5);
+        startCluster(simulation, 5, Config::withThriftyQuorums);
+        assertTrue(simulation.runUntil(() -> leader().isPresent(), Duration.ofSeconds(30)));
+        var client = new SimulatedClient(simulation, InetAddressAndPort.create("10.0.1.1", 5000));
+        for (int i = 0; i < 10; i++) {
+            var response = commit(simulation, client, leader().get(), "value" + i);
+            assertEquals(Optional.of("value" + i), response.getResult().getResponse());
+        }
+
+        //proposals went to a quorum, but commits go to every replica.
+        assertTrue(simulation.runUntil(() -> replicas.stream().allMatch(r -> "value9".equals(r.getValue("title"))), Duration.ofSeconds(10)));
+    }
+
+    //messages sent by the cluster and the client for ten commits, after the election.
+    private long messagesForCommits(Consumer<Config> configure) throws Exception {
+        Simulation simulation = new Simulation(5);
+        startCluster(simulation, 5, configure);
+        assertTrue(simulation.runUntil(() -> leader().isPresent(), Duration.ofSeconds(30)));
+        var client = new SimulatedClient(simulation, InetAddressAndPort.create("10.0.1.1", 5000));
+        commit(simulation, client, leader().get(), "warmup");
+
+        long before = simulation.messagesSent();
+        for (int i = 0; i < 10; i++) {
+            var response = commit(simulation, client, leader().get(), "value" + i);
+            assertEquals(Optional.of("value" + i), response.getResult().getResponse());
+        }
+        return simulation.messagesSent() - before;
+    }
+
+    private NetworkClient.Response<ExecuteCommandResponse> commit(Simulation simulation, SimulatedClient client, MultiPaxosWithHeartbeats leader, String value) throws Exception {
+        var response = client.send(new ExecuteCommandRequest(new SetValueCommand("title", value).serialize()),
+                leader.getClientConnectionAddress(), ExecuteCommandResponse.class);
+        assertTrue(simulation.runUntil(response::isDone, Duration.ofSeconds(10)));
+        return response.get();
+    }
+
+    //the virtual times of the election and the commit, and the number of events run.
+    private List<Long> runElectionAndCommit(long seed) throws Exception {
+        Simulation simulation = new Simulation(seed);
+        simulation.setDefaultLink(LinkModel.latency(Duration.ofMillis(2)).withJitter(Duration.ofMillis(3)));
+        startCluster(simulation, 3);
+        assertTrue(simulation.runUntil(() -> leader().isPresent(), Duration.ofSeconds(30)));
+        long electedAt = simulation.nanoTime();
+
+        var client = new SimulatedClient(simulation, InetAddressAndPort.create("10.0.1.1", 5000));
+        var response = client.send(new ExecuteCommandRequest(new SetValueCommand("title", "Microservices").serialize()),
+                leader().get().getClientConnectionAddress(), ExecuteCommandResponse.class);
+        assertTrue(simulation.runUntil(response::isDone, Duration.ofSeconds(10)));
+        return List.of(electedAt, simulation.nanoTime(), simulation.eventsRun(), (long) replicas.indexOf(leader().get()));
+    }
+
+    private void startCluster(Simulation simulation, int clusterSize) throws IOException {
+        startCluster(simulation, clusterSize, config -> {});
+    }
+
+    private void startCluster(Simulation simulation, int clusterSize, Consumer<Config> configure) throws IOException {
+        List<InetAddressAndPort> peers = new ArrayList<>();
+        for (int i = 0; i < clusterSize; i++) {
+            peers.add(InetAddressAndPort.create("10.0.0." + (i + 1), 9000));
+        }
+        for (int i = 0; i < clusterSize; i++) {
+            Config config = new Config(TestUtils.tempDir("simulated_" + i).getAbsolutePath()).withSimulation(simulation);
+            config.setServerId(i);
+            configure.accept(config);
+            var clientAddress = InetAddressAndPort.create("10.0.0." + (i + 1), 8000);
+            var replica = new MultiPaxosWithHeartbeats("node" + i, simulation.newClock(), config, clientAddress, peers.get(i), peers);
+            replica.start();
+            replicas.add(replica);
+        }
+    }
+
+    private Optional<MultiPaxosWithHeartbeats> leader() {
+        return replicas.stream().filter(MultiPaxosWithHeartbeats::isLeader).findFirst();
+    }
+}
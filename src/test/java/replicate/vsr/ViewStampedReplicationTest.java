@@ -17,6 +17,7 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class ViewStampedReplicationTest extends ClusterTest<ViewStampedReplication> {
 
@@ -39,6 +40,39 @@ public class ViewStampedReplicationTest extends ClusterTest<ViewStampedReplicati
         assertEquals(Optional.of("Microservices"), response.getResponse());
     }
 
+    @Test
+    public void replicatesWithBinaryPeerMessages() throws IOException {
+        super.nodes = TestUtils.startCluster(Arrays.asList("athens", "byzantium", "cyrene"),
+                        config -> config.withBinaryPeerMessages(),
+                        (name, config, clock, clientConnectionAddress, peerConnectionAddress, peerAddresses) -> new ViewStampedReplication(name, config, clock, clientConnectionAddress, peerConnectionAddress, peerAddresses));
+
+        var primaryAddress = getPrimaryNode(nodes.get("athens").getPrimaryAddress()).getClientConnectionAddress();
+        var client = new NetworkClient();
+        for (var command : List.of(new SetValueCommand("title", "Microservices"), new SetValueCommand("author", "Martin"))) {
+            var response = client.sendAndReceive(new ExecuteCommandRequest(command.serialize()), primaryAddress, ExecuteCommandResponse.class).getResult();
+            assertEquals(Optional.of(command.getValue()), response.getResponse());
+        }
+
+        //backups apply an operation once a later prepare or commit carries its commit number.
+        TestUtils.waitUntilTrue(() -> nodes.values().stream().allMatch(n -> "Microservices".equals(n.kv.get("title"))),
+                "Waiting for every replica to apply the first command", Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void backupsRedirectClientsToThePrimary() throws IOException {
+        super.nodes = TestUtils.startCluster(Arrays.asList("athens", "byzantium", "cyrene"),
+                        (name, config, clock, clientConnectionAddress, peerConnectionAddress, peerAddresses) -> new ViewStampedReplication(name, config, clock, clientConnectionAddress, peerConnectionAddress, peerAddresses));
+
+        var primary = getPrimaryNode(nodes.get("athens").getPrimaryAddress());
+        var backup = getBackUpNodes(primary.getPeerConnectionAddress()).get(0);
+
+        var client = new NetworkClient();
+        var response = client.sendAndReceive(new ExecuteCommandRequest(new SetValueCommand("title", "Microservices").serialize()), backup.getClientConnectionAddress(), ExecuteCommandResponse.class);
+
+        assertTrue(response.isRedirect());
+        assertEquals(Optional.of(primary.getClientConnectionAddress()), response.getLeaderAddress());
+    }
+
     @Test
     public void changesViewAndElectsNewPrimary() throws IOException, InterruptedException {
         super.nodes = TestUtils.startCluster(Arrays.asList("athens", "byzantium", "cyrene"),
@@ -0,0 +1,66 @@
+package replicate.wal;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class CommandTest {
+
+    @Test
+    public void setValueCommandBytesAreSameAsDataOutputStreamFormat() throws IOException {
+        var command = new SetValueCommand("title", "Mïcroservices €").withClientId(10).<SetValueCommand>withRequestNumber(2);
+
+        var baos = new ByteArrayOutputStream();
+        var os = new DataOutputStream(baos);
+        os.writeLong(10);
+        os.writeInt(2);
+        os.writeInt(Command.SetValueType);
+        os.writeUTF("title");
+        os.writeUTF("Mïcroservices €");
+        os.writeUTF("");
+
+        assertArrayEquals(baos.toByteArray(), command.serialize());
+        assertEquals(command, Command.deserialize(baos.toByteArray()));
+    }
+
+    @Test
+    public void serializesIntoCallerProvidedBuffer() {
+        var first = new SetValueCommand("author", "Martin");
+        var second = new SetValueCommand("title", "Microservices");
+        var buffer = ByteBuffer.allocate(first.serializedSize() + second.serializedSize());
+        first.serialize(buffer);
+        second.serialize(buffer);
+        assertFalse(buffer.hasRemaining());
+
+        buffer.flip();
+        assertEquals(first, Command.deserialize(buffer.slice(0, first.serializedSize())));
+        assertEquals(second, Command.deserialize(buffer.slice(first.serializedSize(), second.serializedSize())));
+    }
+
+    @Test
+    public void compositeCommandRoundTrips() {
+        var composite = new CompositeCommand();
+        composite.add(new SetValueCommand("author", "Martin"));
+        composite.add(new SetValueCommand("title", "Microservices"));
+
+        var deserialized = (CompositeCommand) Command.deserialize(composite.serialize());
+        assertEquals(composite.getCommands(), deserialized.getCommands());
+    }
+
+    @Test
+    public void readerDecodesFieldsInPlace() {
+        var reader = new SetValueCommandReader();
+        assertTrue(reader.wrap(new SetValueCommand("title", "Microservices", "lease1").withClientId(5).serialize()));
+        assertEquals("title", reader.key());
+        assertEquals("Microservices", reader.value());
+        assertEquals(5, reader.clientId());
+        assertTrue(reader.hasLease());
+
+        assertFalse(reader.wrap(new CompositeCommand().serialize()));
+    }
+}